@@ -0,0 +1,196 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.handler;
+
+import android.test.InstrumentationTestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.unipassau.isl.evs.ssh.core.CoreConstants;
+import de.unipassau.isl.evs.ssh.core.container.ContainerService;
+import de.unipassau.isl.evs.ssh.core.container.SimpleContainer;
+import de.unipassau.isl.evs.ssh.core.database.dto.Module;
+import de.unipassau.isl.evs.ssh.core.database.dto.ModuleAccessPoint.USBAccessPoint;
+import de.unipassau.isl.evs.ssh.core.messaging.Message;
+import de.unipassau.isl.evs.ssh.core.messaging.OutgoingRouter;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.LightPayload;
+import de.unipassau.isl.evs.ssh.core.naming.DeviceID;
+import de.unipassau.isl.evs.ssh.core.naming.NamingManager;
+import de.unipassau.isl.evs.ssh.core.schedule.DefaultExecutionServiceComponent;
+import de.unipassau.isl.evs.ssh.core.schedule.ExecutionServiceComponent;
+import de.unipassau.isl.evs.ssh.core.schedule.Scheduler;
+import de.unipassau.isl.evs.ssh.core.sec.KeyStoreController;
+import de.unipassau.isl.evs.ssh.master.MasterConfiguration;
+import de.unipassau.isl.evs.ssh.master.database.DatabaseConnector;
+import de.unipassau.isl.evs.ssh.master.database.HolidayController;
+import de.unipassau.isl.evs.ssh.master.database.PermissionController;
+import de.unipassau.isl.evs.ssh.master.messaging.payload.LightScenePayload;
+import de.unipassau.isl.evs.ssh.master.network.ServerOutgoingRouter;
+import io.netty.util.concurrent.Future;
+
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.SLAVE_LIGHT_SET;
+import static de.unipassau.isl.evs.ssh.master.messaging.MasterRoutingKeys.SLAVE_LIGHT_SCENE;
+
+public class LightSceneSenderTest extends InstrumentationTestCase {
+    private final DeviceID slave1 = new DeviceID("YXNqZGZsw7ZrYXNkZmFhc2RmdmF3YXZhc3Zhc3ZhZmE=");
+    private final DeviceID slave2 = new DeviceID("YXNqZGZsw7ZiYXNkZmFhc2RmdmF3YXZhc3Zhc3ZhZmE=");
+
+    private SimpleContainer container;
+    private RecordingRouter router;
+    private LightSceneSender sender;
+    private boolean sceneCommand = false;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        container = new SimpleContainer();
+        container.register(ContainerService.KEY_CONTEXT,
+                new ContainerService.ContextComponent(getInstrumentation().getTargetContext()));
+        container.register(ExecutionServiceComponent.KEY, new DefaultExecutionServiceComponent("test"));
+        container.register(Scheduler.KEY, new Scheduler());
+        container.register(MasterConfiguration.KEY, new MasterConfiguration() {
+            @Override
+            public boolean isLightSceneCommandEnabled() {
+                return sceneCommand;
+            }
+        });
+        container.register(KeyStoreController.KEY, new KeyStoreController());
+        container.register(NamingManager.KEY, new NamingManager(true));
+        container.register(DatabaseConnector.KEY, new DatabaseConnector());
+        container.register(PermissionController.KEY, new PermissionController());
+        container.register(HolidayController.KEY, new HolidayController());
+        router = new RecordingRouter();
+        container.register(OutgoingRouter.KEY, router);
+        container.register(ServerOutgoingRouter.KEY, router);
+        sender = new LightSceneSender();
+        container.register(LightSceneSender.KEY, sender);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        container.shutdown();
+        super.tearDown();
+    }
+
+    public void testRepliesCompleteScene() {
+        final Map<Module, Boolean> targets = new LinkedHashMap<>();
+        targets.put(new Module("l1", slave1, CoreConstants.ModuleType.Light, new USBAccessPoint(1)), true);
+        targets.put(new Module("l2", slave2, CoreConstants.ModuleType.Light, new USBAccessPoint(1)), true);
+        targets.put(new Module("l3", slave1, CoreConstants.ModuleType.Light, new USBAccessPoint(2)), false);
+        sender.switchLights("test", targets, null);
+
+        assertEquals(3, router.sent.size());
+        assertEquals(3, sender.getPendingReplyCount());
+        // the commands are grouped by Slave
+        assertEquals(slave1, router.sent.get(0).getToID());
+        assertEquals(slave1, router.sent.get(1).getToID());
+        assertEquals(slave2, router.sent.get(2).getToID());
+        for (Message.AddressedMessage message : router.sent) {
+            assertTrue(SLAVE_LIGHT_SET.matches(message));
+        }
+
+        final Message.AddressedMessage first = router.sent.get(0);
+        assertTrue(sender.onReply(first.getSequenceNr(), (LightPayload) first.getPayload()));
+        assertEquals(2, sender.getPendingReplyCount());
+        // a reply is only consumed once
+        assertFalse(sender.onReply(first.getSequenceNr(), (LightPayload) first.getPayload()));
+
+        // an error reply counts as answered, too
+        assertTrue(sender.onReply(router.sent.get(1).getSequenceNr(), null));
+        final Message.AddressedMessage last = router.sent.get(2);
+        assertTrue(sender.onReply(last.getSequenceNr(), (LightPayload) last.getPayload()));
+        assertEquals(0, sender.getPendingReplyCount());
+    }
+
+    public void testSceneCommandPerSlave() {
+        sceneCommand = true;
+        final Map<Module, Boolean> targets = new LinkedHashMap<>();
+        targets.put(new Module("l1", slave1, CoreConstants.ModuleType.Light, new USBAccessPoint(1)), true);
+        targets.put(new Module("l2", slave2, CoreConstants.ModuleType.Light, new USBAccessPoint(1)), true);
+        targets.put(new Module("l3", slave1, CoreConstants.ModuleType.Light, new USBAccessPoint(2)), false);
+        sender.switchLights("test", targets, null);
+
+        // one command for each Slave, containing all of its Lights
+        assertEquals(2, router.sent.size());
+        assertEquals(2, sender.getPendingReplyCount());
+        final Message.AddressedMessage first = router.sent.get(0);
+        final Message.AddressedMessage second = router.sent.get(1);
+        assertEquals(slave1, first.getToID());
+        assertEquals(slave2, second.getToID());
+        assertTrue(SLAVE_LIGHT_SCENE.matches(first));
+        assertTrue(SLAVE_LIGHT_SCENE.matches(second));
+        final List<LightPayload> lights = ((LightScenePayload) first.getPayload()).getLights();
+        assertEquals(2, lights.size());
+        assertEquals("l1", lights.get(0).getModule().getName());
+        assertEquals("l3", lights.get(1).getModule().getName());
+        assertEquals(1, ((LightScenePayload) second.getPayload()).getLights().size());
+
+        // the Slave only switched one of the Lights, a reply is still only consumed once
+        final LightScenePayload reply = new LightScenePayload("test", Collections.singletonList(lights.get(0)));
+        assertTrue(sender.onSceneReply(first.getSequenceNr(), reply));
+        assertEquals(1, sender.getPendingReplyCount());
+        assertFalse(sender.onSceneReply(first.getSequenceNr(), reply));
+
+        assertTrue(sender.onSceneReply(second.getSequenceNr(), null));
+        assertEquals(0, sender.getPendingReplyCount());
+    }
+
+    public void testUnknownReplyIsNotConsumed() {
+        final Map<Module, Boolean> targets = new LinkedHashMap<>();
+        targets.put(new Module("l1", slave1, CoreConstants.ModuleType.Light, new USBAccessPoint(1)), true);
+        sender.switchLights("test", targets, null);
+
+        final int sequenceNr = router.sent.get(0).getSequenceNr();
+        assertFalse(sender.onReply(sequenceNr + 1, null));
+        assertEquals(1, sender.getPendingReplyCount());
+        assertTrue(sender.onReply(sequenceNr, null));
+        assertEquals(0, sender.getPendingReplyCount());
+    }
+
+    public void testEmptySceneSendsNothing() {
+        sender.switchLights("test", new LinkedHashMap<Module, Boolean>(), null);
+        assertTrue(router.sent.isEmpty());
+        assertEquals(0, sender.getPendingReplyCount());
+    }
+
+    /**
+     * Records the sent messages instead of writing them to a connection.
+     */
+    private static class RecordingRouter extends ServerOutgoingRouter {
+        private final List<Message.AddressedMessage> sent = new ArrayList<>();
+
+        @Override
+        protected Future<Void> doSendMessage(Message.AddressedMessage amsg) {
+            sent.add(amsg);
+            return requireComponent(ExecutionServiceComponent.KEY).newSucceededFuture(null);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.handler;
+
+import android.test.InstrumentationTestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.unipassau.isl.evs.ssh.core.CoreConstants;
+import de.unipassau.isl.evs.ssh.core.container.ContainerService;
+import de.unipassau.isl.evs.ssh.core.container.SimpleContainer;
+import de.unipassau.isl.evs.ssh.core.database.dto.Module;
+import de.unipassau.isl.evs.ssh.core.database.dto.ModuleAccessPoint.USBAccessPoint;
+import de.unipassau.isl.evs.ssh.core.messaging.Message;
+import de.unipassau.isl.evs.ssh.core.messaging.RoutingKey;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.CameraPayload;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.LightPayload;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.MessagePayload;
+import de.unipassau.isl.evs.ssh.core.naming.DeviceID;
+import de.unipassau.isl.evs.ssh.core.schedule.DefaultExecutionServiceComponent;
+import de.unipassau.isl.evs.ssh.core.schedule.ExecutionServiceComponent;
+import de.unipassau.isl.evs.ssh.core.schedule.Scheduler;
+import de.unipassau.isl.evs.ssh.master.MasterConfiguration;
+
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.MASTER_CAMERA_GET;
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.MASTER_LIGHT_GET;
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.SLAVE_CAMERA_GET;
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.SLAVE_LIGHT_GET;
+
+public class PendingRequestTableTest extends InstrumentationTestCase {
+    private final DeviceID master = new DeviceID("YXNqZGZsw7ZrYXNkZmFhc2RmdmF3YXZhc3Zhc3ZhZmE=");
+    private final DeviceID app = new DeviceID("YXNqZGZsw7ZiYXNkZmFhc2RmdmF3YXZhc3Zhc3ZhZmE=");
+    private final DeviceID slave = new DeviceID("YXNqZGZsw7ZjYXNkZmFhc2RmdmF3YXZhc3Zhc3ZhZmE=");
+    private final Module light = new Module("l1", slave, CoreConstants.ModuleType.Light, new USBAccessPoint(1));
+
+    private SimpleContainer container;
+    private PendingRequestTable table;
+    private RecordingHandler owner;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        container = new SimpleContainer();
+        container.register(ContainerService.KEY_CONTEXT,
+                new ContainerService.ContextComponent(getInstrumentation().getTargetContext()));
+        container.register(ExecutionServiceComponent.KEY, new DefaultExecutionServiceComponent("test"));
+        container.register(Scheduler.KEY, new Scheduler());
+        container.register(MasterConfiguration.KEY, new MasterConfiguration());
+        table = new PendingRequestTable();
+        container.register(PendingRequestTable.KEY, table);
+        owner = new RecordingHandler();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        container.shutdown();
+        super.tearDown();
+    }
+
+    public void testCoalescedRequestsAreAnsweredTogether() {
+        final Object coalescingKey = Arrays.<Object>asList(SLAVE_LIGHT_GET, light.getName());
+        final Message.AddressedMessage first = received(MASTER_LIGHT_GET, new LightPayload(false, light));
+        final Message.AddressedMessage second = received(MASTER_LIGHT_GET, new LightPayload(false, light));
+        final Message.AddressedMessage proxy = proxy(SLAVE_LIGHT_GET, new LightPayload(false, light));
+        table.add(owner, first, proxy, coalescingKey);
+
+        assertTrue(table.attach(owner, coalescingKey, second));
+        // requests of other handlers are never shared
+        final RecordingHandler other = new RecordingHandler();
+        assertFalse(table.attach(other, coalescingKey, received(MASTER_LIGHT_GET, new LightPayload(false, light))));
+        assertTrue(table.take(other, proxy.getSequenceNr()).isEmpty());
+        assertEquals(1, table.getPendingCount());
+
+        assertEquals(Arrays.asList(first, second), table.take(owner, proxy.getSequenceNr()));
+        assertEquals(0, table.getPendingCount());
+        // once answered, the request neither accepts further messages nor can be taken again
+        assertFalse(table.attach(owner, coalescingKey, received(MASTER_LIGHT_GET, new LightPayload(false, light))));
+        assertTrue(table.take(owner, proxy.getSequenceNr()).isEmpty());
+
+        assertNotNull(table.getRoundTripTimes(slave));
+        assertEquals(1, table.getRoundTripTimes(slave).getCount());
+        assertTrue(owner.timedOut.isEmpty());
+    }
+
+    public void testExpiredRequestsTimeOut() {
+        final long now = System.currentTimeMillis();
+        final Message.AddressedMessage lightRequest = received(MASTER_LIGHT_GET, new LightPayload(false, light));
+        final Message.AddressedMessage lightProxy = proxy(SLAVE_LIGHT_GET, new LightPayload(false, light));
+        final Message.AddressedMessage cameraRequest = received(MASTER_CAMERA_GET, new CameraPayload(0, "c1"));
+        final Message.AddressedMessage cameraProxy = proxy(SLAVE_CAMERA_GET, new CameraPayload(0, "c1"));
+        table.add(owner, lightRequest, lightProxy, null);
+        table.add(owner, cameraRequest, cameraProxy, null);
+
+        table.expire(now + 1000);
+        assertEquals(2, table.getPendingCount());
+
+        // camera requests have a longer deadline than the default
+        table.expire(now + 15 * 1000);
+        assertEquals(Arrays.asList(lightRequest), owner.timedOut);
+        assertEquals(1, table.getTimeoutCount(slave));
+        assertEquals(1, table.getPendingCount());
+        assertTrue(table.take(owner, lightProxy.getSequenceNr()).isEmpty());
+
+        table.expire(now + 35 * 1000);
+        assertEquals(Arrays.asList(lightRequest, cameraRequest), owner.timedOut);
+        assertEquals(2, table.getTimeoutCount(slave));
+        assertEquals(0, table.getPendingCount());
+        assertNull(table.getRoundTripTimes(slave));
+    }
+
+    private Message.AddressedMessage received(RoutingKey routingKey, MessagePayload payload) {
+        return new Message(payload).setDestination(app, master, routingKey.getKey());
+    }
+
+    private Message.AddressedMessage proxy(RoutingKey routingKey, MessagePayload payload) {
+        return new Message(payload).setDestination(master, slave, routingKey.getKey());
+    }
+
+    /**
+     * Records the requests that timed out instead of replying to them.
+     */
+    private static class RecordingHandler extends AbstractMasterHandler {
+        private final List<Message.AddressedMessage> timedOut = new ArrayList<>();
+
+        @Override
+        public void handle(Message.AddressedMessage message) {
+        }
+
+        @Override
+        public RoutingKey[] getRoutingKeys() {
+            return new RoutingKey[0];
+        }
+
+        @Override
+        protected void onProxiedRequestTimedOut(Message.AddressedMessage receivedMessage) {
+            timedOut.add(receivedMessage);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.network;
+
+import android.content.Context;
+import android.test.InstrumentationTestCase;
+
+import de.unipassau.isl.evs.ssh.core.container.ContainerService;
+import de.unipassau.isl.evs.ssh.core.container.SimpleContainer;
+import de.unipassau.isl.evs.ssh.core.database.dto.Group;
+import de.unipassau.isl.evs.ssh.core.database.dto.Slave;
+import de.unipassau.isl.evs.ssh.core.database.dto.UserDevice;
+import de.unipassau.isl.evs.ssh.core.naming.DeviceID;
+import de.unipassau.isl.evs.ssh.core.schedule.DefaultExecutionServiceComponent;
+import de.unipassau.isl.evs.ssh.core.schedule.ExecutionServiceComponent;
+import de.unipassau.isl.evs.ssh.core.sec.Permission;
+import de.unipassau.isl.evs.ssh.master.database.DatabaseConnector;
+import de.unipassau.isl.evs.ssh.master.database.PermissionController;
+import de.unipassau.isl.evs.ssh.master.database.PermissionSnapshot;
+import de.unipassau.isl.evs.ssh.master.database.SlaveController;
+import de.unipassau.isl.evs.ssh.master.database.UserManagementController;
+
+public class ChannelPermissionsTest extends InstrumentationTestCase {
+    private final DeviceID device = new DeviceID("YXNqZGZsw7ZrYXNkZmFhc2RmdmF3YXZhc3Zhc3ZhZmE=");
+    private final DeviceID slave = new DeviceID("YXNqZGZsw7ZiYXNkZmFhc2RmdmF3YXZhc3Zhc3ZhZmE=");
+
+    private SimpleContainer container;
+    private PermissionController permissionController;
+    private UserManagementController userManagementController;
+    private ChannelPermissions channelPermissions;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        final Context context = getInstrumentation().getTargetContext();
+        context.deleteDatabase(DatabaseConnector.DATABASE_NAME);
+        container = new SimpleContainer();
+        container.register(ContainerService.KEY_CONTEXT, new ContainerService.ContextComponent(context));
+        container.register(ExecutionServiceComponent.KEY, new DefaultExecutionServiceComponent("test"));
+        container.register(DatabaseConnector.KEY, new DatabaseConnector());
+        container.register(PermissionController.KEY, new PermissionController());
+        container.register(UserManagementController.KEY, new UserManagementController());
+        container.register(SlaveController.KEY, new SlaveController());
+        container.register(ChannelPermissions.KEY, new ChannelPermissions());
+        permissionController = container.require(PermissionController.KEY);
+        userManagementController = container.require(UserManagementController.KEY);
+        channelPermissions = container.require(ChannelPermissions.KEY);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        container.shutdown();
+        super.tearDown();
+    }
+
+    public void testPermissionChangesIncrementVersion() throws Exception {
+        long version = channelPermissions.getPermissionVersion();
+        // writes to other tables keep the snapshots valid
+        container.require(SlaveController.KEY).addSlave(new Slave("s1", slave, null));
+        assertEquals(version, channelPermissions.getPermissionVersion());
+
+        permissionController.addPermission(Permission.REQUEST_LIGHT_STATUS, null);
+        assertTrue(channelPermissions.getPermissionVersion() > version);
+        version = channelPermissions.getPermissionVersion();
+
+        addUserDevice();
+        assertTrue(channelPermissions.getPermissionVersion() > version);
+        version = channelPermissions.getPermissionVersion();
+
+        permissionController.addUserPermission(device, Permission.REQUEST_LIGHT_STATUS, null);
+        assertTrue(channelPermissions.getPermissionVersion() > version);
+    }
+
+    public void testSnapshotsAreReadAtVersion() throws Exception {
+        permissionController.addPermission(Permission.REQUEST_LIGHT_STATUS, null);
+        addUserDevice();
+        permissionController.addUserPermission(device, Permission.REQUEST_LIGHT_STATUS, null);
+
+        final long version = channelPermissions.getPermissionVersion();
+        final PermissionSnapshot snapshot = permissionController.getPermissionSnapshot(device, version);
+        assertEquals(version, snapshot.getVersion());
+        // binary permissions apply to every module
+        assertTrue(snapshot.hasPermission(Permission.REQUEST_LIGHT_STATUS, null));
+        assertTrue(snapshot.hasPermission(Permission.REQUEST_LIGHT_STATUS, "m1"));
+        assertFalse(snapshot.hasPermission(Permission.SWITCH_LIGHT, "m1"));
+        assertTrue(permissionController.getPermissionSnapshots(version).get(device)
+                .hasPermission(Permission.REQUEST_LIGHT_STATUS, null));
+
+        // revoking the permission makes the snapshot outdated, while the snapshot itself stays unchanged
+        permissionController.removeUserPermission(device, Permission.REQUEST_LIGHT_STATUS, null);
+        assertTrue(channelPermissions.getPermissionVersion() > snapshot.getVersion());
+        assertTrue(snapshot.hasPermission(Permission.REQUEST_LIGHT_STATUS, null));
+        assertFalse(permissionController.getPermissionSnapshot(device, channelPermissions.getPermissionVersion())
+                .hasPermission(Permission.REQUEST_LIGHT_STATUS, null));
+
+        // without a connection, the caller has to fall back to the database
+        assertNull(channelPermissions.getSnapshot(device));
+    }
+
+    private void addUserDevice() throws Exception {
+        permissionController.addTemplate("empty");
+        userManagementController.addGroup(new Group("group", "empty"));
+        userManagementController.addUserDevice(new UserDevice("user", "group", device));
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.network;
+
+import android.test.InstrumentationTestCase;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+import de.unipassau.isl.evs.ssh.master.network.HandshakeAdmissionControl.Rejection;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class HandshakeAdmissionControlTest extends InstrumentationTestCase {
+    public void testConnectionsPerAddress() {
+        final HandshakeAdmissionControl control = new HandshakeAdmissionControl(10, 2, 100);
+        final RemoteChannel first = new RemoteChannel("10.0.0.1", 1000);
+        assertNull(control.admit(first));
+        assertNull(control.admit(new RemoteChannel("10.0.0.1", 1001)));
+        assertEquals(Rejection.TOO_MANY_CONNECTIONS_FROM_ADDRESS, control.admit(new RemoteChannel("10.0.0.1", 1002)));
+        // other addresses are not affected
+        assertNull(control.admit(new RemoteChannel("10.0.0.2", 1000)));
+
+        // closing a connection frees its slot
+        first.close();
+        first.runPendingTasks();
+        assertNull(control.admit(new RemoteChannel("10.0.0.1", 1003)));
+        assertEquals(1, control.getRejectedCount(Rejection.TOO_MANY_CONNECTIONS_FROM_ADDRESS));
+        assertEquals(4, control.getAdmittedCount());
+    }
+
+    public void testHalfOpenConnections() {
+        final HandshakeAdmissionControl control = new HandshakeAdmissionControl(2, 10, 100);
+        final RemoteChannel first = new RemoteChannel("10.0.0.1", 1000);
+        final RemoteChannel second = new RemoteChannel("10.0.0.2", 1000);
+        assertNull(control.admit(first));
+        assertNull(control.admit(second));
+        assertEquals(2, control.getHalfOpenCount());
+        assertEquals(Rejection.TOO_MANY_HANDSHAKES, control.admit(new RemoteChannel("10.0.0.3", 1000)));
+
+        // a finished handshake is no longer half-open, even though the connection stays open
+        control.handshakeFinished(first);
+        control.handshakeFinished(first);
+        assertEquals(1, control.getHalfOpenCount());
+        assertNull(control.admit(new RemoteChannel("10.0.0.3", 1000)));
+
+        // closing a connection during its handshake also ends it
+        second.close();
+        second.runPendingTasks();
+        assertEquals(1, control.getHalfOpenCount());
+        assertEquals(1, control.getRejectedCount(Rejection.TOO_MANY_HANDSHAKES));
+    }
+
+    public void testHandshakeRate() {
+        final HandshakeAdmissionControl control = new HandshakeAdmissionControl(10, 10, 2);
+        assertNull(control.admit(new RemoteChannel("10.0.0.1", 1000)));
+        assertNull(control.admit(new RemoteChannel("10.0.0.2", 1000)));
+        assertEquals(Rejection.HANDSHAKE_RATE_EXCEEDED, control.admit(new RemoteChannel("10.0.0.3", 1000)));
+        assertEquals(1, control.getRejectedCount(Rejection.HANDSHAKE_RATE_EXCEEDED));
+        assertEquals(2, control.getAdmittedCount());
+    }
+
+    /**
+     * An EmbeddedChannel that appears to be connected from the given address.
+     */
+    private static class RemoteChannel extends EmbeddedChannel {
+        private final InetSocketAddress remoteAddress;
+
+        private RemoteChannel(String host, int port) {
+            this.remoteAddress = new InetSocketAddress(host, port);
+        }
+
+        @Override
+        protected SocketAddress remoteAddress0() {
+            return remoteAddress;
+        }
+    }
+}
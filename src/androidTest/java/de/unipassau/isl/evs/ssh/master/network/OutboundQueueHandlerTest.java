@@ -0,0 +1,210 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.network;
+
+import android.test.InstrumentationTestCase;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+
+import de.unipassau.isl.evs.ssh.core.CoreConstants;
+import de.unipassau.isl.evs.ssh.core.database.dto.Module;
+import de.unipassau.isl.evs.ssh.core.database.dto.ModuleAccessPoint.USBAccessPoint;
+import de.unipassau.isl.evs.ssh.core.messaging.Message;
+import de.unipassau.isl.evs.ssh.core.messaging.RoutingKey;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.CameraPayload;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.ErrorPayload;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.LightPayload;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.MessagePayload;
+import de.unipassau.isl.evs.ssh.core.naming.DeviceID;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.APP_CAMERA_BROADCAST;
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.APP_LIGHT_UPDATE;
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.SLAVE_LIGHT_SET;
+
+public class OutboundQueueHandlerTest extends InstrumentationTestCase {
+    private final DeviceID master = new DeviceID("YXNqZGZsw7ZrYXNkZmFhc2RmdmF3YXZhc3Zhc3ZhZmE=");
+    private final DeviceID client = new DeviceID("YXNqZGZsw7ZiYXNkZmFhc2RmdmF3YXZhc3Zhc3ZhZmE=");
+    private final Module light1 = new Module("l1", client, CoreConstants.ModuleType.Light, new USBAccessPoint(1));
+    private final Module light2 = new Module("l2", client, CoreConstants.ModuleType.Light, new USBAccessPoint(2));
+
+    private OutboundQueueHandler handler;
+    private ThrottledChannel channel;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        handler = new OutboundQueueHandler(3);
+        channel = new ThrottledChannel(handler);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        channel.finish();
+        super.tearDown();
+    }
+
+    public void testNormalMessagesWaitForWritability() {
+        channel.setWritable(false);
+        final Message.AddressedMessage first = message(SLAVE_LIGHT_SET, new LightPayload(true, light1));
+        final Message.AddressedMessage second = message(SLAVE_LIGHT_SET, new LightPayload(false, light2));
+        final ChannelFuture firstFuture = channel.writeAndFlush(first);
+        final ChannelFuture secondFuture = channel.writeAndFlush(second);
+
+        assertNull(channel.readOutbound());
+        assertEquals(2, handler.getQueueDepth(MessagePriority.NORMAL));
+        assertFalse(firstFuture.isDone());
+
+        channel.setWritable(true);
+        assertSame(first, channel.readOutbound());
+        assertSame(second, channel.readOutbound());
+        assertNull(channel.readOutbound());
+        assertEquals(0, handler.getQueueDepth());
+        assertTrue(firstFuture.isSuccess());
+        assertTrue(secondFuture.isSuccess());
+    }
+
+    public void testLatestStateIsConflated() {
+        channel.setWritable(false);
+        final ChannelFuture olderFuture = channel.writeAndFlush(message(APP_LIGHT_UPDATE, new LightPayload(true, light1)));
+        final Message.AddressedMessage other = message(APP_LIGHT_UPDATE, new LightPayload(true, light2));
+        channel.writeAndFlush(other);
+        final Message.AddressedMessage newer = message(APP_LIGHT_UPDATE, new LightPayload(false, light1));
+        final ChannelFuture newerFuture = channel.writeAndFlush(newer);
+
+        // the older state of the same light is obsolete and considered delivered
+        assertTrue(olderFuture.isSuccess());
+        assertEquals(2, handler.getQueueDepth());
+
+        channel.setWritable(true);
+        // the newer state takes the place of the older one in the queue
+        assertSame(newer, channel.readOutbound());
+        assertSame(other, channel.readOutbound());
+        assertNull(channel.readOutbound());
+        assertTrue(newerFuture.isSuccess());
+    }
+
+    public void testUrgentMessagesIgnoreWritability() {
+        channel.setWritable(false);
+        channel.writeAndFlush(message(SLAVE_LIGHT_SET, new LightPayload(true, light1)));
+        final Message.AddressedMessage error = message(SLAVE_LIGHT_SET, new ErrorPayload("test"));
+        final ChannelFuture future = channel.writeAndFlush(error);
+
+        assertTrue(future.isSuccess());
+        assertSame(error, channel.readOutbound());
+        assertNull(channel.readOutbound());
+        assertEquals(1, handler.getQueueDepth(MessagePriority.NORMAL));
+    }
+
+    public void testQueueLimit() {
+        channel.setWritable(false);
+        for (int i = 0; i < 3; i++) {
+            assertFalse(channel.writeAndFlush(message(SLAVE_LIGHT_SET, new LightPayload(true, light1))).isDone());
+        }
+        final ChannelFuture future = channel.writeAndFlush(message(SLAVE_LIGHT_SET, new LightPayload(true, light1)));
+
+        assertTrue(future.isDone());
+        assertTrue(future.cause() instanceof IOException);
+        assertEquals(3, handler.getQueueDepth());
+    }
+
+    public void testOneBulkMessageAtATime() {
+        final Message.AddressedMessage first = message(APP_CAMERA_BROADCAST, new CameraPayload(0, "c1"));
+        final Message.AddressedMessage second = message(APP_CAMERA_BROADCAST, new CameraPayload(0, "c1"));
+        final ChannelFuture firstFuture = channel.write(first);
+        final ChannelFuture secondFuture = channel.write(second);
+
+        // the second transfer waits until the first one has been passed to the socket
+        assertEquals(1, handler.getQueueDepth(MessagePriority.BULK));
+        assertFalse(firstFuture.isDone());
+
+        channel.flush();
+        assertTrue(firstFuture.isSuccess());
+        assertEquals(0, handler.getQueueDepth(MessagePriority.BULK));
+        channel.flush();
+        assertTrue(secondFuture.isSuccess());
+        assertSame(first, channel.readOutbound());
+        assertSame(second, channel.readOutbound());
+    }
+
+    public void testHigherLanesOvertakeLowerLanes() {
+        channel.setWritable(false);
+        final Message.AddressedMessage picture = message(APP_CAMERA_BROADCAST, new CameraPayload(0, "c1"));
+        final Message.AddressedMessage first = message(SLAVE_LIGHT_SET, new LightPayload(true, light1));
+        final Message.AddressedMessage second = message(SLAVE_LIGHT_SET, new LightPayload(true, light2));
+        channel.writeAndFlush(picture);
+        channel.writeAndFlush(first);
+        channel.writeAndFlush(second);
+        assertEquals(1, handler.getQueueDepth(MessagePriority.BULK));
+        assertEquals(2, handler.getQueueDepth(MessagePriority.NORMAL));
+
+        // the normal messages are kept in order, but overtake the picture that was queued before them
+        channel.setWritable(true);
+        assertSame(first, channel.readOutbound());
+        assertSame(second, channel.readOutbound());
+        channel.flush();
+        assertSame(picture, channel.readOutbound());
+        assertEquals(0, handler.getQueueDepth());
+    }
+
+    public void testCloseFailsQueuedMessages() {
+        channel.setWritable(false);
+        final ChannelFuture future = channel.writeAndFlush(message(SLAVE_LIGHT_SET, new LightPayload(true, light1)));
+        channel.close();
+
+        assertTrue(future.isDone());
+        assertTrue(future.cause() instanceof ClosedChannelException);
+        assertEquals(0, handler.getQueueDepth());
+    }
+
+    private Message.AddressedMessage message(RoutingKey routingKey, MessagePayload payload) {
+        return new Message(payload).setDestination(master, client, routingKey.getKey());
+    }
+
+    /**
+     * An EmbeddedChannel whose write buffer can be declared full.
+     */
+    private static class ThrottledChannel extends EmbeddedChannel {
+        private boolean writable = true;
+
+        private ThrottledChannel(OutboundQueueHandler handler) {
+            super(handler);
+        }
+
+        @Override
+        public boolean isWritable() {
+            return writable;
+        }
+
+        private void setWritable(boolean writable) {
+            this.writable = writable;
+            pipeline().fireChannelWritabilityChanged();
+        }
+    }
+}
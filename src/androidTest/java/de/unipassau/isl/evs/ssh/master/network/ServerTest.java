@@ -54,6 +54,7 @@ import de.unipassau.isl.evs.ssh.core.schedule.ExecutionServiceComponent;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.MessageToMessageDecoder;
+import io.netty.handler.codec.serialization.ObjectDecoder;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.util.concurrent.DefaultPromise;
 import io.netty.util.concurrent.GlobalEventExecutor;
@@ -215,7 +216,7 @@ public class ServerTest extends InstrumentationTestCase {
                 @Override
                 public void channelRegistered(ChannelHandlerContext ctx) throws Exception {
                     super.channelRegistered(ctx);
-                    ctx.pipeline().addAfter(LoggingHandler.class.getSimpleName(), "serverQueue",
+                    ctx.pipeline().addAfter(ObjectDecoder.class.getSimpleName(), "serverQueue",
                             new MessageToMessageDecoder<Object>() {
                                 @Override
                                 protected void decode(ChannelHandlerContext ctx, Object msg, List<Object> out) throws Exception {
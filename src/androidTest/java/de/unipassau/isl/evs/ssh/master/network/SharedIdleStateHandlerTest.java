@@ -0,0 +1,120 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.network;
+
+import android.test.InstrumentationTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.channel.ChannelHandlerAdapter;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.HashedWheelTimer;
+
+public class SharedIdleStateHandlerTest extends InstrumentationTestCase {
+    private HashedWheelTimer timer;
+    private SharedIdleStateHandler handler;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS);
+        handler = new SharedIdleStateHandler(timer, 1, 0, 0);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        timer.stop();
+        super.tearDown();
+    }
+
+    public void testIdleEventsAreFired() throws InterruptedException {
+        final EventRecorder recorder = new EventRecorder();
+        final EmbeddedChannel channel = new EmbeddedChannel(handler, recorder);
+
+        Thread.sleep(1300);
+        channel.runPendingTasks();
+        assertEquals(1, recorder.events.size());
+        assertSame(IdleStateEvent.FIRST_READER_IDLE_STATE_EVENT, recorder.events.get(0));
+
+        // the check is re-armed after firing
+        Thread.sleep(1000);
+        channel.runPendingTasks();
+        assertEquals(2, recorder.events.size());
+        assertSame(IdleStateEvent.READER_IDLE_STATE_EVENT, recorder.events.get(1));
+        channel.finish();
+    }
+
+    public void testReadsPostponeIdleEvents() throws InterruptedException {
+        final EventRecorder recorder = new EventRecorder();
+        final EmbeddedChannel channel = new EmbeddedChannel(handler, recorder);
+
+        for (int i = 0; i < 6; i++) {
+            Thread.sleep(300);
+            channel.writeInbound("ping");
+            channel.runPendingTasks();
+        }
+        assertTrue(recorder.events.isEmpty());
+
+        Thread.sleep(1300);
+        channel.runPendingTasks();
+        assertEquals(1, recorder.events.size());
+        assertSame(IdleStateEvent.FIRST_READER_IDLE_STATE_EVENT, recorder.events.get(0));
+        channel.finish();
+    }
+
+    public void testHandlerIsSharedByChannels() throws InterruptedException {
+        final EventRecorder closedRecorder = new EventRecorder();
+        final EmbeddedChannel closed = new EmbeddedChannel(handler, closedRecorder);
+        final EventRecorder openRecorder = new EventRecorder();
+        final EmbeddedChannel open = new EmbeddedChannel(handler, openRecorder);
+
+        // closing a connection stops its checks without affecting the other connections
+        closed.close();
+        Thread.sleep(1300);
+        closed.runPendingTasks();
+        open.runPendingTasks();
+        assertTrue(closedRecorder.events.isEmpty());
+        assertEquals(1, openRecorder.events.size());
+        open.finish();
+    }
+
+    /**
+     * Records the user events reaching the end of the pipeline.
+     */
+    private static class EventRecorder extends ChannelHandlerAdapter {
+        private final List<Object> events = new ArrayList<>();
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+            events.add(evt);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.network.broadcast;
+
+import android.test.InstrumentationTestCase;
+
+import de.unipassau.isl.evs.ssh.core.container.ContainerService;
+import de.unipassau.isl.evs.ssh.core.container.SimpleContainer;
+import de.unipassau.isl.evs.ssh.master.MasterConfiguration;
+
+import static de.unipassau.isl.evs.ssh.core.messaging.payload.NotificationPayload.NotificationType.SYSTEM_HEALTH_WARNING;
+
+public class NotificationPolicyTest extends InstrumentationTestCase {
+    private SimpleContainer container;
+    private NotificationPolicy policy;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        container = new SimpleContainer();
+        container.register(ContainerService.KEY_CONTEXT,
+                new ContainerService.ContextComponent(getInstrumentation().getTargetContext()));
+        container.register(MasterConfiguration.KEY, new MasterConfiguration());
+        policy = new NotificationPolicy(container.require(MasterConfiguration.KEY));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        container.shutdown();
+        super.tearDown();
+    }
+
+    public void testRepeatedHealthStateIsSuppressed() {
+        assertTrue(policy.admit(SYSTEM_HEALTH_WARNING, true, "Lamp"));
+        assertFalse(policy.admit(SYSTEM_HEALTH_WARNING, true, "Lamp"));
+        assertEquals(1, policy.getSuppressedCount(SYSTEM_HEALTH_WARNING));
+    }
+
+    public void testHealthStateChangesAreDelivered() {
+        // error, recovered, error again: every transition must reach the users
+        assertTrue(policy.admit(SYSTEM_HEALTH_WARNING, true, "Lamp"));
+        assertTrue(policy.admit(SYSTEM_HEALTH_WARNING, false, "Lamp"));
+        assertTrue(policy.admit(SYSTEM_HEALTH_WARNING, true, "Lamp"));
+        assertFalse(policy.admit(SYSTEM_HEALTH_WARNING, true, "Lamp"));
+        assertEquals(1, policy.getSuppressedCount(SYSTEM_HEALTH_WARNING));
+    }
+
+    public void testModulesAreDeduplicatedIndependently() {
+        assertTrue(policy.admit(SYSTEM_HEALTH_WARNING, true, "Lamp"));
+        assertTrue(policy.admit(SYSTEM_HEALTH_WARNING, true, "Camera"));
+        assertFalse(policy.admit(SYSTEM_HEALTH_WARNING, true, "Lamp"));
+        assertFalse(policy.admit(SYSTEM_HEALTH_WARNING, true, "Camera"));
+    }
+}
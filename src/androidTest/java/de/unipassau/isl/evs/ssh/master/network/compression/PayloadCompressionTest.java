@@ -0,0 +1,138 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.network.compression;
+
+import android.test.InstrumentationTestCase;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class PayloadCompressionTest extends InstrumentationTestCase {
+    private static final int THRESHOLD = 1024;
+
+    private final CompressionStatistics statistics = new CompressionStatistics();
+
+    private EmbeddedChannel newChannel(CompressionAlgorithm algorithm) {
+        return new EmbeddedChannel(
+                new PayloadCompressor(algorithm, THRESHOLD, -1, statistics),
+                new PayloadDecompressor(algorithm, statistics)
+        );
+    }
+
+    /**
+     * @return a frame as written by the ObjectEncoder, with compressible data of the given length
+     */
+    private static ByteBuf newFrame(int length) {
+        final ByteBuf frame = Unpooled.buffer(4 + length);
+        frame.writeInt(length);
+        for (int i = 0; i < length; i++) {
+            frame.writeByte(i % 16);
+        }
+        return frame;
+    }
+
+    /**
+     * Write the frame to {@code from}, pass the encoded frame to {@code to} and check that it is decoded unchanged.
+     *
+     * @return a copy of the frame as it was sent over the wire
+     */
+    private static ByteBuf transfer(EmbeddedChannel from, EmbeddedChannel to, int length) {
+        final ByteBuf frame = newFrame(length);
+        final ByteBuf expected = frame.copy();
+        assertTrue(from.writeOutbound(frame));
+        final ByteBuf wire = (ByteBuf) from.readOutbound();
+        final ByteBuf sent = wire.copy();
+        assertTrue(to.writeInbound(wire));
+        final ByteBuf received = (ByteBuf) to.readInbound();
+        assertEquals(expected, received);
+        expected.release();
+        received.release();
+        return sent;
+    }
+
+    private static void assertHeader(ByteBuf wire, CompressionAlgorithm encoding, CompressionAlgorithm supported) {
+        assertEquals(PayloadCompressor.MAGIC, wire.getByte(0));
+        assertEquals(encoding.getId(), wire.getByte(1));
+        assertEquals(supported.getId(), wire.getByte(2));
+    }
+
+    public void testLargeFramesAreCompressedAfterNegotiation() {
+        final EmbeddedChannel client = newChannel(CompressionAlgorithm.DEFLATE);
+        final EmbeddedChannel server = newChannel(CompressionAlgorithm.DEFLATE);
+
+        // the first frame of each side only advertises the algorithm, even if it is small
+        ByteBuf wire = transfer(client, server, 100);
+        assertHeader(wire, CompressionAlgorithm.NONE, CompressionAlgorithm.DEFLATE);
+        wire.release();
+        assertEquals(CompressionAlgorithm.DEFLATE, server.attr(PayloadCompressor.ATTR_NEGOTIATED).get());
+
+        // the server already knows that the client supports compression, so its first frame is compressed
+        wire = transfer(server, client, 8 * 1024);
+        assertHeader(wire, CompressionAlgorithm.DEFLATE, CompressionAlgorithm.DEFLATE);
+        assertTrue(wire.readableBytes() < 8 * 1024);
+        wire.release();
+        assertEquals(CompressionAlgorithm.DEFLATE, client.attr(PayloadCompressor.ATTR_NEGOTIATED).get());
+
+        wire = transfer(client, server, 8 * 1024);
+        assertHeader(wire, CompressionAlgorithm.DEFLATE, CompressionAlgorithm.DEFLATE);
+        assertTrue(wire.readableBytes() < 8 * 1024);
+        wire.release();
+
+        // small frames are sent without header once the algorithm was advertised
+        wire = transfer(client, server, 100);
+        assertEquals(4 + 100, wire.readableBytes());
+        assertEquals(0, wire.getByte(0));
+        wire.release();
+
+        assertEquals(2, statistics.getCompressedFrames());
+        assertEquals(2, statistics.getDecompressedFrames());
+        assertFalse(client.finish());
+        assertFalse(server.finish());
+    }
+
+    public void testNoCompressionWithoutCommonAlgorithm() {
+        final EmbeddedChannel client = newChannel(CompressionAlgorithm.NONE);
+        final EmbeddedChannel server = newChannel(CompressionAlgorithm.DEFLATE);
+
+        ByteBuf wire = transfer(client, server, 100);
+        assertHeader(wire, CompressionAlgorithm.NONE, CompressionAlgorithm.NONE);
+        wire.release();
+        assertEquals(CompressionAlgorithm.NONE, server.attr(PayloadCompressor.ATTR_NEGOTIATED).get());
+
+        wire = transfer(server, client, 8 * 1024);
+        assertHeader(wire, CompressionAlgorithm.NONE, CompressionAlgorithm.DEFLATE);
+        wire.release();
+        wire = transfer(server, client, 8 * 1024);
+        assertEquals(4 + 8 * 1024, wire.readableBytes());
+        wire.release();
+
+        assertEquals(0, statistics.getCompressedFrames());
+        assertFalse(client.finish());
+        assertFalse(server.finish());
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.state;
+
+import android.test.InstrumentationTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.unipassau.isl.evs.ssh.master.state.DeviceStateStore.Attribute;
+import de.unipassau.isl.evs.ssh.master.state.DeviceStateStore.State;
+import de.unipassau.isl.evs.ssh.master.state.DeviceStateStore.StateListener;
+
+public class DeviceStateStoreTest extends InstrumentationTestCase {
+    private DeviceStateStore store;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        store = new DeviceStateStore();
+    }
+
+    public void testPutAndGet() {
+        assertNull(store.get("l1", Attribute.LIGHT_ON));
+        final State first = store.put("l1", Attribute.LIGHT_ON, true);
+        final State second = store.put("l1", Attribute.LIGHT_ON, false);
+
+        assertTrue(second.getVersion() > first.getVersion());
+        assertEquals(second.getVersion(), store.getVersion());
+        assertSame(second, store.get("l1", Attribute.LIGHT_ON));
+        // attributes are stored separately
+        assertNull(store.get("l1", Attribute.DOOR_OPEN));
+        assertEquals(1, store.getAll(Attribute.LIGHT_ON).size());
+    }
+
+    public void testGetValue() {
+        assertEquals(Boolean.TRUE, store.getValue("l1", Attribute.LIGHT_ON, Boolean.class, true));
+        store.put("l1", Attribute.LIGHT_ON, false);
+        assertEquals(Boolean.FALSE, store.getValue("l1", Attribute.LIGHT_ON, Boolean.class, true));
+    }
+
+    public void testGetIfFresh() throws InterruptedException {
+        store.put("l1", Attribute.LIGHT_ON, true);
+        assertNotNull(store.getIfFresh("l1", Attribute.LIGHT_ON, 10 * 1000));
+        Thread.sleep(50);
+        assertNull(store.getIfFresh("l1", Attribute.LIGHT_ON, 10));
+        assertNull(store.getIfFresh("l2", Attribute.LIGHT_ON, 10 * 1000));
+    }
+
+    public void testRemove() {
+        store.put("d1", Attribute.DOOR_OPEN, true);
+        store.put("d1", Attribute.DOOR_BLOCKED, false);
+        store.put("d2", Attribute.DOOR_OPEN, false);
+        store.remove("d1");
+
+        assertNull(store.get("d1", Attribute.DOOR_OPEN));
+        assertNull(store.get("d1", Attribute.DOOR_BLOCKED));
+        assertNotNull(store.get("d2", Attribute.DOOR_OPEN));
+    }
+
+    public void testListenersAreOnlyNotifiedOfChanges() {
+        final List<State> notified = new ArrayList<>();
+        final StateListener listener = new StateListener() {
+            @Override
+            public void onStateChanged(String moduleName, Attribute attribute, State previous, State current) {
+                assertEquals("l1", moduleName);
+                assertEquals(Attribute.LIGHT_ON, attribute);
+                notified.add(previous);
+                notified.add(current);
+            }
+        };
+        store.addListener(listener);
+
+        final State first = store.put("l1", Attribute.LIGHT_ON, true);
+        final State unchanged = store.put("l1", Attribute.LIGHT_ON, true);
+        final State changed = store.put("l1", Attribute.LIGHT_ON, false);
+        store.removeListener(listener);
+        store.put("l1", Attribute.LIGHT_ON, true);
+
+        assertEquals(4, notified.size());
+        assertNull(notified.get(0));
+        assertSame(first, notified.get(1));
+        // the unchanged value still refreshed the state
+        assertSame(unchanged, notified.get(2));
+        assertSame(changed, notified.get(3));
+    }
+
+    public void testConcurrentUpdates() throws InterruptedException {
+        final int threadCount = 4;
+        final int putsPerThread = 1000;
+        final AtomicInteger changes = new AtomicInteger();
+        final AtomicBoolean outOfOrder = new AtomicBoolean();
+        store.addListener(new StateListener() {
+            @Override
+            public void onStateChanged(String moduleName, Attribute attribute, State previous, State current) {
+                changes.incrementAndGet();
+                if (previous != null && previous.getVersion() >= current.getVersion()) {
+                    outOfOrder.set(true);
+                }
+            }
+        });
+
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            final int offset = i * putsPerThread;
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < putsPerThread; j++) {
+                        store.put("c1", Attribute.CLIMATE, offset + j);
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // every put replaced the state it read, so no update was lost and versions only grow
+        assertEquals(threadCount * putsPerThread, changes.get());
+        assertFalse(outOfOrder.get());
+        final State last = store.get("c1", Attribute.CLIMATE);
+        assertEquals(store.getVersion(), last.getVersion());
+        assertEquals(putsPerThread - 1, (Integer) last.getValue() % putsPerThread);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.loadtest;
+
+import de.unipassau.isl.evs.ssh.master.network.metrics.ConnectionMetrics;
+import de.unipassau.isl.evs.ssh.master.network.metrics.Histogram;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formats the results of a {@link LoadTest} run.
+ *
+ * @author Team
+ */
+public class LoadReport {
+    private static final long MB = 1024 * 1024;
+
+    private final LoadStatistics statistics;
+    private final ResourceSampler sampler;
+    private final long durationNanos;
+    private final ConnectionMetrics metrics;
+
+    public LoadReport(LoadStatistics statistics, ResourceSampler sampler, long durationNanos, ConnectionMetrics metrics) {
+        this.statistics = statistics;
+        this.sampler = sampler;
+        this.durationNanos = durationNanos;
+        this.metrics = metrics;
+    }
+
+    public void print(PrintStream out) {
+        final double seconds = durationNanos / (double) TimeUnit.SECONDS.toNanos(1);
+        out.println();
+        out.printf("Measured %.1fs, %d messages sent (%.1f/s), %d pushes received (%.1f/s)%n",
+                seconds, statistics.getTotalSent(), statistics.getTotalSent() / seconds,
+                statistics.getPushesReceived(), statistics.getPushesReceived() / seconds);
+        out.println();
+        out.printf("%-12s %10s %8s %8s %8s %8s %8s %8s %8s%n",
+                "kind", "sent", "msg/s", "errors", "timeouts", "mean ms", "p50 ms", "p99 ms", "max ms");
+        for (TrafficMix.Kind kind : TrafficMix.Kind.values()) {
+            final long sent = statistics.getSent(kind);
+            if (sent == 0) {
+                continue;
+            }
+            if (kind.isExpectingReply()) {
+                final Histogram latency = statistics.getLatency(kind);
+                out.printf("%-12s %10d %8.1f %8d %8d %8d %8s %8s %8d%n",
+                        kind, sent, sent / seconds, statistics.getFailed(kind), statistics.getTimedOut(kind),
+                        latency.getMean(TimeUnit.MILLISECONDS), formatBound(latency.getPercentileMillis(0.5)),
+                        formatBound(latency.getPercentileMillis(0.99)), latency.getMax(TimeUnit.MILLISECONDS));
+            } else {
+                out.printf("%-12s %10d %8.1f%n", kind, sent, sent / seconds);
+            }
+        }
+        out.println();
+        out.printf("Master CPU: %.0f%% of one core%n", sampler.getMasterCpuUsage() * 100);
+        out.printf("Heap (Master and simulated devices): avg %dMB, max %dMB of %dMB%n",
+                sampler.getAverageHeapUsed() / MB, sampler.getMaxHeapUsed() / MB, sampler.getMaxHeap() / MB);
+        out.println("Master connection metrics: " + metrics);
+    }
+
+    private static String formatBound(long millis) {
+        return millis == Long.MAX_VALUE ? ">10000" : "<=" + millis;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.loadtest;
+
+import de.unipassau.isl.evs.ssh.master.network.metrics.Histogram;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the messages sent and answered by all simulated Devices and records the round-trip latency of requests.
+ *
+ * @author Team
+ */
+public class LoadStatistics {
+    private final Map<TrafficMix.Kind, AtomicLong> sent = new EnumMap<>(TrafficMix.Kind.class);
+    private final Map<TrafficMix.Kind, AtomicLong> failed = new EnumMap<>(TrafficMix.Kind.class);
+    private final Map<TrafficMix.Kind, AtomicLong> timedOut = new EnumMap<>(TrafficMix.Kind.class);
+    private final Map<TrafficMix.Kind, Histogram> latencies = new EnumMap<>(TrafficMix.Kind.class);
+    private final AtomicLong pushesReceived = new AtomicLong();
+    private final AtomicLong connectFailures = new AtomicLong();
+    private final Histogram handshakes = new Histogram();
+
+    public LoadStatistics() {
+        for (TrafficMix.Kind kind : TrafficMix.Kind.values()) {
+            sent.put(kind, new AtomicLong());
+            failed.put(kind, new AtomicLong());
+            timedOut.put(kind, new AtomicLong());
+            latencies.put(kind, new Histogram());
+        }
+    }
+
+    public void recordSent(TrafficMix.Kind kind) {
+        sent.get(kind).incrementAndGet();
+    }
+
+    public void recordReply(TrafficMix.Kind kind, long latencyNanos, boolean isError) {
+        if (isError) {
+            failed.get(kind).incrementAndGet();
+        }
+        latencies.get(kind).record(latencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordTimeout(TrafficMix.Kind kind) {
+        timedOut.get(kind).incrementAndGet();
+    }
+
+    /**
+     * Count a message the Master sent on its own, e.g. a broadcast of a new light status or a notification.
+     */
+    public void recordPush() {
+        pushesReceived.incrementAndGet();
+    }
+
+    public void recordHandshake(long durationNanos) {
+        handshakes.record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordConnectFailure() {
+        connectFailures.incrementAndGet();
+    }
+
+    public long getSent(TrafficMix.Kind kind) {
+        return sent.get(kind).get();
+    }
+
+    public long getFailed(TrafficMix.Kind kind) {
+        return failed.get(kind).get();
+    }
+
+    public long getTimedOut(TrafficMix.Kind kind) {
+        return timedOut.get(kind).get();
+    }
+
+    public Histogram getLatency(TrafficMix.Kind kind) {
+        return latencies.get(kind);
+    }
+
+    public long getTotalSent() {
+        long total = 0;
+        for (AtomicLong count : sent.values()) {
+            total += count.get();
+        }
+        return total;
+    }
+
+    public long getPushesReceived() {
+        return pushesReceived.get();
+    }
+
+    public long getConnectFailures() {
+        return connectFailures.get();
+    }
+
+    public Histogram getHandshakes() {
+        return handshakes;
+    }
+}
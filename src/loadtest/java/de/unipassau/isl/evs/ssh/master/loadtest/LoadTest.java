@@ -0,0 +1,308 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.loadtest;
+
+import de.unipassau.isl.evs.ssh.core.CoreConstants;
+import de.unipassau.isl.evs.ssh.core.database.dto.Module;
+import de.unipassau.isl.evs.ssh.core.database.dto.ModuleAccessPoint.MockAccessPoint;
+import de.unipassau.isl.evs.ssh.core.database.dto.Slave;
+import de.unipassau.isl.evs.ssh.core.database.dto.UserDevice;
+import de.unipassau.isl.evs.ssh.core.sec.Permission;
+import de.unipassau.isl.evs.ssh.master.MasterConfiguration;
+import de.unipassau.isl.evs.ssh.master.MasterContainer;
+import de.unipassau.isl.evs.ssh.master.database.PermissionController;
+import de.unipassau.isl.evs.ssh.master.database.SlaveController;
+import de.unipassau.isl.evs.ssh.master.database.UserManagementController;
+import de.unipassau.isl.evs.ssh.master.network.Server;
+import de.unipassau.isl.evs.ssh.master.network.metrics.ConnectionMetrics;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.Future;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts a Master on loopback and connects simulated apps and slaves with generated certificates to it, which perform
+ * real handshakes and then send a configurable mix of requests and events. Reports throughput, latency percentiles
+ * and the CPU and heap usage of the Master, so that the capacity of a Master can be measured on a single machine.
+ * <p>
+ * Must be run in a directory containing {@code CreateDB.sql}, as the Master creates its database in the working
+ * directory. Use {@code gradle loadTest -PloadTestArgs="--apps 100 --slaves 10"} or pass the options below directly:
+ * <pre>
+ * --apps N             number of simulated apps (default 10)
+ * --slaves M           number of simulated slaves (default 2)
+ * --lights L           number of lights per slave (default 4)
+ * --app-rate R         requests per second sent by each app (default 2)
+ * --slave-rate R       events per second sent by each slave (default 1)
+ * --mix SPEC           weights of the message kinds (default {@value TrafficMix#DEFAULT})
+ * --warmup S           seconds to run before measuring (default 5)
+ * --duration S         seconds to measure (default 60)
+ * --client-threads T   threads used by the simulated devices (default 2)
+ * </pre>
+ *
+ * @author Team
+ */
+public class LoadTest {
+    private final Map<String, String> options = new LinkedHashMap<>();
+
+    private final LoadStatistics warmupStatistics = new LoadStatistics();
+    private final List<SimulatedDevice> devices = new ArrayList<>();
+    private MasterContainer master;
+    private EventLoopGroup clientGroup;
+
+    public static void main(String[] args) throws Exception {
+        final LoadTest test = new LoadTest();
+        test.parseOptions(args);
+        test.run();
+    }
+
+    private void parseOptions(String[] args) {
+        options.put("apps", "10");
+        options.put("slaves", "2");
+        options.put("lights", "4");
+        options.put("app-rate", "2");
+        options.put("slave-rate", "1");
+        options.put("mix", TrafficMix.DEFAULT);
+        options.put("warmup", "5");
+        options.put("duration", "60");
+        options.put("client-threads", "2");
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length || !options.containsKey(args[i].substring(2))) {
+                throw new IllegalArgumentException("Illegal option " + args[i] + ", valid options are " + options.keySet());
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+    }
+
+    private int getInt(String option) {
+        return Integer.parseInt(options.get(option));
+    }
+
+    private double getDouble(String option) {
+        return Double.parseDouble(options.get(option));
+    }
+
+    private void run() throws Exception {
+        System.out.println("Starting load test with " + options);
+        final int port = findFreePort();
+        startMaster(port);
+        final InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        clientGroup = new NioEventLoopGroup(getInt("client-threads"), new DefaultThreadFactory("loadtest-client"));
+        try {
+            final LoadStatistics statistics = new LoadStatistics();
+            final ForwardingStatistics forwarding = new ForwardingStatistics(warmupStatistics);
+            createDevices(forwarding);
+            connectDevices(address);
+
+            System.out.println("Warming up for " + getInt("warmup") + "s");
+            TimeUnit.SECONDS.sleep(getInt("warmup"));
+
+            forwarding.setTarget(statistics);
+            final ResourceSampler sampler = new ResourceSampler();
+            final long start = System.nanoTime();
+            System.out.println("Measuring for " + getInt("duration") + "s");
+            for (int i = 0; i < getInt("duration"); i++) {
+                TimeUnit.SECONDS.sleep(1);
+                sampler.sample();
+            }
+            final long duration = System.nanoTime() - start;
+
+            new LoadReport(statistics, sampler, duration, master.require(ConnectionMetrics.KEY)).print(System.out);
+        } finally {
+            for (SimulatedDevice device : devices) {
+                device.close();
+            }
+            clientGroup.shutdownGracefully().await();
+            master.onDestroy();
+        }
+    }
+
+    private void startMaster(int port) throws IOException {
+        final File config = File.createTempFile("loadtest", ".conf");
+        config.deleteOnExit();
+        try (PrintWriter writer = new PrintWriter(config)) {
+            writer.println("[Connection]");
+            writer.println("LocalPort = " + port);
+            writer.println("PublicPort = " + port);
+            writer.println("MaxPendingHandshakes = " + Integer.MAX_VALUE);
+            writer.println("MaxConnectionsPerAddress = " + Integer.MAX_VALUE);
+            writer.println("HandshakesPerSecond = " + Integer.MAX_VALUE);
+        }
+        final File keystore = File.createTempFile("loadtest", ".keystore");
+        keystore.delete();
+        keystore.deleteOnExit();
+        System.setProperty(MasterConfiguration.PROPERTY_CONFIG_FILE, config.getAbsolutePath());
+        System.setProperty(MasterConfiguration.PROPERTY_KEYSTORE_FILE, keystore.getAbsolutePath());
+
+        master = new MasterContainer();
+        master.onCreate();
+        System.out.println("Master started on port " + master.require(Server.KEY).getLocalPort());
+    }
+
+    /**
+     * Generate the identities of all simulated Devices and register them with their Modules and Permissions in the
+     * database of the Master, like the registration process of the apps would do.
+     */
+    private void createDevices(LoadStatistics statistics) throws Exception {
+        final SlaveController slaveController = master.require(SlaveController.KEY);
+        final PermissionController permissionController = master.require(PermissionController.KEY);
+        final UserManagementController userController = master.require(UserManagementController.KEY);
+        final TrafficMix mix = TrafficMix.parse(options.get("mix"));
+
+        final List<Module> lights = new ArrayList<>();
+        final List<String> doors = new ArrayList<>();
+        for (int s = 0; s < getInt("slaves"); s++) {
+            final DeviceIdentity identity = DeviceIdentity.generate("loadtest-slave-" + s);
+            slaveController.addSlave(new Slave("loadtest-slave-" + s, identity.getDeviceID(), null));
+            for (int l = 0; l < getInt("lights"); l++) {
+                lights.add(addModule(identity, "light-" + s + "-" + l, CoreConstants.ModuleType.Light));
+            }
+            final Module doorSensor = addModule(identity, "door-sensor-" + s, CoreConstants.ModuleType.DoorSensor);
+            final Module doorBuzzer = addModule(identity, "door-buzzer-" + s, CoreConstants.ModuleType.DoorBuzzer);
+            final Module weatherBoard = addModule(identity, "weather-" + s, CoreConstants.ModuleType.WeatherBoard);
+            if (s == 0) {
+                // the MasterDoorBellHandler requests a picture from the first camera whenever the bell rings
+                addModule(identity, "camera-" + s, CoreConstants.ModuleType.Webcam);
+            }
+            doors.add(doorSensor.getName());
+            devices.add(new SimulatedSlave(identity, statistics, mix, getDouble("slave-rate"),
+                    doorSensor, doorBuzzer, weatherBoard));
+        }
+
+        final String group = userController.getGroups().get(0).getName();
+        for (int a = 0; a < getInt("apps"); a++) {
+            final DeviceIdentity identity = DeviceIdentity.generate("loadtest-app-" + a);
+            userController.addUserDevice(new UserDevice("loadtest-app-" + a, group, identity.getDeviceID()));
+            for (Permission permission : Permission.binaryPermissions) {
+                permissionController.addUserPermission(identity.getDeviceID(), permission, null);
+            }
+            for (Module module : slaveController.getModules()) {
+                final Permission[] permissions = Permission.getPermissions(module.getModuleType());
+                if (permissions != null) {
+                    for (Permission permission : permissions) {
+                        permissionController.addUserPermission(identity.getDeviceID(), permission, module.getName());
+                    }
+                }
+            }
+            devices.add(new SimulatedApp(identity, statistics, mix, getDouble("app-rate"), lights, doors));
+        }
+    }
+
+    private Module addModule(DeviceIdentity slave, String name, CoreConstants.ModuleType type) throws Exception {
+        final Module module = new Module(name, slave.getDeviceID(), type, new MockAccessPoint());
+        master.require(SlaveController.KEY).addModule(module);
+        final Permission[] permissions = Permission.getPermissions(type);
+        if (permissions != null) {
+            for (Permission permission : permissions) {
+                master.require(PermissionController.KEY).addPermission(permission, name);
+            }
+        }
+        return module;
+    }
+
+    private void connectDevices(InetSocketAddress address) throws InterruptedException {
+        System.out.println("Connecting " + devices.size() + " devices");
+        final List<Future<Void>> futures = new ArrayList<>();
+        for (SimulatedDevice device : devices) {
+            futures.add(device.connect(clientGroup, address));
+        }
+        int connected = 0;
+        for (int i = 0; i < futures.size(); i++) {
+            final Future<Void> future = futures.get(i).await();
+            if (future.isSuccess()) {
+                connected++;
+            } else {
+                warmupStatistics.recordConnectFailure();
+                System.out.println("Could not connect " + devices.get(i).getIdentity().getDeviceID() + ": " + future.cause());
+            }
+        }
+        System.out.println(connected + " of " + devices.size() + " devices connected, handshakes: "
+                + warmupStatistics.getHandshakes());
+    }
+
+    private static int findFreePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Passes all recorded values on to a target that can be switched after the warmup.
+     */
+    private static class ForwardingStatistics extends LoadStatistics {
+        private volatile LoadStatistics target;
+
+        private ForwardingStatistics(LoadStatistics target) {
+            this.target = target;
+        }
+
+        private void setTarget(LoadStatistics target) {
+            this.target = target;
+        }
+
+        @Override
+        public void recordSent(TrafficMix.Kind kind) {
+            target.recordSent(kind);
+        }
+
+        @Override
+        public void recordReply(TrafficMix.Kind kind, long latencyNanos, boolean isError) {
+            target.recordReply(kind, latencyNanos, isError);
+        }
+
+        @Override
+        public void recordTimeout(TrafficMix.Kind kind) {
+            target.recordTimeout(kind);
+        }
+
+        @Override
+        public void recordPush() {
+            target.recordPush();
+        }
+
+        @Override
+        public void recordHandshake(long durationNanos) {
+            target.recordHandshake(durationNanos);
+        }
+
+        @Override
+        public void recordConnectFailure() {
+            target.recordConnectFailure();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.loadtest;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Samples the heap usage of the JVM and the CPU time used by the threads of the Master. As the simulated Devices run
+ * in the same JVM, only threads whose name starts with {@value #MASTER_THREAD_PREFIX} are counted as Master CPU time.
+ *
+ * @author Team
+ */
+public class ResourceSampler {
+    private static final String MASTER_THREAD_PREFIX = "master-";
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final Map<Long, Long> initialCpuTime = new HashMap<>();
+    private final long started = System.nanoTime();
+
+    private long maxHeapUsed;
+    private long heapUsedSum;
+    private int samples;
+    private long masterCpuTime;
+
+    public ResourceSampler() {
+        if (threads.isThreadCpuTimeSupported() && !threads.isThreadCpuTimeEnabled()) {
+            threads.setThreadCpuTimeEnabled(true);
+        }
+        for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+            if (info != null && info.getThreadName().startsWith(MASTER_THREAD_PREFIX)) {
+                initialCpuTime.put(info.getThreadId(), Math.max(0, threads.getThreadCpuTime(info.getThreadId())));
+            }
+        }
+    }
+
+    public void sample() {
+        final long heapUsed = memory.getHeapMemoryUsage().getUsed();
+        maxHeapUsed = Math.max(maxHeapUsed, heapUsed);
+        heapUsedSum += heapUsed;
+        samples++;
+
+        long cpuTime = 0;
+        for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+            if (info != null && info.getThreadName().startsWith(MASTER_THREAD_PREFIX)) {
+                final long time = threads.getThreadCpuTime(info.getThreadId());
+                if (time > 0) {
+                    final Long initial = initialCpuTime.get(info.getThreadId());
+                    cpuTime += time - (initial != null ? initial : 0);
+                }
+            }
+        }
+        masterCpuTime = Math.max(masterCpuTime, cpuTime);
+    }
+
+    public long getMaxHeapUsed() {
+        return maxHeapUsed;
+    }
+
+    public long getAverageHeapUsed() {
+        return samples == 0 ? 0 : heapUsedSum / samples;
+    }
+
+    public long getMaxHeap() {
+        return memory.getHeapMemoryUsage().getMax();
+    }
+
+    /**
+     * @return the CPU time used by the Master's threads in relation to the elapsed time, 1.0 being one busy core
+     */
+    public double getMasterCpuUsage() {
+        return masterCpuTime / (double) Math.max(1, System.nanoTime() - started);
+    }
+}
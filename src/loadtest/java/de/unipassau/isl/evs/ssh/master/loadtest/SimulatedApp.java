@@ -0,0 +1,163 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.loadtest;
+
+import de.unipassau.isl.evs.ssh.core.database.dto.Module;
+import de.unipassau.isl.evs.ssh.core.messaging.Message;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.DoorPayload;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.ErrorPayload;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.LightPayload;
+import io.netty.channel.Channel;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static de.unipassau.isl.evs.ssh.core.messaging.Message.HEADER_REFERENCES_ID;
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.MASTER_DOOR_GET;
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.MASTER_LIGHT_GET;
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.MASTER_LIGHT_SET;
+
+/**
+ * A simulated user app that sends requests to the Master at a fixed rate and measures the time until they are
+ * answered. Messages the Master sends on its own, like status broadcasts and notifications, are only counted.
+ *
+ * @author Team
+ */
+public class SimulatedApp extends SimulatedDevice {
+    private static final long REQUEST_TIMEOUT = TimeUnit.SECONDS.toNanos(10);
+
+    private final TrafficMix mix;
+    private final double requestsPerSecond;
+    private final List<Module> lights;
+    private final List<String> doors;
+    private final Random random = new Random();
+    /**
+     * Requests that haven't been answered yet by their sequence number, only accessed from the event loop.
+     */
+    private final Map<Integer, PendingRequest> pending = new HashMap<>();
+
+    public SimulatedApp(DeviceIdentity identity, LoadStatistics statistics, TrafficMix mix, double requestsPerSecond,
+                        List<Module> lights, List<String> doors) {
+        super(identity, statistics);
+        this.mix = mix;
+        this.requestsPerSecond = requestsPerSecond;
+        this.lights = lights;
+        this.doors = doors;
+    }
+
+    @Override
+    protected void onConnected(Channel channel) {
+        if (requestsPerSecond <= 0) {
+            return;
+        }
+        final long period = (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+        // spread the first requests of all apps over one period
+        final long initialDelay = (long) (random.nextDouble() * period);
+        channel.eventLoop().scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                sendRequest();
+            }
+        }, initialDelay, period, TimeUnit.NANOSECONDS);
+        channel.eventLoop().scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                expireRequests();
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    private void sendRequest() {
+        if (!getChannel().isActive()) {
+            return;
+        }
+        final TrafficMix.Kind kind = mix.pick(random, false);
+        if (kind == null) {
+            return;
+        }
+        final Message.AddressedMessage sent;
+        switch (kind) {
+            case LIGHT_SET:
+                if (lights.isEmpty()) return;
+                sent = send(MASTER_LIGHT_SET, new LightPayload(random.nextBoolean(), randomElement(lights)));
+                break;
+            case LIGHT_GET:
+                if (lights.isEmpty()) return;
+                sent = send(MASTER_LIGHT_GET, new LightPayload(false, randomElement(lights)));
+                break;
+            case DOOR_GET:
+                if (doors.isEmpty()) return;
+                sent = send(MASTER_DOOR_GET, new DoorPayload(randomElement(doors)));
+                break;
+            default:
+                throw new IllegalArgumentException("Apps can't send " + kind);
+        }
+        statistics.recordSent(kind);
+        pending.put(sent.getSequenceNr(), new PendingRequest(kind, System.nanoTime()));
+    }
+
+    private void expireRequests() {
+        final long now = System.nanoTime();
+        for (Iterator<PendingRequest> it = pending.values().iterator(); it.hasNext(); ) {
+            final PendingRequest request = it.next();
+            if (now - request.sent > REQUEST_TIMEOUT) {
+                statistics.recordTimeout(request.kind);
+                it.remove();
+            }
+        }
+    }
+
+    @Override
+    protected void handleMessage(Message.AddressedMessage message) {
+        final Integer referencedID = message.getHeader(HEADER_REFERENCES_ID);
+        final PendingRequest request = referencedID != null ? pending.remove(referencedID) : null;
+        if (request != null) {
+            final boolean isError = message.getPayload() instanceof ErrorPayload;
+            statistics.recordReply(request.kind, System.nanoTime() - request.sent, isError);
+        } else {
+            statistics.recordPush();
+        }
+    }
+
+    private <T> T randomElement(List<T> list) {
+        return list.get(random.nextInt(list.size()));
+    }
+
+    private static class PendingRequest {
+        private final TrafficMix.Kind kind;
+        private final long sent;
+
+        private PendingRequest(TrafficMix.Kind kind, long sent) {
+            this.kind = kind;
+            this.sent = sent;
+        }
+    }
+}
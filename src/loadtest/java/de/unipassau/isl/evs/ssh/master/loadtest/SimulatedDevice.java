@@ -0,0 +1,238 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.loadtest;
+
+import de.unipassau.isl.evs.ssh.core.messaging.Message;
+import de.unipassau.isl.evs.ssh.core.messaging.RoutingKey;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.MessagePayload;
+import de.unipassau.isl.evs.ssh.core.naming.DeviceID;
+import de.unipassau.isl.evs.ssh.core.network.handler.Decrypter;
+import de.unipassau.isl.evs.ssh.core.network.handler.Encrypter;
+import de.unipassau.isl.evs.ssh.core.network.handler.SignatureChecker;
+import de.unipassau.isl.evs.ssh.core.network.handler.SignatureGenerator;
+import de.unipassau.isl.evs.ssh.core.network.handler.TimeoutHandler;
+import de.unipassau.isl.evs.ssh.core.network.handshake.HandshakeException;
+import de.unipassau.isl.evs.ssh.core.network.handshake.HandshakePacket;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerAdapter;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.serialization.ClassResolvers;
+import io.netty.handler.codec.serialization.ObjectDecoder;
+import io.netty.handler.codec.serialization.ObjectEncoder;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.concurrent.DefaultPromise;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+
+import static de.unipassau.isl.evs.ssh.core.CoreConstants.NettyConstants.ALL_IDLE_TIME;
+import static de.unipassau.isl.evs.ssh.core.CoreConstants.NettyConstants.READER_IDLE_TIME;
+import static de.unipassau.isl.evs.ssh.core.CoreConstants.NettyConstants.WRITER_IDLE_TIME;
+import static de.unipassau.isl.evs.ssh.core.messaging.Message.HEADER_REFERENCES_ID;
+
+/**
+ * A Device connecting to the Master over loopback, performing the same handshake as the real apps and slaves.
+ * Subclasses decide which messages are sent once the handshake is finished and how received messages are answered.
+ *
+ * @author Team
+ */
+public abstract class SimulatedDevice extends ChannelHandlerAdapter {
+    protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+    protected final DeviceIdentity identity;
+    protected final LoadStatistics statistics;
+
+    private Channel channel;
+    private DeviceID masterID;
+    private byte[] chapChallenge;
+    private long handshakeStarted;
+    private Promise<Void> handshakeFuture;
+
+    protected SimulatedDevice(DeviceIdentity identity, LoadStatistics statistics) {
+        this.identity = identity;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Connect to the Master and start the handshake.
+     *
+     * @return a Future that completes once the Master accepted this Device
+     */
+    public Future<Void> connect(EventLoopGroup group, InetSocketAddress address) {
+        handshakeFuture = new DefaultPromise<>(group.next());
+        final ChannelFuture future = new Bootstrap()
+                .group(group)
+                .channel(NioSocketChannel.class)
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) throws Exception {
+                        ch.pipeline().addLast(ObjectEncoder.class.getSimpleName(), new ObjectEncoder());
+                        ch.pipeline().addLast(ObjectDecoder.class.getSimpleName(), new ObjectDecoder(
+                                ClassResolvers.weakCachingConcurrentResolver(getClass().getClassLoader())));
+                        ch.pipeline().addLast(IdleStateHandler.class.getSimpleName(),
+                                new IdleStateHandler(READER_IDLE_TIME, WRITER_IDLE_TIME, ALL_IDLE_TIME));
+                        ch.pipeline().addLast(TimeoutHandler.class.getSimpleName(), new TimeoutHandler());
+                        ch.pipeline().addLast(SimulatedDevice.class.getSimpleName(), SimulatedDevice.this);
+                    }
+                })
+                .connect(address);
+        future.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                if (!future.isSuccess()) {
+                    handshakeFuture.tryFailure(future.cause());
+                }
+            }
+        });
+        return handshakeFuture;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        channel = ctx.channel();
+        handshakeStarted = System.nanoTime();
+        ctx.writeAndFlush(new HandshakePacket.Hello(identity.getCertificate(), false))
+                .addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof Message.AddressedMessage) {
+            handleMessage((Message.AddressedMessage) msg);
+        } else if (msg instanceof HandshakePacket.Hello) {
+            handleHello(ctx, (HandshakePacket.Hello) msg);
+        } else if (msg instanceof HandshakePacket.CHAP) {
+            handleChap(ctx, (HandshakePacket.CHAP) msg);
+        } else if (msg instanceof HandshakePacket.ServerAuthenticationResponse) {
+            handleAuthenticationResponse(ctx, (HandshakePacket.ServerAuthenticationResponse) msg);
+        } else {
+            super.channelRead(ctx, msg);
+        }
+    }
+
+    private void handleHello(ChannelHandlerContext ctx, HandshakePacket.Hello msg) {
+        final X509Certificate masterCertificate = msg.certificate;
+        masterID = DeviceID.fromCertificate(masterCertificate);
+
+        // add Security handlers in front of the serialization, in reverse order
+        final PublicKey masterKey = masterCertificate.getPublicKey();
+        ctx.pipeline().addFirst(SignatureGenerator.class.getSimpleName(), new SignatureGenerator(identity.getPrivateKey()));
+        ctx.pipeline().addFirst(SignatureChecker.class.getSimpleName(), new SignatureChecker(masterKey));
+        ctx.pipeline().addFirst(Decrypter.class.getSimpleName(), new Decrypter(identity.getPrivateKey()));
+        ctx.pipeline().addFirst(Encrypter.class.getSimpleName(), new Encrypter(masterKey));
+
+        chapChallenge = new byte[HandshakePacket.CHAP.CHALLENGE_LENGTH];
+        new SecureRandom().nextBytes(chapChallenge);
+        ctx.writeAndFlush(new HandshakePacket.CHAP(chapChallenge, null)).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+    }
+
+    private void handleChap(ChannelHandlerContext ctx, HandshakePacket.CHAP msg) throws HandshakeException {
+        if (msg.challenge == null || !Arrays.equals(chapChallenge, msg.response)) {
+            throw new HandshakeException("Master sent an invalid CHAP response");
+        }
+        ctx.writeAndFlush(new HandshakePacket.CHAP(null, msg.challenge)).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+    }
+
+    private void handleAuthenticationResponse(ChannelHandlerContext ctx, HandshakePacket.ServerAuthenticationResponse msg) {
+        if (!msg.isAuthenticated) {
+            handshakeFuture.tryFailure(new HandshakeException(identity.getDeviceID() + " is not registered at the Master"));
+            ctx.close();
+            return;
+        }
+        TimeoutHandler.setPingEnabled(ctx.channel(), true);
+        statistics.recordHandshake(System.nanoTime() - handshakeStarted);
+        handshakeFuture.trySuccess(null);
+        onConnected(ctx.channel());
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        logger.warn("Connection of " + identity.getDeviceID() + " failed", cause);
+        handshakeFuture.tryFailure(cause);
+        ctx.close();
+    }
+
+    /**
+     * Send a message to the Master.
+     *
+     * @return the sent message, so that its sequence number can be used for matching the reply
+     */
+    protected Message.AddressedMessage send(RoutingKey<?> routingKey, MessagePayload payload) {
+        final Message.AddressedMessage amsg = new Message(payload)
+                .setDestination(identity.getDeviceID(), masterID, routingKey.getKey());
+        channel.writeAndFlush(amsg);
+        return amsg;
+    }
+
+    /**
+     * Answer a message that was received from the Master.
+     */
+    protected void reply(Message.AddressedMessage original, RoutingKey<?> routingKey, MessagePayload payload) {
+        final Message message = new Message(payload);
+        message.putHeader(HEADER_REFERENCES_ID, original.getSequenceNr());
+        channel.writeAndFlush(message.setDestination(identity.getDeviceID(), masterID, routingKey.getKey()));
+    }
+
+    protected Channel getChannel() {
+        return channel;
+    }
+
+    public DeviceIdentity getIdentity() {
+        return identity;
+    }
+
+    public void close() {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Called on the event loop of the connection once the handshake is finished.
+     */
+    protected abstract void onConnected(Channel channel);
+
+    /**
+     * Called on the event loop of the connection for every message received from the Master.
+     */
+    protected abstract void handleMessage(Message.AddressedMessage message);
+}
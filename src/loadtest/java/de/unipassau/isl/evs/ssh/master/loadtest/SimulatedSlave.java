@@ -0,0 +1,137 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.loadtest;
+
+import de.unipassau.isl.evs.ssh.core.database.dto.Module;
+import de.unipassau.isl.evs.ssh.core.messaging.Message;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.ClimatePayload;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.DoorBellPayload;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.DoorStatusPayload;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.ErrorPayload;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.LightPayload;
+import io.netty.channel.Channel;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.MASTER_DOOR_BELL_RING;
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.MASTER_DOOR_STATUS_UPDATE;
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.MASTER_PUSH_WEATHER_INFO;
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.SLAVE_CAMERA_GET;
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.SLAVE_CAMERA_GET_ERROR;
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.SLAVE_LIGHT_GET;
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.SLAVE_LIGHT_GET_REPLY;
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.SLAVE_LIGHT_SET;
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.SLAVE_LIGHT_SET_REPLY;
+
+/**
+ * A simulated slave that answers light requests of the Master immediately and pushes door status, climate data and
+ * bell rings at a fixed rate. Camera requests are answered with an error, as there is no picture to send.
+ *
+ * @author Team
+ */
+public class SimulatedSlave extends SimulatedDevice {
+    private final TrafficMix mix;
+    private final double eventsPerSecond;
+    private final Module doorSensor;
+    private final Module doorBuzzer;
+    private final Module weatherBoard;
+    private final Random random = new Random();
+    /**
+     * The simulated state of all lights of this slave, only accessed from the event loop.
+     */
+    private final Map<String, Boolean> lights = new HashMap<>();
+
+    public SimulatedSlave(DeviceIdentity identity, LoadStatistics statistics, TrafficMix mix, double eventsPerSecond,
+                          Module doorSensor, Module doorBuzzer, Module weatherBoard) {
+        super(identity, statistics);
+        this.mix = mix;
+        this.eventsPerSecond = eventsPerSecond;
+        this.doorSensor = doorSensor;
+        this.doorBuzzer = doorBuzzer;
+        this.weatherBoard = weatherBoard;
+    }
+
+    @Override
+    protected void onConnected(Channel channel) {
+        if (eventsPerSecond <= 0) {
+            return;
+        }
+        final long period = (long) (TimeUnit.SECONDS.toNanos(1) / eventsPerSecond);
+        final long initialDelay = (long) (random.nextDouble() * period);
+        channel.eventLoop().scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                sendEvent();
+            }
+        }, initialDelay, period, TimeUnit.NANOSECONDS);
+    }
+
+    private void sendEvent() {
+        if (!getChannel().isActive()) {
+            return;
+        }
+        final TrafficMix.Kind kind = mix.pick(random, true);
+        if (kind == null) {
+            return;
+        }
+        switch (kind) {
+            case DOOR_STATUS:
+                send(MASTER_DOOR_STATUS_UPDATE, new DoorStatusPayload(random.nextBoolean(), false, doorSensor.getName()));
+                break;
+            case CLIMATE:
+                send(MASTER_PUSH_WEATHER_INFO, new ClimatePayload(21, 21.5, 1013, 300,
+                        40 + random.nextInt(40), 1, random.nextInt(2000), 0, "", weatherBoard));
+                break;
+            case BELL:
+                send(MASTER_DOOR_BELL_RING, new DoorBellPayload(doorBuzzer.getName()));
+                break;
+            default:
+                throw new IllegalArgumentException("Slaves can't send " + kind);
+        }
+        statistics.recordSent(kind);
+    }
+
+    @Override
+    protected void handleMessage(Message.AddressedMessage message) {
+        if (SLAVE_LIGHT_SET.matches(message)) {
+            final LightPayload payload = SLAVE_LIGHT_SET.getPayload(message);
+            lights.put(payload.getModule().getName(), payload.getOn());
+            reply(message, SLAVE_LIGHT_SET_REPLY, payload);
+        } else if (SLAVE_LIGHT_GET.matches(message)) {
+            final LightPayload payload = SLAVE_LIGHT_GET.getPayload(message);
+            final Boolean on = lights.get(payload.getModule().getName());
+            reply(message, SLAVE_LIGHT_GET_REPLY, new LightPayload(on != null && on, payload.getModule()));
+        } else if (SLAVE_CAMERA_GET.matches(message)) {
+            reply(message, SLAVE_CAMERA_GET_ERROR, new ErrorPayload("Simulated slaves have no camera"));
+        } else {
+            statistics.recordPush();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.loadtest;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The relative frequency of the different kinds of messages the simulated Devices send to the Master.
+ * Apps choose among the app message kinds and slaves among the slave message kinds according to their weights.
+ *
+ * @author Team
+ */
+public class TrafficMix {
+    public static final String DEFAULT = "light-set=30,light-get=30,door-get=10,door-status=10,climate=15,bell=5";
+
+    private final Map<Kind, Integer> weights = new EnumMap<>(Kind.class);
+
+    /**
+     * @param spec comma separated list of {@code kind=weight} pairs, e.g. {@value #DEFAULT}
+     */
+    public static TrafficMix parse(String spec) {
+        final TrafficMix mix = new TrafficMix();
+        for (String entry : spec.split(",")) {
+            final String[] parts = entry.trim().split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Illegal traffic mix entry " + entry);
+            }
+            final int weight = Integer.parseInt(parts[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight for " + parts[0]);
+            }
+            mix.weights.put(Kind.fromName(parts[0].trim()), weight);
+        }
+        return mix;
+    }
+
+    /**
+     * @return a random kind of message sent by an app or by a slave, or {@code null} if none has a positive weight
+     */
+    public Kind pick(Random random, boolean fromSlave) {
+        int total = 0;
+        for (Map.Entry<Kind, Integer> entry : weights.entrySet()) {
+            if (entry.getKey().isSentBySlave() == fromSlave) {
+                total += entry.getValue();
+            }
+        }
+        if (total <= 0) {
+            return null;
+        }
+        int value = random.nextInt(total);
+        for (Map.Entry<Kind, Integer> entry : weights.entrySet()) {
+            if (entry.getKey().isSentBySlave() == fromSlave) {
+                value -= entry.getValue();
+                if (value < 0) {
+                    return entry.getKey();
+                }
+            }
+        }
+        throw new AssertionError();
+    }
+
+    @Override
+    public String toString() {
+        return weights.toString();
+    }
+
+    public enum Kind {
+        LIGHT_SET("light-set", false, true),
+        LIGHT_GET("light-get", false, true),
+        DOOR_GET("door-get", false, true),
+        DOOR_STATUS("door-status", true, false),
+        CLIMATE("climate", true, false),
+        BELL("bell", true, false);
+
+        private final String name;
+        private final boolean sentBySlave;
+        private final boolean expectsReply;
+
+        Kind(String name, boolean sentBySlave, boolean expectsReply) {
+            this.name = name;
+            this.sentBySlave = sentBySlave;
+            this.expectsReply = expectsReply;
+        }
+
+        public static Kind fromName(String name) {
+            for (Kind kind : values()) {
+                if (kind.name.equals(name)) {
+                    return kind;
+                }
+            }
+            throw new IllegalArgumentException("Unknown message kind " + name);
+        }
+
+        public boolean isSentBySlave() {
+            return sentBySlave;
+        }
+
+        /**
+         * @return {@code true} if the Master answers this kind of message, so that its latency can be measured
+         */
+        public boolean isExpectingReply() {
+            return expectsReply;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
@@ -29,6 +29,7 @@ package de.unipassau.isl.evs.ssh.master;
 import de.ncoder.typedmap.Key;
 import de.unipassau.isl.evs.ssh.core.CoreConfiguration;
 import de.unipassau.isl.evs.ssh.core.CoreConstants;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.NotificationPayload.NotificationType;
 
 import java.util.NoSuchElementException;
 
@@ -37,6 +38,8 @@ import java.util.NoSuchElementException;
  */
 public class MasterConfiguration extends CoreConfiguration {
     public static final Key<MasterConfiguration> KEY = new Key<>(MasterConfiguration.class);
+    public static final String PROPERTY_CONFIG_FILE = "securesmarthome.config";
+    public static final String PROPERTY_KEYSTORE_FILE = "securesmarthome.keystore";
 
 
     public int getLocalPort() {
@@ -67,8 +70,307 @@ public class MasterConfiguration extends CoreConfiguration {
         return port;
     }
 
+    /**
+     * @return the number of bytes that may be buffered for a connection before the channel is marked as not writable
+     */
+    public int getWriteBufferHighWaterMark() {
+        return getInt("Connection", "WriteBufferHighWaterMark", 64 * 1024);
+    }
+
+    /**
+     * @return the number of bytes the buffer of a connection must drop below before the channel is writable again
+     */
+    public int getWriteBufferLowWaterMark() {
+        return getInt("Connection", "WriteBufferLowWaterMark", 32 * 1024);
+    }
+
+    /**
+     * @return the maximum number of messages queued for a connection while its channel is not writable
+     */
+    public int getOutboundQueueLimit() {
+        return getInt("Connection", "OutboundQueueLimit", 64);
+    }
+
+    /**
+     * @return the number of threads accepting connections and answering UDP discovery requests
+     */
+    public int getBossThreads() {
+        return getInt("Threads", "Boss", 1);
+    }
+
+    /**
+     * @return the number of threads doing the I/O of all connections, 0 to use twice the number of processors
+     */
+    public int getIOThreads() {
+        return getInt("Threads", "IO", 0);
+    }
+
+    /**
+     * @return the number of threads executing MessageHandlers
+     */
+    public int getHandlerThreads() {
+        return getInt("Threads", "Handler", 4);
+    }
+
+    /**
+     * @return {@code true} if incoming messages should be partitioned by Module or sending Device onto the handler
+     * threads, so that messages concerning different Modules are handled in parallel but in order for each Module
+     */
+    public boolean isPartitionedDispatchEnabled() {
+        return getBoolean("Threads", "PartitionedDispatch", false);
+    }
+
+    /**
+     * @return {@code true} if all traffic during the handshake should be logged on TRACE level
+     */
+    public boolean isTraceLoggingEnabled() {
+        return getBoolean("Connection", "TraceLogging", false);
+    }
+
+    /**
+     * @return the maximum number of connections that may be in the handshake at the same time
+     */
+    public int getMaxPendingHandshakes() {
+        return getInt("Connection", "MaxPendingHandshakes", 32);
+    }
+
+    /**
+     * @return the maximum number of connections a single remote address may have open
+     */
+    public int getMaxConnectionsPerAddress() {
+        return getInt("Connection", "MaxConnectionsPerAddress", 16);
+    }
+
+    /**
+     * @return the number of new handshakes per second accepted from all clients together
+     */
+    public int getHandshakesPerSecond() {
+        return getInt("Connection", "HandshakesPerSecond", 20);
+    }
+
+    /**
+     * @return the time in seconds a client has to finish the handshake before the connection is closed, 0 to disable
+     */
+    public int getHandshakeTimeout() {
+        return getInt("Connection", "HandshakeTimeout", 15);
+    }
+
+    /**
+     * @return the number of UDP discovery requests per minute answered for a single address
+     */
+    public int getDiscoveryRequestsPerMinute() {
+        return getInt("Discovery", "RequestsPerMinute", 12);
+    }
+
+    /**
+     * @return the name of the algorithm used for compressing large messages, "none" disables compression
+     */
+    public String getCompressionAlgorithm() {
+        return getString("Compression", "Algorithm", "deflate");
+    }
+
+    /**
+     * @return the size in bytes a serialized message must have before it is compressed
+     */
+    public int getCompressionThreshold() {
+        return getInt("Compression", "Threshold", 4 * 1024);
+    }
+
+    /**
+     * @return the compression level from 0 to 9, or -1 for the default level of the algorithm
+     */
+    public int getCompressionLevel() {
+        return getInt("Compression", "Level", -1);
+    }
+
+    /**
+     * @return the maximum size of a chunk when sending camera pictures in several messages,
+     * 0 if pictures should be sent in a single message
+     */
+    public int getCameraChunkSize() {
+        return getInt("Camera", "ChunkSize", 0);
+    }
+
+    /**
+     * @return {@code true} if the Lights of a scene are switched with a single command per Slave,
+     * {@code false} if one command is sent per Light, as Slaves that don't support scenes expect
+     */
+    public boolean isLightSceneCommandEnabled() {
+        return getBoolean("Light", "SceneCommand", false);
+    }
+
+    /**
+     * @return the time in milliseconds without further configuration changes after which the updated configuration
+     * is broadcast to all clients, 0 to broadcast every change directly
+     */
+    public int getBroadcastQuietWindow() {
+        return getInt("Broadcast", "QuietWindow", 250);
+    }
+
+    /**
+     * @return the maximum time in milliseconds a configuration change may wait to be broadcast during a burst of changes
+     */
+    public int getBroadcastMaxDelay() {
+        return getInt("Broadcast", "MaxDelay", 2000);
+    }
+
+    /**
+     * @return the time in milliseconds during which a repeated notification of the given type is suppressed,
+     * 0 to disable the deduplication, see {@link #isNotificationDedupByArguments(NotificationType, boolean)}
+     */
+    public int getNotificationDedupWindow(NotificationType type, int defaultValue) {
+        return getInt("Notification", type.name() + ".DedupWindow", defaultValue);
+    }
+
+    /**
+     * @return {@code true} if only notifications with equal arguments count as repetitions,
+     * {@code false} if any notification of the same type does
+     */
+    public boolean isNotificationDedupByArguments(NotificationType type, boolean defaultValue) {
+        return getBoolean("Notification", type.name() + ".DedupByArguments", defaultValue);
+    }
+
+    /**
+     * @return the number of notifications of the given type that may be sent per minute, 0 for no limit
+     */
+    public int getNotificationRatePerMinute(NotificationType type, int defaultValue) {
+        return getInt("Notification", type.name() + ".RatePerMinute", defaultValue);
+    }
+
+    /**
+     * @return the number of notifications of the given type that may be sent in a burst exceeding the rate limit
+     */
+    public int getNotificationBurst(NotificationType type, int defaultValue) {
+        return getInt("Notification", type.name() + ".Burst", defaultValue);
+    }
+
+    /**
+     * @return the maximum age in milliseconds of a known light state for answering status requests without asking
+     * the Slave, 0 to always ask the Slave
+     */
+    public int getLightStateMaxAge() {
+        return getInt("State", "LightMaxAge", 5 * 1000);
+    }
+
+    /**
+     * @return the time in milliseconds the Master waits for a Slave to answer a forwarded request
+     * before the requester gets an error reply
+     */
+    public int getRequestTimeout() {
+        return getInt("Requests", "Timeout", 10 * 1000);
+    }
+
+    /**
+     * @return the time in milliseconds the Master waits for a Slave to answer a forwarded request for a camera picture
+     */
+    public int getCameraRequestTimeout() {
+        return getInt("Requests", "CameraTimeout", 30 * 1000);
+    }
+
+    /**
+     * @return the maximum number of forwarded requests waiting for a reply, the oldest ones are timed out if exceeded
+     */
+    public int getMaxPendingRequests() {
+        return getInt("Requests", "MaxPending", 1024);
+    }
+
+    /**
+     * @return the interval in milliseconds in which low-priority notifications are delivered together,
+     * 0 to deliver every notification directly
+     */
+    public int getNotificationDigestInterval() {
+        return getInt("Notification", "DigestInterval", 60 * 1000);
+    }
+
+    /**
+     * @return "primary" if this Master replicates its state to a standby, "standby" if it replicates the state
+     * of a primary and takes over once the primary fails, or "none" if replication is disabled
+     */
+    public String getReplicationRole() {
+        return getString("Replication", "Role", "none");
+    }
+
+    /**
+     * @return the address the primary Master listens on for standby connections
+     */
+    public String getReplicationAddress() {
+        return getString("Replication", "Address", "127.0.0.1");
+    }
+
+    /**
+     * @return the port the primary Master listens on for standby connections
+     */
+    public int getReplicationPort() {
+        return getInt("Replication", "Port", 13131);
+    }
+
+    /**
+     * @return the time in milliseconds after which the primary Master sends a heartbeat if there were no changes
+     */
+    public int getReplicationHeartbeatInterval() {
+        return getInt("Replication", "HeartbeatInterval", 500);
+    }
+
+    /**
+     * @return the time in milliseconds without contact to the primary Master after which a standby takes over
+     */
+    public int getReplicationFailoverTimeout() {
+        return getInt("Replication", "FailoverTimeout", 3000);
+    }
+
+    /**
+     * @return the number of messages that may be queued for a standby before it is disconnected and has to resync
+     */
+    public int getReplicationBacklogLimit() {
+        return getInt("Replication", "BacklogLimit", 10000);
+    }
+
+    /**
+     * @return the value of {@code key} in the given section of the config file,
+     * or {@code defaultValue} if the value is not set
+     */
+    protected String getString(String section, String key, String defaultValue) {
+        String value = null;
+        try {
+            value = config.getSection(section).getString(key);
+        } catch (NoSuchElementException ignored) {
+        }
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * @return the value of {@code key} in the given section of the config file,
+     * or {@code defaultValue} if the value is not set
+     */
+    protected int getInt(String section, String key, int defaultValue) {
+        try {
+            return config.getSection(section).getInt(key);
+        } catch (NoSuchElementException ignored) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * @return the value of {@code key} in the given section of the config file,
+     * or {@code defaultValue} if the value is not set
+     */
+    protected boolean getBoolean(String section, String key, boolean defaultValue) {
+        try {
+            return config.getSection(section).getBoolean(key);
+        } catch (NoSuchElementException ignored) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * The locations of the config file and the keystore can be overridden with the system properties
+     * {@value #PROPERTY_CONFIG_FILE} and {@value #PROPERTY_KEYSTORE_FILE}, e.g. for running a second Master.
+     */
     @Override
     protected ConfigurationDefaults loadDefaults() {
-        return new ConfigurationDefaults("/etc/securesmarthome.conf", "/var/lib/securesmarthome/keystore", "2345ih43hij");
+        return new ConfigurationDefaults(
+                System.getProperty(PROPERTY_CONFIG_FILE, "/etc/securesmarthome.conf"),
+                System.getProperty(PROPERTY_KEYSTORE_FILE, "/var/lib/securesmarthome/keystore"),
+                "2345ih43hij");
     }
 }
@@ -43,6 +43,7 @@ import de.unipassau.isl.evs.ssh.master.database.PermissionController;
 import de.unipassau.isl.evs.ssh.master.database.SlaveController;
 import de.unipassau.isl.evs.ssh.master.database.UserManagementController;
 import de.unipassau.isl.evs.ssh.master.handler.AbstractMasterHandler;
+import de.unipassau.isl.evs.ssh.master.handler.LightSceneSender;
 import de.unipassau.isl.evs.ssh.master.handler.MasterCameraHandler;
 import de.unipassau.isl.evs.ssh.master.handler.MasterClimateHandler;
 import de.unipassau.isl.evs.ssh.master.handler.MasterDoorBellHandler;
@@ -54,12 +55,20 @@ import de.unipassau.isl.evs.ssh.master.handler.MasterSlaveManagementHandler;
 import de.unipassau.isl.evs.ssh.master.handler.MasterSystemHealthCheckHandler;
 import de.unipassau.isl.evs.ssh.master.handler.MasterUserConfigurationHandler;
 import de.unipassau.isl.evs.ssh.master.handler.MasterUserLocationHandler;
+import de.unipassau.isl.evs.ssh.master.handler.PendingRequestTable;
+import de.unipassau.isl.evs.ssh.master.network.ChannelPermissions;
+import de.unipassau.isl.evs.ssh.master.network.ChunkedImageSender;
+import de.unipassau.isl.evs.ssh.master.network.PresenceIndex;
 import de.unipassau.isl.evs.ssh.master.network.Server;
+import de.unipassau.isl.evs.ssh.master.network.ServerExecutorGroups;
 import de.unipassau.isl.evs.ssh.master.network.ServerOutgoingRouter;
 import de.unipassau.isl.evs.ssh.master.network.UDPDiscoveryServer;
 import de.unipassau.isl.evs.ssh.master.network.broadcast.ModuleBroadcaster;
 import de.unipassau.isl.evs.ssh.master.network.broadcast.NotificationBroadcaster;
 import de.unipassau.isl.evs.ssh.master.network.broadcast.UserConfigurationBroadcaster;
+import de.unipassau.isl.evs.ssh.master.network.metrics.ConnectionMetrics;
+import de.unipassau.isl.evs.ssh.master.replication.ReplicationManager;
+import de.unipassau.isl.evs.ssh.master.state.DeviceStateStore;
 import de.unipassau.isl.evs.ssh.master.task.MasterHolidaySimulationPlannerHandler;
 import de.unipassau.isl.evs.ssh.master.task.MasterWeatherCheckHandler;
 import org.slf4j.Logger;
@@ -87,15 +96,31 @@ public class MasterContainer extends ContainerService {
             register(AccessLogger.KEY, new AccessLogger());
         }
 
+        // a standby Master only starts listening once it takes over from the primary
+        final boolean standby = ReplicationManager.Role.fromConfig(config) == ReplicationManager.Role.STANDBY;
+        register(ServerExecutorGroups.KEY, new ServerExecutorGroups());
         register(IncomingDispatcher.KEY, new IncomingDispatcher());
-        register(OutgoingRouter.KEY, new ServerOutgoingRouter());
-        register(UDPDiscoveryServer.KEY, new UDPDiscoveryServer());
-        register(Server.KEY, new Server());
+        final ServerOutgoingRouter outgoingRouter = new ServerOutgoingRouter();
+        register(OutgoingRouter.KEY, outgoingRouter);
+        register(ServerOutgoingRouter.KEY, outgoingRouter);
+        if (!standby) {
+            register(UDPDiscoveryServer.KEY, new UDPDiscoveryServer());
+        }
+        register(ConnectionMetrics.KEY, new ConnectionMetrics());
+        if (!standby) {
+            register(Server.KEY, new Server());
+            register(PresenceIndex.KEY, new PresenceIndex());
+        }
+        register(ChunkedImageSender.KEY, new ChunkedImageSender());
 
+        register(PendingRequestTable.KEY, new PendingRequestTable());
+        register(DeviceStateStore.KEY, new DeviceStateStore());
         register(SlaveController.KEY, new SlaveController());
         register(PermissionController.KEY, new PermissionController());
+        register(ChannelPermissions.KEY, new ChannelPermissions());
         register(HolidayController.KEY, new HolidayController());
         register(UserManagementController.KEY, new UserManagementController());
+        register(LightSceneSender.KEY, new LightSceneSender());
 
         register(MasterRegisterDeviceHandler.KEY, new MasterRegisterDeviceHandler());
         register(MasterUserLocationHandler.KEY, new MasterUserLocationHandler());
@@ -118,9 +143,11 @@ public class MasterContainer extends ContainerService {
         registerHandler(new MasterCameraHandler());
 
 
-        registerHandler(new MasterDoorHandler());
+        register(MasterDoorHandler.KEY, new MasterDoorHandler());
         //registerHandler(new MasterPermissionHandler());
 
+        register(ReplicationManager.KEY, new ReplicationManager());
+
         logger.info("Master set up! ID is " + require(NamingManager.KEY).getOwnID());
         logger.info("Routing Table set in " + require(IncomingDispatcher.KEY).toString());
     }
@@ -34,12 +34,21 @@ import de.unipassau.isl.evs.ssh.core.sec.Permission;
 import de.unipassau.isl.evs.ssh.master.database.generated.DefaultSchema;
 import de.unipassau.isl.evs.ssh.master.database.generated.tables.records.ComposedOfPermissionRecord;
 import de.unipassau.isl.evs.ssh.master.database.generated.tables.records.PermissionRecord;
+import org.jooq.DDLQuery;
 import org.jooq.DSLContext;
 import org.jooq.DropTableStep;
+import org.jooq.ExecuteContext;
+import org.jooq.ExecuteType;
 import org.jooq.InsertValuesStep2;
+import org.jooq.Query;
+import org.jooq.Record;
 import org.jooq.SQLDialect;
 import org.jooq.Table;
+import org.jooq.exception.DataAccessException;
 import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultConfiguration;
+import org.jooq.impl.DefaultExecuteListener;
+import org.jooq.impl.DefaultExecuteListenerProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -50,8 +59,13 @@ import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static de.unipassau.isl.evs.ssh.master.database.DatabaseContract.Group;
 import static de.unipassau.isl.evs.ssh.master.database.DatabaseContract.PermissionTemplate;
@@ -73,6 +87,12 @@ public class DatabaseConnector extends AbstractComponent {
     private static final String SQL_CREATE_FILENAME = "CreateDB.sql";
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private final Connection connection;
+    private final List<DatabaseChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+    /**
+     * Every statement holds the read lock while it is executed, so that a {@link #snapshot(DatabaseChangeListener)}
+     * neither misses nor duplicates a change that is running concurrently.
+     */
+    private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
 
     final DSLContext create;
 
@@ -82,7 +102,10 @@ public class DatabaseConnector extends AbstractComponent {
         } catch (SQLException e) {
             throw new StartupException(e);
         }
-        create = DSL.using(connection, SQLDialect.SQLITE);
+        create = DSL.using(new DefaultConfiguration()
+                .set(connection)
+                .set(SQLDialect.SQLITE)
+                .set(new DefaultExecuteListenerProvider(new ChangeCapture())));
         create.query("PRAGMA foreign_keys = ON;").execute();
     }
 
@@ -230,4 +253,139 @@ public class DatabaseConnector extends AbstractComponent {
         }
         create.batch(dropTables).execute();
     }
-}
\ No newline at end of file
+
+    /**
+     * Add a listener that is notified about every change written to the database.
+     */
+    public void addChangeListener(DatabaseChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    public void removeChangeListener(DatabaseChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    /**
+     * Render the contents of all tables as INSERT statements. No changes can be written while the snapshot is taken.
+     *
+     * @param listener if not null, the listener is added before any further change can be written, so that applying
+     *                 the snapshot and all changes reported to the listener yields exactly the current database
+     * @return the INSERT statements with all values inlined
+     */
+    public List<String> snapshot(DatabaseChangeListener listener) {
+        snapshotLock.writeLock().lock();
+        try {
+            final List<String> statements = new ArrayList<>();
+            for (Table<?> table : DefaultSchema.DEFAULT_SCHEMA.getTables()) {
+                dumpTable(table, statements);
+            }
+            if (listener != null) {
+                changeListeners.add(listener);
+            }
+            return statements;
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    private <R extends Record> void dumpTable(Table<R> table, List<String> statements) {
+        for (R record : create.selectFrom(table).fetch()) {
+            statements.add(create.renderInlined(create.insertInto(table).set(record)));
+        }
+    }
+
+    /**
+     * Replace the contents of all tables with the given snapshot in a single transaction.
+     *
+     * @param statements the statements obtained from {@link #snapshot(DatabaseChangeListener)}
+     */
+    public void importSnapshot(List<String> statements) {
+        snapshotLock.writeLock().lock();
+        try {
+            // the snapshot is not ordered by foreign key dependencies
+            create.query("PRAGMA foreign_keys = OFF;").execute();
+            try {
+                connection.setAutoCommit(false);
+                try {
+                    for (Table<?> table : DefaultSchema.DEFAULT_SCHEMA.getTables()) {
+                        create.delete(table).execute();
+                    }
+                    for (String statement : statements) {
+                        create.execute(statement);
+                    }
+                    connection.commit();
+                } catch (DataAccessException | SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                throw new DataAccessException("Could not import database snapshot", e);
+            } finally {
+                create.query("PRAGMA foreign_keys = ON;").execute();
+            }
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Execute statements that were reported to a {@link DatabaseChangeListener} of another database.
+     */
+    public void applyStatements(List<String> statements) {
+        for (String statement : statements) {
+            create.execute(statement);
+        }
+    }
+
+    /**
+     * Reports all successfully executed writes to the registered {@link DatabaseChangeListener}s.
+     * All statements run in auto-commit mode, so every executed write is also committed.
+     */
+    private class ChangeCapture extends DefaultExecuteListener {
+        @Override
+        public void start(ExecuteContext ctx) {
+            snapshotLock.readLock().lock();
+        }
+
+        @Override
+        public void end(ExecuteContext ctx) {
+            try {
+                if (ctx.exception() == null && !changeListeners.isEmpty()) {
+                    final List<String> statements = renderChanges(ctx);
+                    if (!statements.isEmpty()) {
+                        for (DatabaseChangeListener listener : changeListeners) {
+                            listener.onStatementsCommitted(statements);
+                        }
+                    }
+                }
+            } finally {
+                snapshotLock.readLock().unlock();
+            }
+        }
+
+        private List<String> renderChanges(ExecuteContext ctx) {
+            final List<String> statements = new ArrayList<>();
+            if (ctx.type() == ExecuteType.BATCH) {
+                for (Query query : ctx.batchQueries()) {
+                    addChange(query, statements);
+                }
+            } else if (ctx.type() == ExecuteType.WRITE && ctx.query() != null) {
+                addChange(ctx.query(), statements);
+            }
+            return Collections.unmodifiableList(statements);
+        }
+
+        private void addChange(Query query, List<String> statements) {
+            // the schema and the connection settings are maintained by each database itself
+            if (query instanceof DDLQuery) {
+                return;
+            }
+            final String sql = create.renderInlined(query);
+            if (!sql.trim().toUpperCase().startsWith("PRAGMA")) {
+                statements.add(sql);
+            }
+        }
+    }
+}
@@ -34,9 +34,13 @@ import de.unipassau.isl.evs.ssh.core.database.UnknownReferenceException;
 import de.unipassau.isl.evs.ssh.core.database.dto.HolidayAction;
 import de.unipassau.isl.evs.ssh.master.database.generated.tables.Electronicmodule;
 import de.unipassau.isl.evs.ssh.master.database.generated.tables.Holidaylog;
+import de.unipassau.isl.evs.ssh.master.database.generated.tables.records.HolidaylogRecord;
 import org.jooq.DSLContext;
+import org.jooq.InsertValuesStep3;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import static de.unipassau.isl.evs.ssh.master.database.generated.tables.Electronicmodule.ELECTRONICMODULE;
 import static de.unipassau.isl.evs.ssh.master.database.generated.tables.Holidaylog.HOLIDAYLOG;
@@ -81,6 +85,36 @@ public class HolidayController extends AbstractController {
         addHolidayLogEntry(action, moduleName, System.currentTimeMillis());
     }
 
+    /**
+     * Add the same action for several modules to the database, looking up all modules with a single query
+     * and inserting all entries with a single statement.
+     *
+     * @param action      Action to be added to the database.
+     * @param moduleNames Modules where the action occurs.
+     * @param timestamp   The timestamp of the actions.
+     */
+    public void addHolidayLogEntries(String action, Collection<String> moduleNames, long timestamp)
+            throws UnknownReferenceException {
+        if (moduleNames.isEmpty()) {
+            return;
+        }
+        final Map<String, Integer> moduleIDs = create.select(ELECTRONICMODULE.NAME, ELECTRONICMODULE._ID)
+                .from(ELECTRONICMODULE)
+                .where(ELECTRONICMODULE.NAME.in(moduleNames))
+                .fetchMap(ELECTRONICMODULE.NAME, ELECTRONICMODULE._ID);
+        if (!moduleIDs.keySet().containsAll(moduleNames)) {
+            throw new UnknownReferenceException("At least one of the modules " + moduleNames
+                    + " does not exist in the database");
+        }
+
+        InsertValuesStep3<HolidaylogRecord, String, Integer, Long> insert =
+                create.insertInto(HOLIDAYLOG, HOLIDAYLOG.ACTION, HOLIDAYLOG.ELECTRONICMODULEID, HOLIDAYLOG.TIMESTAMP);
+        for (String moduleName : moduleNames) {
+            insert = insert.values(action, moduleIDs.get(moduleName), timestamp);
+        }
+        insert.execute();
+    }
+
     /**
      * Returns all actions logged and saved into the holiday table in a given range of time.
      *
@@ -27,6 +27,8 @@
 package de.unipassau.isl.evs.ssh.master.database;
 
 import com.google.common.base.Strings;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
 import de.ncoder.typedmap.Key;
 import de.unipassau.isl.evs.ssh.core.container.AccessLogger;
 import de.unipassau.isl.evs.ssh.core.database.AlreadyInUseException;
@@ -43,10 +45,14 @@ import de.unipassau.isl.evs.ssh.master.database.generated.tables.HasPermission;
 import de.unipassau.isl.evs.ssh.master.database.generated.tables.Permission;
 import de.unipassau.isl.evs.ssh.master.database.generated.tables.Permissiontemplate;
 import de.unipassau.isl.evs.ssh.master.database.generated.tables.Userdevice;
+import org.jooq.Record;
 import org.jooq.Record1;
 import org.jooq.exception.DataAccessException;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static de.unipassau.isl.evs.ssh.master.database.generated.tables.ComposedOfPermission.COMPOSED_OF_PERMISSION;
 import static de.unipassau.isl.evs.ssh.master.database.generated.tables.Devicegroup.DEVICEGROUP;
@@ -427,6 +433,57 @@ public class PermissionController extends AbstractController {
                 .fetchInto(PermissionDTO.class);
     }
 
+    /**
+     * Get the permissions of all user devices with a single query.
+     *
+     * @return the Permissions of each UserDevice, by the DeviceID of the UserDevice.
+     * UserDevices without Permissions are not contained.
+     */
+    public ListMultimap<DeviceID, PermissionDTO> getPermissionsOfAllUserDevices() {
+        Permission p = PERMISSION.as("p");
+        Userdevice u = USERDEVICE.as("u");
+        Electronicmodule m = ELECTRONICMODULE.as("m");
+        HasPermission hp = HAS_PERMISSION.as("hp");
+
+        final ListMultimap<DeviceID, PermissionDTO> permissions = ArrayListMultimap.create();
+        for (Record record : create.select(u.FINGERPRINT, p.NAME, m.NAME)
+                .from(hp)
+                .join(p).on(hp.PERMISSIONID.equal(p._ID))
+                .join(u).on(hp.USERID.equal(u._ID))
+                .leftJoin(m).on(p.ELECTRONICMODULEID.equal(m._ID))
+                .fetch()) {
+            permissions.put(new DeviceID(record.getValue(u.FINGERPRINT)),
+                    record.into(p.NAME, m.NAME).into(PermissionDTO.class));
+        }
+        return permissions;
+    }
+
+    /**
+     * Get an immutable copy of the permissions of a user device.
+     *
+     * @param userDeviceID The UserDevice which has the Permissions.
+     * @param version      The permission version the Permissions are read at.
+     * @return snapshot of all Permissions that the given UserDevice has.
+     */
+    public PermissionSnapshot getPermissionSnapshot(DeviceID userDeviceID, long version) {
+        return PermissionSnapshot.of(version, getPermissionsOfUserDevice(userDeviceID));
+    }
+
+    /**
+     * Get immutable copies of the permissions of all user devices with a single query.
+     *
+     * @param version The permission version the Permissions are read at.
+     * @return snapshot of the Permissions of each UserDevice, by the DeviceID of the UserDevice.
+     * UserDevices without Permissions are not contained.
+     */
+    public Map<DeviceID, PermissionSnapshot> getPermissionSnapshots(long version) {
+        final Map<DeviceID, PermissionSnapshot> snapshots = new HashMap<>();
+        for (Map.Entry<DeviceID, Collection<PermissionDTO>> entry : getPermissionsOfAllUserDevices().asMap().entrySet()) {
+            snapshots.put(entry.getKey(), PermissionSnapshot.of(version, entry.getValue()));
+        }
+        return snapshots;
+    }
+
     private Integer getUserID(DeviceID id) {
         Record1<Integer> result = create.select(USERDEVICE._ID)
                 .from(USERDEVICE)
@@ -0,0 +1,97 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.database;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import de.unipassau.isl.evs.ssh.core.database.dto.PermissionDTO;
+import de.unipassau.isl.evs.ssh.core.sec.Permission;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * An immutable copy of all Permissions a UserDevice had at a given permission version, so that authorization checks
+ * don't need to query the database.
+ * Binary Permissions are granted for every module, while Permissions bound to a module are only granted for
+ * the module with the same name. This mirrors {@link PermissionController#hasPermission}.
+ *
+ * @author Team
+ */
+public final class PermissionSnapshot {
+    private final long version;
+    private final ImmutableSet<Permission> binaryPermissions;
+    private final ImmutableSetMultimap<Permission, String> modulePermissions;
+
+    private PermissionSnapshot(long version, ImmutableSet<Permission> binaryPermissions,
+                               ImmutableSetMultimap<Permission, String> modulePermissions) {
+        this.version = version;
+        this.binaryPermissions = binaryPermissions;
+        this.modulePermissions = modulePermissions;
+    }
+
+    /**
+     * @param version     the permission version the Permissions were read at
+     * @param permissions all Permissions of the UserDevice
+     */
+    public static PermissionSnapshot of(long version, Iterable<PermissionDTO> permissions) {
+        final ImmutableSet.Builder<Permission> binary = ImmutableSet.builder();
+        final ImmutableSetMultimap.Builder<Permission, String> module = ImmutableSetMultimap.builder();
+        for (PermissionDTO permission : permissions) {
+            if (permission.getModuleName() == null) {
+                binary.add(permission.getPermission());
+            } else {
+                module.put(permission.getPermission(), permission.getModuleName());
+            }
+        }
+        return new PermissionSnapshot(version, binary.build(), module.build());
+    }
+
+    /**
+     * @return the permission version the Permissions were read at
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @param permission Permission to check.
+     * @param moduleName Module the permission applies for or null if the given permission is a binary permission.
+     * @return true if the UserDevice had the Permission at the version of this snapshot
+     */
+    public boolean hasPermission(Permission permission, @Nullable String moduleName) {
+        return binaryPermissions.contains(permission)
+                || (moduleName != null && modulePermissions.containsEntry(permission, moduleName));
+    }
+
+    @Override
+    public String toString() {
+        return "PermissionSnapshot{" +
+                "version=" + version +
+                ", binaryPermissions=" + binaryPermissions +
+                ", modulePermissions=" + modulePermissions +
+                '}';
+    }
+}
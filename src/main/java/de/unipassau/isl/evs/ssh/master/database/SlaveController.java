@@ -40,6 +40,7 @@ import de.unipassau.isl.evs.ssh.core.database.dto.ModuleAccessPoint.WLANAccessPo
 import de.unipassau.isl.evs.ssh.core.database.dto.Slave;
 import de.unipassau.isl.evs.ssh.core.naming.DeviceID;
 import de.unipassau.isl.evs.ssh.master.database.generated.tables.Electronicmodule;
+import de.unipassau.isl.evs.ssh.master.replication.ReplicatedState;
 import org.jetbrains.annotations.NotNull;
 import org.jooq.Record1;
 import org.jooq.Record10;
@@ -48,6 +49,8 @@ import org.jooq.Result;
 import org.jooq.SelectJoinStep;
 import org.jooq.exception.DataAccessException;
 
+import java.io.Serializable;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -61,9 +64,10 @@ import static de.unipassau.isl.evs.ssh.master.database.generated.tables.Slave.SL
  *
  * @author Leon Sell
  */
-public class SlaveController extends AbstractController {
+public class SlaveController extends AbstractController implements ReplicatedState {
     public static final Key<SlaveController> KEY = new Key<>(SlaveController.class);
-    private final Map<DeviceID, byte[]> passiveRegistrationTokens = new HashMap<>();
+    private final Map<DeviceID, byte[]> passiveRegistrationTokens =
+            Collections.synchronizedMap(new HashMap<DeviceID, byte[]>());
 
 
     private final Electronicmodule m = ELECTRONICMODULE.as("m");
@@ -518,4 +522,24 @@ public class SlaveController extends AbstractController {
             return type;
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public Serializable exportReplicatedState() {
+        synchronized (passiveRegistrationTokens) {
+            return new HashMap<>(passiveRegistrationTokens);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void importReplicatedState(Serializable state) {
+        synchronized (passiveRegistrationTokens) {
+            passiveRegistrationTokens.clear();
+            passiveRegistrationTokens.putAll((Map<DeviceID, byte[]>) state);
+        }
+    }
+
+    @Override
+    public void onPromotedToPrimary() {
+    }
+}
@@ -26,10 +26,9 @@
 
 package de.unipassau.isl.evs.ssh.master.handler;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
+import de.unipassau.isl.evs.ssh.core.container.AccessLogger;
 import de.unipassau.isl.evs.ssh.core.database.dto.UserDevice;
 import de.unipassau.isl.evs.ssh.core.handler.AbstractMessageHandler;
 import de.unipassau.isl.evs.ssh.core.handler.NoPermissionException;
@@ -40,7 +39,10 @@ import de.unipassau.isl.evs.ssh.core.naming.DeviceID;
 import de.unipassau.isl.evs.ssh.core.naming.NamingManager;
 import de.unipassau.isl.evs.ssh.core.sec.Permission;
 import de.unipassau.isl.evs.ssh.master.database.PermissionController;
+import de.unipassau.isl.evs.ssh.master.database.PermissionSnapshot;
 import de.unipassau.isl.evs.ssh.master.database.SlaveController;
+import de.unipassau.isl.evs.ssh.master.network.ChannelPermissions;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,13 +53,14 @@ import org.slf4j.LoggerFactory;
  * @author Leon Sell
  */
 public abstract class AbstractMasterHandler extends AbstractMessageHandler {
-    private final Map<Integer, Message.AddressedMessage> proxiedMessages = new HashMap<>();
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     /**
      * Remember that I sent another message (the proxy message) in order to fulfill a received request.
      * The originally received message will be mapped to the sequence number of the proxy message,
      * so that it can be later retrieved using the {@link Message#HEADER_REFERENCES_ID} of the reply for the proxy message.
+     * If no reply arrives before the deadline of the {@link PendingRequestTable}, the mapping is removed and
+     * {@link #onProxiedRequestTimedOut(Message.AddressedMessage)} is called.
      *
      * @param receivedMessage the Message with a Request from the App or the Slave that was received.
      * @param proxyMessage    the Message that was sent by me (the Master) in order to get data required for responding
@@ -65,11 +68,37 @@ public abstract class AbstractMasterHandler extends AbstractMessageHandler {
      * @see #takeProxiedReceivedMessage(int)
      */
     protected void recordReceivedMessageProxy(Message.AddressedMessage receivedMessage, Message.AddressedMessage proxyMessage) {
+        recordReceivedMessageProxy(receivedMessage, proxyMessage, null);
+    }
+
+    /**
+     * Remember that I sent another message (the proxy message) in order to fulfill a received request, allowing
+     * further identical requests to be attached using {@link #attachToPendingRequest(Object, Message.AddressedMessage)}
+     * until the reply arrives.
+     *
+     * @param coalescingKey identifies the data requested by the proxy message, e.g. a list of the RoutingKey and the
+     *                      name of the Module, or {@code null} if the request can't be shared
+     * @see #recordReceivedMessageProxy(Message.AddressedMessage, Message.AddressedMessage)
+     * @see #takeAllProxiedReceivedMessages(int)
+     */
+    protected void recordReceivedMessageProxy(Message.AddressedMessage receivedMessage, Message.AddressedMessage proxyMessage,
+                                              @Nullable Object coalescingKey) {
         final DeviceID masterID = requireComponent(NamingManager.KEY).getMasterID();
         if (!proxyMessage.getFromID().equals(masterID)) {
             logger.warn("Messages from other devices can't act as proxy: " + proxyMessage);
         }
-        proxiedMessages.put(proxyMessage.getSequenceNr(), receivedMessage);
+        requireComponent(PendingRequestTable.KEY).add(this, receivedMessage, proxyMessage, coalescingKey);
+    }
+
+    /**
+     * Answer the received request together with a pending identical request instead of sending another proxy message.
+     *
+     * @param coalescingKey the key the pending request was recorded with
+     * @return {@code true} if the request was attached, {@code false} if there is no such pending request and a
+     * proxy message has to be sent
+     */
+    protected boolean attachToPendingRequest(Object coalescingKey, Message.AddressedMessage receivedMessage) {
+        return requireComponent(PendingRequestTable.KEY).attach(this, coalescingKey, receivedMessage);
     }
 
     /**
@@ -78,10 +107,34 @@ public abstract class AbstractMasterHandler extends AbstractMessageHandler {
      *
      * @param proxySequenceNumber the sequence number of the proxy message, usually obtained from the reply to the
      *                            proxy message by getting the {@link Message#HEADER_REFERENCES_ID} header field.
-     * @return the message that I originally received.
+     * @return the message that I originally received, or {@code null} if the request already timed out.
      */
+    @Nullable
     protected Message.AddressedMessage takeProxiedReceivedMessage(int proxySequenceNumber) {
-        return proxiedMessages.remove(proxySequenceNumber);
+        final List<Message.AddressedMessage> received = takeAllProxiedReceivedMessages(proxySequenceNumber);
+        return received.isEmpty() ? null : received.get(0);
+    }
+
+    /**
+     * Get all received messages waiting for the reply to the proxy message, including those attached with
+     * {@link #attachToPendingRequest(Object, Message.AddressedMessage)}.
+     *
+     * @return the messages that I originally received, which is empty if the request already timed out.
+     */
+    protected List<Message.AddressedMessage> takeAllProxiedReceivedMessages(int proxySequenceNumber) {
+        return requireComponent(PendingRequestTable.KEY).take(this, proxySequenceNumber);
+    }
+
+    /**
+     * Called when the proxy message for a received request wasn't answered in time.
+     * Sends an error reply to the original requester, unless the request was sent by the Master itself.
+     *
+     * @param receivedMessage the Message with the Request that can't be answered anymore
+     */
+    protected void onProxiedRequestTimedOut(Message.AddressedMessage receivedMessage) {
+        if (!isMaster(receivedMessage.getFromID())) {
+            sendReply(receivedMessage, new Message(new ErrorPayload("The request timed out.")));
+        }
     }
 
     /**
@@ -106,6 +159,8 @@ public abstract class AbstractMasterHandler extends AbstractMessageHandler {
 
     /**
      * Check if a given Device has a given Permission. Master has all Permission.
+     * Uses the snapshot of the Permissions attached to the Channel of the Device if it is up to date and only
+     * queries the database otherwise.
      *
      * @param userDeviceID DeviceID of the Device.
      * @param permission   Permission to check for.
@@ -113,8 +168,19 @@ public abstract class AbstractMasterHandler extends AbstractMessageHandler {
      * @return true if has permissions otherwise false.
      */
     protected boolean hasPermission(DeviceID userDeviceID, Permission permission, String moduleName) {
-        return isMaster(userDeviceID) || requireComponent(PermissionController.KEY)
-                .hasPermission(userDeviceID, permission, moduleName);
+        if (isMaster(userDeviceID)) {
+            return true;
+        }
+        final ChannelPermissions channelPermissions = getComponent(ChannelPermissions.KEY);
+        final PermissionSnapshot snapshot = channelPermissions != null ? channelPermissions.getSnapshot(userDeviceID) : null;
+        if (snapshot == null) {
+            return requireComponent(PermissionController.KEY).hasPermission(userDeviceID, permission, moduleName);
+        }
+        final AccessLogger logger = getComponent(AccessLogger.KEY);
+        if (logger != null) {
+            logger.logAccess(permission);
+        }
+        return snapshot.hasPermission(permission, moduleName);
     }
 
     /**
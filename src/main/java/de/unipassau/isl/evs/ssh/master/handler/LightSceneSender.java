@@ -0,0 +1,297 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.handler;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import de.ncoder.typedmap.Key;
+import de.unipassau.isl.evs.ssh.core.container.AbstractComponent;
+import de.unipassau.isl.evs.ssh.core.container.Container;
+import de.unipassau.isl.evs.ssh.core.database.UnknownReferenceException;
+import de.unipassau.isl.evs.ssh.core.database.dto.Module;
+import de.unipassau.isl.evs.ssh.core.database.dto.UserDevice;
+import de.unipassau.isl.evs.ssh.core.messaging.Message;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.LightPayload;
+import de.unipassau.isl.evs.ssh.core.naming.DeviceID;
+import de.unipassau.isl.evs.ssh.core.schedule.Scheduler;
+import de.unipassau.isl.evs.ssh.master.MasterConfiguration;
+import de.unipassau.isl.evs.ssh.master.database.HolidayController;
+import de.unipassau.isl.evs.ssh.master.database.PermissionController;
+import de.unipassau.isl.evs.ssh.master.messaging.payload.LightScenePayload;
+import de.unipassau.isl.evs.ssh.master.network.ServerOutgoingRouter;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.APP_LIGHT_UPDATE;
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.SLAVE_LIGHT_SET;
+import static de.unipassau.isl.evs.ssh.core.sec.Permission.REQUEST_LIGHT_STATUS;
+import static de.unipassau.isl.evs.ssh.master.messaging.MasterRoutingKeys.SLAVE_LIGHT_SCENE;
+
+/**
+ * Switches several Lights at once, e.g. all Lights when a user comes home in the dark or all Lights the holiday
+ * simulation switches at the same time.
+ * <p>
+ * The Lights are grouped by the Slave they are connected to. If enabled in the {@link MasterConfiguration}, each
+ * Slave receives a single {@link LightScenePayload} command for all of its Lights. Otherwise, one SLAVE_LIGHT_SET
+ * command is sent per Light and the commands for one Slave are written to its connection in one batch that is
+ * flushed once. The replies of the Slaves are collected for the whole scene:
+ * once all Lights replied or the request timeout elapsed, the result is logged once and the new states are sent
+ * to the Apps in one batch, so that the Devices with the Permission to see them are only looked up once.
+ * Holiday log entries for a scene are written with a single statement.
+ *
+ * @author Team
+ */
+public class LightSceneSender extends AbstractComponent {
+    public static final Key<LightSceneSender> KEY = new Key<>(LightSceneSender.class);
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final ConcurrentMap<Integer, Scene> pendingReplies = new ConcurrentHashMap<>();
+
+    @Override
+    public void destroy() {
+        for (Scene scene : pendingReplies.values()) {
+            scene.cancelTimeout();
+        }
+        pendingReplies.clear();
+        super.destroy();
+    }
+
+    /**
+     * Switch the given Lights with one scene command or one batch of commands per Slave.
+     *
+     * @param name      name of the scene used for logging
+     * @param targets   the state each Light should be switched to
+     * @param logAction the action to add to the holiday log for all Lights, or {@code null} if the scene shouldn't
+     *                  be logged, e.g. because it is a replay of the holiday log
+     */
+    public void switchLights(String name, Map<Module, Boolean> targets, @Nullable String logAction) {
+        if (targets.isEmpty()) {
+            return;
+        }
+        final ListMultimap<DeviceID, Module> modulesBySlave = ArrayListMultimap.create();
+        for (Module module : targets.keySet()) {
+            modulesBySlave.put(module.getAtSlave(), module);
+        }
+
+        final Scene scene = new Scene(name, targets.size());
+        final boolean sceneCommand = requireComponent(MasterConfiguration.KEY).isLightSceneCommandEnabled();
+        final ServerOutgoingRouter router = requireComponent(ServerOutgoingRouter.KEY);
+        router.startBatch();
+        try {
+            for (Map.Entry<DeviceID, Collection<Module>> entry : modulesBySlave.asMap().entrySet()) {
+                if (sceneCommand) {
+                    final List<LightPayload> lights = new ArrayList<>(entry.getValue().size());
+                    for (Module module : entry.getValue()) {
+                        lights.add(new LightPayload(targets.get(module), module));
+                    }
+                    final Message message = new Message(new LightScenePayload(name, lights));
+                    track(scene, router.sendMessage(entry.getKey(), SLAVE_LIGHT_SCENE, message), lights.size());
+                } else {
+                    for (Module module : entry.getValue()) {
+                        final Message message = new Message(new LightPayload(targets.get(module), module));
+                        track(scene, router.sendMessage(entry.getKey(), SLAVE_LIGHT_SET, message), 1);
+                    }
+                }
+            }
+        } finally {
+            router.flushBatch();
+        }
+        final boolean done;
+        synchronized (scene) {
+            scene.sending = false;
+            done = scene.pendingLights.isEmpty();
+        }
+        if (done) {
+            complete(scene);
+        } else {
+            scene.timeout = requireComponent(Scheduler.KEY).schedule(new Runnable() {
+                @Override
+                public void run() {
+                    complete(scene);
+                }
+            }, requireComponent(MasterConfiguration.KEY).getRequestTimeout(), TimeUnit.MILLISECONDS);
+        }
+        logger.debug("Scene " + name + " switches " + targets.size() + " Lights on " + modulesBySlave.keySet().size()
+                + " Slaves");
+
+        if (logAction != null) {
+            final List<String> moduleNames = new ArrayList<>(targets.size());
+            for (Module module : targets.keySet()) {
+                moduleNames.add(module.getName());
+            }
+            try {
+                requireComponent(HolidayController.KEY).addHolidayLogEntries(logAction, moduleNames,
+                        System.currentTimeMillis());
+            } catch (UnknownReferenceException e) {
+                logger.info("Can't create holiday log entries because a module doesn't exist in the database.");
+            }
+        }
+    }
+
+    private void track(Scene scene, Message.AddressedMessage sent, int lightCount) {
+        synchronized (scene) {
+            scene.pendingLights.put(sent.getSequenceNr(), lightCount);
+        }
+        pendingReplies.put(sent.getSequenceNr(), scene);
+    }
+
+    /**
+     * @return the number of messages whose reply is still awaited by a scene
+     */
+    int getPendingReplyCount() {
+        return pendingReplies.size();
+    }
+
+    /**
+     * Called by the {@link MasterLightHandler} for each reply to a SLAVE_LIGHT_SET message.
+     *
+     * @param sequenceNr the sequence number of the message the Slave replied to
+     * @param payload    the new state of the Light or {@code null} if the Slave replied with an error
+     * @return {@code true} if the message was sent by a scene and the reply was consumed
+     */
+    boolean onReply(int sequenceNr, @Nullable LightPayload payload) {
+        return onReplies(sequenceNr,
+                payload != null ? Collections.singletonList(payload) : Collections.<LightPayload>emptyList());
+    }
+
+    /**
+     * Called by the {@link MasterLightHandler} for each reply to a SLAVE_LIGHT_SCENE message.
+     *
+     * @param sequenceNr the sequence number of the message the Slave replied to
+     * @param payload    the new states of the switched Lights or {@code null} if the Slave replied with an error
+     * @return {@code true} if the message was sent by a scene and the reply was consumed
+     */
+    boolean onSceneReply(int sequenceNr, @Nullable LightScenePayload payload) {
+        return onReplies(sequenceNr, payload != null ? payload.getLights() : Collections.<LightPayload>emptyList());
+    }
+
+    /**
+     * @param switched the Lights the Slave switched, all other Lights of the message count as failed
+     */
+    private boolean onReplies(int sequenceNr, List<LightPayload> switched) {
+        final Scene scene = pendingReplies.remove(sequenceNr);
+        if (scene == null) {
+            return false;
+        }
+        final boolean done;
+        synchronized (scene) {
+            final Integer lightCount = scene.pendingLights.remove(sequenceNr);
+            if (lightCount != null) {
+                scene.switched.addAll(switched);
+                scene.failed += Math.max(lightCount - switched.size(), 0);
+            }
+            done = !scene.sending && scene.pendingLights.isEmpty();
+        }
+        if (done) {
+            complete(scene);
+        }
+        return true;
+    }
+
+    private void complete(Scene scene) {
+        final List<LightPayload> switched;
+        final int failed;
+        final int timedOut;
+        synchronized (scene) {
+            if (scene.completed) {
+                return;
+            }
+            scene.completed = true;
+            int pending = 0;
+            for (Map.Entry<Integer, Integer> entry : scene.pendingLights.entrySet()) {
+                pendingReplies.remove(entry.getKey(), scene);
+                pending += entry.getValue();
+            }
+            switched = new ArrayList<>(scene.switched);
+            failed = scene.failed;
+            timedOut = pending;
+        }
+        scene.cancelTimeout();
+        if (failed > 0 || timedOut > 0) {
+            logger.warn("Scene " + scene.name + " switched " + switched.size() + " of " + scene.size + " Lights, "
+                    + failed + " failed, " + timedOut + " timed out");
+        } else {
+            logger.debug("Scene " + scene.name + " switched all " + scene.size + " Lights");
+        }
+        if (switched.isEmpty() || getContainer() == null) {
+            return;
+        }
+
+        final List<DeviceID> receivers = new ArrayList<>();
+        for (UserDevice userDevice : requireComponent(PermissionController.KEY)
+                .getAllUserDevicesWithPermission(REQUEST_LIGHT_STATUS, null)) {
+            receivers.add(userDevice.getUserDeviceID());
+        }
+        final ServerOutgoingRouter router = requireComponent(ServerOutgoingRouter.KEY);
+        router.startBatch();
+        try {
+            for (LightPayload payload : switched) {
+                router.sendMessageToAll(receivers, APP_LIGHT_UPDATE, new Message(payload));
+            }
+        } finally {
+            router.flushBatch();
+        }
+    }
+
+    private static class Scene {
+        private final String name;
+        private final int size;
+        /**
+         * The number of Lights switched by each message whose reply is still awaited, by sequence number
+         */
+        private final Map<Integer, Integer> pendingLights = new HashMap<>();
+        private final List<LightPayload> switched = new ArrayList<>();
+        private int failed;
+        private boolean sending = true;
+        private boolean completed;
+        private volatile ScheduledFuture<?> timeout;
+
+        private Scene(String name, int size) {
+            this.name = name;
+            this.size = size;
+        }
+
+        private void cancelTimeout() {
+            final ScheduledFuture<?> timeout = this.timeout;
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+        }
+    }
+}
@@ -27,11 +27,17 @@
 package de.unipassau.isl.evs.ssh.master.handler;
 
 import de.unipassau.isl.evs.ssh.core.database.dto.Module;
+import de.unipassau.isl.evs.ssh.core.database.dto.UserDevice;
 import de.unipassau.isl.evs.ssh.core.messaging.Message;
 import de.unipassau.isl.evs.ssh.core.messaging.RoutingKey;
 import de.unipassau.isl.evs.ssh.core.messaging.payload.CameraPayload;
 import de.unipassau.isl.evs.ssh.core.messaging.payload.ErrorPayload;
+import de.unipassau.isl.evs.ssh.master.database.PermissionController;
 import de.unipassau.isl.evs.ssh.master.database.SlaveController;
+import de.unipassau.isl.evs.ssh.master.network.ChunkedImageSender;
+
+import java.util.Arrays;
+import java.util.List;
 
 import static de.unipassau.isl.evs.ssh.core.messaging.Message.HEADER_REFERENCES_ID;
 import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.APP_CAMERA_BROADCAST;
@@ -74,8 +80,10 @@ public class MasterCameraHandler extends AbstractMasterHandler {
 
     private void handleError(Message.AddressedMessage message, ErrorPayload payload) {
         Message reply = new Message(payload);
-        Message.AddressedMessage originalMessage = takeProxiedReceivedMessage(message.getHeader(HEADER_REFERENCES_ID));
-        sendReply(originalMessage, reply);
+        for (Message.AddressedMessage originalMessage :
+                takeAllProxiedReceivedMessages(message.getHeader(HEADER_REFERENCES_ID))) {
+            sendReply(originalMessage, reply);
+        }
     }
 
     private void handleGetRequest(Message.AddressedMessage message, CameraPayload cameraPayload) {
@@ -83,9 +91,15 @@ public class MasterCameraHandler extends AbstractMasterHandler {
 
         //Check permission
         if (hasPermission(message.getFromID(), REQUEST_CAMERA_STATUS)) {
+            //Concurrent requests for the same camera are answered with the picture taken for the first one
+            final List<Object> coalescingKey = Arrays.<Object>asList(SLAVE_CAMERA_GET,
+                    cameraPayload.getModuleName(), cameraPayload.getCameraID());
+            if (attachToPendingRequest(coalescingKey, message)) {
+                return;
+            }
             Module atModule = requireComponent(SlaveController.KEY).getModule(cameraPayload.getModuleName());
             Message.AddressedMessage sentMessage = sendMessage(atModule.getAtSlave(), SLAVE_CAMERA_GET, messageToSend);
-            recordReceivedMessageProxy(message, sentMessage);
+            recordReceivedMessageProxy(message, sentMessage, coalescingKey);
         } else {
             //no permission
             sendNoPermissionReply(message, REQUEST_CAMERA_STATUS);
@@ -93,8 +107,20 @@ public class MasterCameraHandler extends AbstractMasterHandler {
     }
 
     private void handleResponse(Message.AddressedMessage message, CameraPayload cameraPayload) {
+        for (Message.AddressedMessage originalMessage :
+                takeAllProxiedReceivedMessages(message.getHeader(HEADER_REFERENCES_ID))) {
+            handleResponse(message, originalMessage, cameraPayload);
+        }
+    }
+
+    private void handleResponse(Message.AddressedMessage message, Message.AddressedMessage originalMessage,
+                                CameraPayload cameraPayload) {
+        if (requireComponent(ChunkedImageSender.KEY).isChunkingEnabled(cameraPayload.getPicture())) {
+            handleResponseChunked(message, originalMessage, cameraPayload);
+            return;
+        }
+
         Message reply = new Message(cameraPayload);
-        Message.AddressedMessage originalMessage = takeProxiedReceivedMessage(message.getHeader(HEADER_REFERENCES_ID));
         if (!isMaster(originalMessage.getFromID())) {
             sendReply(originalMessage, reply);
         } else {
@@ -102,4 +128,38 @@ public class MasterCameraHandler extends AbstractMasterHandler {
             sendMessageToAllDevicesWithPermission(reply, BELL_RANG, null, APP_CAMERA_BROADCAST);
         }
     }
+
+    /**
+     * Send the picture in chunks instead of a single message. If the picture was requested by a device,
+     * the request is answered with a CameraPayload without picture after the last chunk has been sent,
+     * or with an error if the transfer was aborted.
+     */
+    private void handleResponseChunked(Message.AddressedMessage message, final Message.AddressedMessage originalMessage,
+                                       CameraPayload cameraPayload) {
+        final ChunkedImageSender sender = requireComponent(ChunkedImageSender.KEY);
+        final byte[] picture = cameraPayload.getPicture();
+        final String moduleName = cameraPayload.getModuleName();
+        if (!isMaster(originalMessage.getFromID())) {
+            final Message reply = new Message(new CameraPayload(cameraPayload.getCameraID(), moduleName));
+            sender.send(originalMessage.getFromID(), originalMessage.getSequenceNr(), moduleName, picture,
+                    new ChunkedImageSender.TransferCallback() {
+                        @Override
+                        public void onComplete() {
+                            sendReply(originalMessage, reply);
+                        }
+
+                        @Override
+                        public void onFailure(Throwable cause) {
+                            sendReply(originalMessage, new Message(new ErrorPayload("The picture could not be sent.")));
+                        }
+                    });
+        } else {
+            //Broadcast picture too all devices that may also be informed that the bell rang
+            final List<UserDevice> userDevices = requireComponent(PermissionController.KEY)
+                    .getAllUserDevicesWithPermission(BELL_RANG, null);
+            for (UserDevice userDevice : userDevices) {
+                sender.send(userDevice.getUserDeviceID(), message.getSequenceNr(), moduleName, picture, null);
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -29,7 +29,6 @@ package de.unipassau.isl.evs.ssh.master.handler;
 import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
 
 import de.ncoder.typedmap.Key;
 import de.unipassau.isl.evs.ssh.core.container.Component;
@@ -37,15 +36,13 @@ import de.unipassau.isl.evs.ssh.core.database.dto.Module;
 import de.unipassau.isl.evs.ssh.core.messaging.Message;
 import de.unipassau.isl.evs.ssh.core.messaging.RoutingKey;
 import de.unipassau.isl.evs.ssh.core.messaging.payload.ClimatePayload;
-import de.unipassau.isl.evs.ssh.core.messaging.payload.LightPayload;
 import de.unipassau.isl.evs.ssh.master.MasterConstants;
 import de.unipassau.isl.evs.ssh.master.network.broadcast.NotificationBroadcaster;
+import de.unipassau.isl.evs.ssh.master.state.DeviceStateStore;
 
 import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.MASTER_PUSH_WEATHER_INFO;
 import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.MASTER_REQUEST_WEATHER_INFO;
 import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.MASTER_REQUEST_WEATHER_INFO_REPLY;
-import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.SLAVE_LIGHT_GET_REPLY;
-import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.SLAVE_LIGHT_SET_REPLY;
 import static de.unipassau.isl.evs.ssh.core.messaging.payload.NotificationPayload.NotificationType.BRIGHTNESS_WARNING;
 import static de.unipassau.isl.evs.ssh.core.messaging.payload.NotificationPayload.NotificationType.HUMIDITY_WARNING;
 
@@ -57,31 +54,19 @@ import static de.unipassau.isl.evs.ssh.core.messaging.payload.NotificationPayloa
 public class MasterClimateHandler extends AbstractMasterHandler implements Component {
     public static final Key<MasterClimateHandler> KEY = new Key<>(MasterClimateHandler.class);
 
-    private static final long WARNING_TIMER = TimeUnit.MINUTES.toMillis(5);
-
-    private long humidityTimeStamp = 0;
-    private long brightnessTimeStamp = 0;
-
-    private final Map<Module, ClimatePayload> latestWeatherData = new HashMap<>();
-    private final Map<Module, Boolean> latestLightStatus = new HashMap<>();
-
     @Override
     public RoutingKey[] getRoutingKeys() {
-        return new RoutingKey[]{MASTER_PUSH_WEATHER_INFO, SLAVE_LIGHT_GET_REPLY, MASTER_REQUEST_WEATHER_INFO, SLAVE_LIGHT_SET_REPLY};
+        return new RoutingKey[]{MASTER_PUSH_WEATHER_INFO, MASTER_REQUEST_WEATHER_INFO};
     }
 
     @Override
     public void handle(Message.AddressedMessage message) {
         if (MASTER_PUSH_WEATHER_INFO.matches(message)) {
             ClimatePayload payload = MASTER_PUSH_WEATHER_INFO.getPayload(message);
-            latestWeatherData.put(payload.getModule(), payload);
+            requireComponent(DeviceStateStore.KEY).put(payload.getModule().getName(), DeviceStateStore.Attribute.CLIMATE, payload);
             evaluateWeatherData(payload);
-        } else if (SLAVE_LIGHT_GET_REPLY.matches(message) || SLAVE_LIGHT_SET_REPLY.matches(message)) {
-            //Reply to get request, this means this message actually contains an updated lamp value
-            LightPayload payload = message.getPayloadChecked(LightPayload.class);
-            latestLightStatus.put(payload.getModule(), payload.getOn());
         } else if (MASTER_REQUEST_WEATHER_INFO.matches(message)) {
-            for (ClimatePayload payload : latestWeatherData.values()) {
+            for (ClimatePayload payload : getLatestWeatherData().values()) {
                 sendMessage(message.getFromID(), MASTER_REQUEST_WEATHER_INFO_REPLY, new Message(payload));
             }
         } else {
@@ -95,7 +80,13 @@ public class MasterClimateHandler extends AbstractMasterHandler implements Compo
      * @return map containing ClimatePayloads for Modules
      */
     public Map<Module, ClimatePayload> getLatestWeatherData() {
-        return new HashMap<>(latestWeatherData);
+        final Map<Module, ClimatePayload> latestWeatherData = new HashMap<>();
+        for (DeviceStateStore.State state : requireComponent(DeviceStateStore.KEY)
+                .getAll(DeviceStateStore.Attribute.CLIMATE).values()) {
+            final ClimatePayload payload = (ClimatePayload) state.getValue();
+            latestWeatherData.put(payload.getModule(), payload);
+        }
+        return latestWeatherData;
     }
 
     private void evaluateWeatherData(ClimatePayload payload) {
@@ -105,28 +96,29 @@ public class MasterClimateHandler extends AbstractMasterHandler implements Compo
 
     private void evaluateBrightness(ClimatePayload payload) {
         NotificationBroadcaster notificationBroadcaster = requireComponent(NotificationBroadcaster.KEY);
-        if (payload.getVisible() > MasterConstants.ClimateThreshold.VISIBLE_LIGHT) {
-            if (System.currentTimeMillis() - brightnessTimeStamp > WARNING_TIMER) {
-                for (Module module : latestLightStatus.keySet()) {
-                    if (latestLightStatus.get(module)) {
-                        Serializable serializableLight = payload.getVisible();
-                        notificationBroadcaster.sendMessageToAllReceivers(BRIGHTNESS_WARNING, serializableLight);
-                        brightnessTimeStamp = System.currentTimeMillis();
-                    }
-                }
+        //Repeated warnings are suppressed by the NotificationBroadcaster
+        if (payload.getVisible() > MasterConstants.ClimateThreshold.VISIBLE_LIGHT && isSomeLightOn()) {
+            Serializable serializableLight = payload.getVisible();
+            notificationBroadcaster.sendMessageToAllReceivers(BRIGHTNESS_WARNING, serializableLight);
+        }
+    }
+
+    private boolean isSomeLightOn() {
+        for (DeviceStateStore.State state : requireComponent(DeviceStateStore.KEY)
+                .getAll(DeviceStateStore.Attribute.LIGHT_ON).values()) {
+            if (Boolean.TRUE.equals(state.getValue())) {
+                return true;
             }
         }
+        return false;
     }
 
     private void evaluateHumidity(ClimatePayload payload) {
         NotificationBroadcaster notificationBroadcaster = requireComponent(NotificationBroadcaster.KEY);
         //The following values will not be checked as they are not of interest: Altitude, Pressure, Temp1, Temp2
         if (payload.getHumidity() > MasterConstants.ClimateThreshold.HUMIDITY) {
-            if (System.currentTimeMillis() - humidityTimeStamp > WARNING_TIMER) {
-                Serializable serializableHumidity = payload.getHumidity();
-                notificationBroadcaster.sendMessageToAllReceivers(HUMIDITY_WARNING, serializableHumidity);
-                humidityTimeStamp = System.currentTimeMillis();
-            }
+            Serializable serializableHumidity = payload.getHumidity();
+            notificationBroadcaster.sendMessageToAllReceivers(HUMIDITY_WARNING, serializableHumidity);
         }
     }
 }
\ No newline at end of file
@@ -84,8 +84,8 @@ public class MasterDoorBellHandler extends AbstractMasterHandler {
             final Module camera = slaveController.getModulesByType(CoreConstants.ModuleType.Webcam).get(0);
             final Message messageToSend = new Message(new CameraPayload(0, camera.getName()));
 
-            final Message.AddressedMessage sentMessage = sendMessageLocal(MASTER_CAMERA_GET, messageToSend);
-            recordReceivedMessageProxy(message, sentMessage);
+            //The MasterCameraHandler broadcasts the picture itself, as the request comes from the Master
+            sendMessageLocal(MASTER_CAMERA_GET, messageToSend);
         } else {
             logger.error("A non slave device tried to send a slave only message.");
         }
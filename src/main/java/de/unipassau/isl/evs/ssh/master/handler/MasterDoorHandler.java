@@ -26,7 +26,9 @@
 
 package de.unipassau.isl.evs.ssh.master.handler;
 
+import de.ncoder.typedmap.Key;
 import de.unipassau.isl.evs.ssh.core.CoreConstants;
+import de.unipassau.isl.evs.ssh.core.container.Component;
 import de.unipassau.isl.evs.ssh.core.database.dto.Module;
 import de.unipassau.isl.evs.ssh.core.handler.NoPermissionException;
 import de.unipassau.isl.evs.ssh.core.messaging.Message;
@@ -38,10 +40,13 @@ import de.unipassau.isl.evs.ssh.core.messaging.payload.ErrorPayload;
 import de.unipassau.isl.evs.ssh.core.messaging.payload.NotificationPayload;
 import de.unipassau.isl.evs.ssh.master.database.SlaveController;
 import de.unipassau.isl.evs.ssh.master.network.broadcast.NotificationBroadcaster;
+import de.unipassau.isl.evs.ssh.master.replication.ReplicatedState;
+import de.unipassau.isl.evs.ssh.master.state.DeviceStateStore;
 import de.unipassau.isl.evs.ssh.master.task.MasterHolidaySimulationPlannerHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -60,11 +65,10 @@ import static de.unipassau.isl.evs.ssh.core.sec.Permission.UNLATCH_DOOR_ON_HOLID
  * @author Leon Sell
  * @author Wolfgang Popp
  */
-public class MasterDoorHandler extends AbstractMasterHandler {
+public class MasterDoorHandler extends AbstractMasterHandler implements Component, ReplicatedState {
+    public static final Key<MasterDoorHandler> KEY = new Key<>(MasterDoorHandler.class);
     private static final String TAG = MasterDoorHandler.class.getSimpleName();
     private final Logger logger = LoggerFactory.getLogger(getClass());
-    private final Map<Integer, Boolean> blockedFor = new HashMap<>();
-    private final Map<Integer, Boolean> openFor = new HashMap<>();
 
     @Override
     public RoutingKey[] getRoutingKeys() {
@@ -113,7 +117,9 @@ public class MasterDoorHandler extends AbstractMasterHandler {
     private void replyError(Message.AddressedMessage message, RoutingKey<ErrorPayload> routingKey) {
         Message messageToSend = new Message(routingKey.getPayload(message));
         Message.AddressedMessage original = takeProxiedReceivedMessage(message.getHeader(HEADER_REFERENCES_ID));
-        sendReply(original, messageToSend);
+        if (original != null) {
+            sendReply(original, messageToSend);
+        }
     }
 
     private void handleDoorStatusUpdate(Message.AddressedMessage message, DoorStatusPayload payload) {
@@ -156,7 +162,9 @@ public class MasterDoorHandler extends AbstractMasterHandler {
         requireComponent(NotificationBroadcaster.KEY).sendMessageToAllReceivers(DOOR_UNLATCHED, message);
         final Message.AddressedMessage correspondingMessage =
                 takeProxiedReceivedMessage(message.getHeader(HEADER_REFERENCES_ID));
-        sendReply(correspondingMessage, new Message());
+        if (correspondingMessage != null) {
+            sendReply(correspondingMessage, new Message());
+        }
         broadcastDoorStatus(payload.getModuleName());
     }
 
@@ -187,37 +195,59 @@ public class MasterDoorHandler extends AbstractMasterHandler {
 
     private void setOpen(String moduleName, boolean isOpen) {
         if (moduleName != null) {
-            openFor.put(requireComponent(SlaveController.KEY).getModuleID(moduleName), isOpen);
+            requireComponent(DeviceStateStore.KEY).put(moduleName, DeviceStateStore.Attribute.DOOR_OPEN, isOpen);
         } else {
             throw new IllegalArgumentException("moduleName may not be null. Can't lock nonexistent Module.");
         }
     }
 
+    /**
+     * The Slaves push every change of the door status, so the last known status is always used.
+     */
     private Boolean getOpen(String moduleName) {
-        final Boolean isOpen = openFor.get(requireComponent(SlaveController.KEY).getModuleID(moduleName));
-        if (isOpen != null) {
-            return isOpen;
-        } else {
-            return false;
-        }
+        return requireComponent(DeviceStateStore.KEY).getValue(moduleName, DeviceStateStore.Attribute.DOOR_OPEN,
+                Boolean.class, false);
     }
 
     private synchronized void setBlocked(boolean locked) {
+        final DeviceStateStore store = requireComponent(DeviceStateStore.KEY);
         List<Module> modulesByType = requireComponent(SlaveController.KEY).getModulesByType(CoreConstants.ModuleType.DoorBuzzer);
         for (Module module : modulesByType) {
-            Integer moduleID = requireComponent(SlaveController.KEY).getModuleID(module.getName());
-            blockedFor.put(moduleID, locked);
+            store.put(module.getName(), DeviceStateStore.Attribute.DOOR_BLOCKED, locked);
         }
     }
 
     private synchronized boolean getBlocked() {
+        final DeviceStateStore store = requireComponent(DeviceStateStore.KEY);
         List<Module> modulesByType = requireComponent(SlaveController.KEY).getModulesByType(CoreConstants.ModuleType.DoorBuzzer);
         for (Module module : modulesByType) {
-            final Boolean isBlocked = blockedFor.get(requireComponent(SlaveController.KEY).getModuleID(module.getName()));
-            if (Boolean.TRUE.equals(isBlocked)) {
+            if (store.getValue(module.getName(), DeviceStateStore.Attribute.DOOR_BLOCKED, Boolean.class, false)) {
                 return true;
             }
         }
         return false;
     }
-}
\ No newline at end of file
+
+    @Override
+    public synchronized Serializable exportReplicatedState() {
+        final HashMap<String, Boolean> blockedFor = new HashMap<>();
+        for (Map.Entry<String, DeviceStateStore.State> entry : requireComponent(DeviceStateStore.KEY)
+                .getAll(DeviceStateStore.Attribute.DOOR_BLOCKED).entrySet()) {
+            blockedFor.put(entry.getKey(), (Boolean) entry.getValue().getValue());
+        }
+        return blockedFor;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized void importReplicatedState(Serializable state) {
+        final DeviceStateStore store = requireComponent(DeviceStateStore.KEY);
+        for (Map.Entry<String, Boolean> entry : ((Map<String, Boolean>) state).entrySet()) {
+            store.put(entry.getKey(), DeviceStateStore.Attribute.DOOR_BLOCKED, entry.getValue());
+        }
+    }
+
+    @Override
+    public void onPromotedToPrimary() {
+    }
+}
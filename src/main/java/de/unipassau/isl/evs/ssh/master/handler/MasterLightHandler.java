@@ -36,11 +36,16 @@ import de.unipassau.isl.evs.ssh.core.messaging.payload.ClimatePayload;
 import de.unipassau.isl.evs.ssh.core.messaging.payload.ErrorPayload;
 import de.unipassau.isl.evs.ssh.core.messaging.payload.LightPayload;
 import de.unipassau.isl.evs.ssh.core.sec.Permission;
+import de.unipassau.isl.evs.ssh.master.MasterConfiguration;
 import de.unipassau.isl.evs.ssh.master.database.HolidayController;
 import de.unipassau.isl.evs.ssh.master.database.SlaveController;
+import de.unipassau.isl.evs.ssh.master.messaging.payload.LightScenePayload;
+import de.unipassau.isl.evs.ssh.master.state.DeviceStateStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -51,6 +56,8 @@ import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.*;
 import static de.unipassau.isl.evs.ssh.core.sec.Permission.REQUEST_LIGHT_STATUS;
 import static de.unipassau.isl.evs.ssh.core.sec.Permission.SWITCH_LIGHT;
 import static de.unipassau.isl.evs.ssh.core.sec.Permission.UNLATCH_DOOR;
+import static de.unipassau.isl.evs.ssh.master.messaging.MasterRoutingKeys.SLAVE_LIGHT_SCENE_ERROR;
+import static de.unipassau.isl.evs.ssh.master.messaging.MasterRoutingKeys.SLAVE_LIGHT_SCENE_REPLY;
 
 /**
  * Handles light messages, logs them for the holiday simulation and generates messages
@@ -76,6 +83,10 @@ public class MasterLightHandler extends AbstractMasterHandler {
             handleGetError(message, SLAVE_LIGHT_GET_ERROR.getPayload(message));
         } else if (SLAVE_LIGHT_SET_ERROR.matches(message)) {
             handleSetError(message, SLAVE_LIGHT_SET_ERROR.getPayload(message));
+        } else if (SLAVE_LIGHT_SCENE_REPLY.matches(message)) {
+            handleSceneResponse(message);
+        } else if (SLAVE_LIGHT_SCENE_ERROR.matches(message)) {
+            requireComponent(LightSceneSender.KEY).onSceneReply(message.getHeader(HEADER_REFERENCES_ID), null);
         } else if (MASTER_DOOR_UNLATCH.matches(message)) {
             handleDoorUnlatched(message);
         } else {
@@ -91,19 +102,28 @@ public class MasterLightHandler extends AbstractMasterHandler {
                 SLAVE_LIGHT_GET_REPLY,
                 SLAVE_LIGHT_GET_ERROR,
                 SLAVE_LIGHT_SET_ERROR,
+                SLAVE_LIGHT_SCENE_REPLY,
+                SLAVE_LIGHT_SCENE_ERROR,
                 MASTER_DOOR_UNLATCH};
     }
 
     private void handleSetError(Message.AddressedMessage message, ErrorPayload payload) {
+        if (requireComponent(LightSceneSender.KEY).onReply(message.getHeader(HEADER_REFERENCES_ID), null)) {
+            return;
+        }
         final Message.AddressedMessage correspondingMessage =
                 takeProxiedReceivedMessage(message.getHeader(HEADER_REFERENCES_ID));
-        sendReply(correspondingMessage, new Message(payload));
+        if (correspondingMessage != null) {
+            sendReply(correspondingMessage, new Message(payload));
+        }
     }
 
     private void handleGetError(Message.AddressedMessage message, ErrorPayload payload) {
-        final Message.AddressedMessage correspondingMessage =
-                takeProxiedReceivedMessage(message.getHeader(HEADER_REFERENCES_ID));
-        sendReply(correspondingMessage, new Message(payload));
+        final Message reply = new Message(payload);
+        for (Message.AddressedMessage correspondingMessage :
+                takeAllProxiedReceivedMessages(message.getHeader(HEADER_REFERENCES_ID))) {
+            sendReply(correspondingMessage, reply);
+        }
     }
 
     private void handleSetRequest(Message.AddressedMessage message) {
@@ -136,10 +156,22 @@ public class MasterLightHandler extends AbstractMasterHandler {
         final LightPayload payload = MASTER_LIGHT_GET.getPayload(message);
         final Module atModule = payload.getModule();
         if (hasPermission(message.getFromID(), REQUEST_LIGHT_STATUS)) {
+            //Answer from the last reply of the Slave if it is recent enough
+            final DeviceStateStore.State state = requireComponent(DeviceStateStore.KEY).getIfFresh(
+                    atModule.getName(), DeviceStateStore.Attribute.LIGHT_ON, lightStateMaxAge());
+            if (state != null) {
+                sendReply(message, new Message(new LightPayload((Boolean) state.getValue(), atModule)));
+                return;
+            }
+            //Concurrent requests for the same lamp are answered with the reply to the first one
+            final List<Object> coalescingKey = Arrays.<Object>asList(SLAVE_LIGHT_GET, atModule.getName());
+            if (attachToPendingRequest(coalescingKey, message)) {
+                return;
+            }
             final Message messageToSend = new Message(payload);
             final Message.AddressedMessage sendMessage =
                     sendMessage(atModule.getAtSlave(), SLAVE_LIGHT_GET, messageToSend);
-            recordReceivedMessageProxy(message, sendMessage);
+            recordReceivedMessageProxy(message, sendMessage, coalescingKey);
         } else {
             //no permission
             sendNoPermissionReply(message, REQUEST_LIGHT_STATUS);
@@ -147,9 +179,14 @@ public class MasterLightHandler extends AbstractMasterHandler {
     }
 
     private void handleSetResponse(Message.AddressedMessage message) {
+        final LightPayload lightPayload = SLAVE_LIGHT_SET_REPLY.getPayload(message);
+        recordLightState(lightPayload);
+        //Replies to scenes are sent to the Apps together once the scene is complete
+        if (requireComponent(LightSceneSender.KEY).onReply(message.getHeader(HEADER_REFERENCES_ID), lightPayload)) {
+            return;
+        }
         final Message.AddressedMessage correspondingMessage =
                 takeProxiedReceivedMessage(message.getHeader(HEADER_REFERENCES_ID));
-        final LightPayload lightPayload = SLAVE_LIGHT_SET_REPLY.getPayload(message);
         final Message messageToSend = new Message(lightPayload);
         if (correspondingMessage != null) {
             sendReply(correspondingMessage, messageToSend);
@@ -158,11 +195,33 @@ public class MasterLightHandler extends AbstractMasterHandler {
     }
 
     private void handleGetResponse(Message.AddressedMessage message) {
-        final Message.AddressedMessage correspondingMessage = takeProxiedReceivedMessage(
+        final List<Message.AddressedMessage> correspondingMessages = takeAllProxiedReceivedMessages(
                 message.getHeader(Message.HEADER_REFERENCES_ID));
 
-        final Message messageToSend = new Message(SLAVE_LIGHT_GET_REPLY.getPayload(message));
-        sendReply(correspondingMessage, messageToSend);
+        final LightPayload lightPayload = SLAVE_LIGHT_GET_REPLY.getPayload(message);
+        recordLightState(lightPayload);
+        final Message messageToSend = new Message(lightPayload);
+        for (Message.AddressedMessage correspondingMessage : correspondingMessages) {
+            sendReply(correspondingMessage, messageToSend);
+        }
+    }
+
+    private void handleSceneResponse(Message.AddressedMessage message) {
+        final LightScenePayload scenePayload = SLAVE_LIGHT_SCENE_REPLY.getPayload(message);
+        for (LightPayload lightPayload : scenePayload.getLights()) {
+            recordLightState(lightPayload);
+        }
+        //The new states are sent to the Apps once the whole scene is complete
+        requireComponent(LightSceneSender.KEY).onSceneReply(message.getHeader(HEADER_REFERENCES_ID), scenePayload);
+    }
+
+    private void recordLightState(LightPayload payload) {
+        requireComponent(DeviceStateStore.KEY).put(payload.getModule().getName(),
+                DeviceStateStore.Attribute.LIGHT_ON, payload.getOn());
+    }
+
+    private long lightStateMaxAge() {
+        return requireComponent(MasterConfiguration.KEY).getLightStateMaxAge();
     }
 
     private void handleDoorUnlatched(Message.AddressedMessage message) {
@@ -188,19 +247,11 @@ public class MasterLightHandler extends AbstractMasterHandler {
 
                 if (tooDark) {
                     //Switch all lights on as user comes home and it is too dark
+                    final Map<Module, Boolean> targets = new LinkedHashMap<>();
                     for (Module module : slaveController.getModulesByType(CoreConstants.ModuleType.Light)) {
-                        try {
-                            final HolidayController holidayController = requireComponent(HolidayController.KEY);
-                            holidayController.addHolidayLogEntryNow(LIGHT_ON_ACTION, module.getName());
-                        } catch (UnknownReferenceException e) {
-                            logger.info("Can't created holiday log entry because the given module doesn't exist "
-                                    + "in the database.");
-                        }
-
-                        LightPayload payload = new LightPayload(true, module);
-                        final Message messageToSend = new Message(payload);
-                        sendMessage(module.getAtSlave(), SLAVE_LIGHT_SET, messageToSend);
+                        targets.put(module, true);
                     }
+                    requireComponent(LightSceneSender.KEY).switchLights("welcome home", targets, LIGHT_ON_ACTION);
                 }
             }
         }
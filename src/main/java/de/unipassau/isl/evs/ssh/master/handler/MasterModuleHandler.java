@@ -39,6 +39,7 @@ import de.unipassau.isl.evs.ssh.master.database.PermissionController;
 import de.unipassau.isl.evs.ssh.master.database.SlaveController;
 import de.unipassau.isl.evs.ssh.master.network.broadcast.ModuleBroadcaster;
 import de.unipassau.isl.evs.ssh.master.network.broadcast.UserConfigurationBroadcaster;
+import de.unipassau.isl.evs.ssh.master.state.DeviceStateStore;
 
 import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.MASTER_DEVICE_CONNECTED;
 import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.MASTER_MODULE_ADD;
@@ -80,6 +81,7 @@ public class MasterModuleHandler extends AbstractMasterHandler {
             return;
         }
         requireComponent(SlaveController.KEY).removeModule(payload.getModule().getName());
+        requireComponent(DeviceStateStore.KEY).remove(payload.getModule().getName());
         sendOnSuccess(original);
     }
 
@@ -117,11 +119,11 @@ public class MasterModuleHandler extends AbstractMasterHandler {
         sendReply(original, new Message());
 
         final ModuleBroadcaster moduleBroadcaster = requireComponent(ModuleBroadcaster.KEY);
-        moduleBroadcaster.updateAllClients();
+        moduleBroadcaster.scheduleUpdateAllClients();
 
         // also update the user configuration, since new permissions might have been added or removed
         final UserConfigurationBroadcaster userBroadcaster = requireComponent(UserConfigurationBroadcaster.KEY);
-        userBroadcaster.updateAllClients();
+        userBroadcaster.scheduleUpdateAllClients();
     }
 
     private void sendError(Message.AddressedMessage original, Exception e) {
@@ -46,13 +46,16 @@ import de.unipassau.isl.evs.ssh.master.database.PermissionController;
 import de.unipassau.isl.evs.ssh.master.database.UserManagementController;
 import de.unipassau.isl.evs.ssh.master.network.Server;
 import de.unipassau.isl.evs.ssh.master.network.broadcast.UserConfigurationBroadcaster;
+import de.unipassau.isl.evs.ssh.master.replication.ReplicatedState;
 import io.netty.channel.Channel;
 import org.apache.commons.codec.binary.Base64;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Serializable;
 import java.security.GeneralSecurityException;
 import java.security.cert.X509Certificate;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -68,12 +71,13 @@ import static de.unipassau.isl.evs.ssh.core.sec.Permission.DELETE_USER;
  *
  * @author Leon Sell
  */
-public class MasterRegisterDeviceHandler extends AbstractMasterHandler implements Component {
+public class MasterRegisterDeviceHandler extends AbstractMasterHandler implements Component, ReplicatedState {
     public static final Key<MasterRegisterDeviceHandler> KEY = new Key<>(MasterRegisterDeviceHandler.class);
 
     public static final String FIRST_USER = "Admin";
     public static final String FIRST_GROUP = DatabaseContract.Group.DefaultValues.PARENTS.toString();
-    private final Map<String, UserDevice> userDeviceForToken = new HashMap<>();
+    private final Map<String, UserDevice> userDeviceForToken =
+            Collections.synchronizedMap(new HashMap<String, UserDevice>());
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     @Override
@@ -109,7 +113,7 @@ public class MasterRegisterDeviceHandler extends AbstractMasterHandler implement
         }
 
         sendReply(original, new Message());
-        requireComponent(UserConfigurationBroadcaster.KEY).updateAllClients();
+        requireComponent(UserConfigurationBroadcaster.KEY).scheduleUpdateAllClients();
     }
 
     /**
@@ -147,7 +151,7 @@ public class MasterRegisterDeviceHandler extends AbstractMasterHandler implement
             }
             addUserDeviceToDatabase(deviceID, newDevice);
             userDeviceForToken.remove(base64Token);
-            requireComponent(UserConfigurationBroadcaster.KEY).updateAllClients();
+            requireComponent(UserConfigurationBroadcaster.KEY).scheduleUpdateAllClients();
             return true;
         } else {
             logger.warn("Some tried using an unknown token to register. Token: " + base64Token
@@ -219,4 +223,24 @@ public class MasterRegisterDeviceHandler extends AbstractMasterHandler implement
             sendNoPermissionReply(message, ADD_USER);
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public Serializable exportReplicatedState() {
+        synchronized (userDeviceForToken) {
+            return new HashMap<>(userDeviceForToken);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void importReplicatedState(Serializable state) {
+        synchronized (userDeviceForToken) {
+            userDeviceForToken.clear();
+            userDeviceForToken.putAll((Map<String, UserDevice>) state);
+        }
+    }
+
+    @Override
+    public void onPromotedToPrimary() {
+    }
+}
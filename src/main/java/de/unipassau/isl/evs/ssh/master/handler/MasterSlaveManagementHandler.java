@@ -92,7 +92,7 @@ public class MasterSlaveManagementHandler extends AbstractMasterHandler implemen
             }
             try {
                 deleteSlave(deleteDevicePayload.getUser());
-                requireComponent(UserConfigurationBroadcaster.KEY).updateAllClients();
+                requireComponent(UserConfigurationBroadcaster.KEY).scheduleUpdateAllClients();
             } catch (IsReferencedException e) {
                 logger.info(MODULE_ADDED_JUST_BEFORE_SLAVE_DELETE_ERROR);
                 sendReply(message, new Message(new ErrorPayload(e, MODULE_ADDED_JUST_BEFORE_SLAVE_DELETE_ERROR)));
@@ -123,12 +123,12 @@ public class MasterSlaveManagementHandler extends AbstractMasterHandler implemen
     public void registerSlave(Slave slave) throws AlreadyInUseException {
         requireComponent(SlaveController.KEY).addSlave(slave);
         final ModuleBroadcaster broadcaster = requireComponent(ModuleBroadcaster.KEY);
-        broadcaster.updateAllClients();
+        broadcaster.scheduleUpdateAllClients();
     }
 
     public void deleteSlave(DeviceID slaveID) throws IsReferencedException {
         requireComponent(SlaveController.KEY).removeSlave(slaveID);
         final ModuleBroadcaster broadcaster = requireComponent(ModuleBroadcaster.KEY);
-        broadcaster.updateAllClients();
+        broadcaster.scheduleUpdateAllClients();
     }
 }
\ No newline at end of file
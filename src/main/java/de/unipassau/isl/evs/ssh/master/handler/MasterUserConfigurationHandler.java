@@ -235,7 +235,7 @@ public class MasterUserConfigurationHandler extends AbstractMasterHandler {
 
     private void sendOnSuccess(Message.AddressedMessage original) {
         sendReply(original, new Message());
-        requireComponent(UserConfigurationBroadcaster.KEY).updateAllClients();
+        requireComponent(UserConfigurationBroadcaster.KEY).scheduleUpdateAllClients();
     }
 
     private void sendError(Message.AddressedMessage original, Exception e) {
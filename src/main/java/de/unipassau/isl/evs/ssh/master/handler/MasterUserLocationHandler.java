@@ -29,15 +29,13 @@ package de.unipassau.isl.evs.ssh.master.handler;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ListMultimap;
 import de.ncoder.typedmap.Key;
-import de.unipassau.isl.evs.ssh.core.CoreConstants;
 import de.unipassau.isl.evs.ssh.core.container.Component;
 import de.unipassau.isl.evs.ssh.core.messaging.Message;
 import de.unipassau.isl.evs.ssh.core.messaging.RoutingKey;
 import de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys;
 import de.unipassau.isl.evs.ssh.core.messaging.payload.DeviceConnectedPayload;
 import de.unipassau.isl.evs.ssh.core.naming.DeviceID;
-import de.unipassau.isl.evs.ssh.master.network.Server;
-import io.netty.channel.Channel;
+import de.unipassau.isl.evs.ssh.master.network.PresenceIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -60,7 +58,7 @@ public class MasterUserLocationHandler extends AbstractMasterHandler implements
     private static final int MAX_POSITION_COUNT = 10;
 
     //Contains a mapping from boolean to a queue which contains information whether the device
-    //connected to local
+    //connected to local, guarded by itself as messages may be handled concurrently
     private final ListMultimap<DeviceID, Record> positionMap = ArrayListMultimap.create();
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
@@ -77,12 +75,14 @@ public class MasterUserLocationHandler extends AbstractMasterHandler implements
         if (RoutingKeys.MASTER_DEVICE_CONNECTED.matches(message)) {
             final DeviceConnectedPayload payload = RoutingKeys.MASTER_DEVICE_CONNECTED.getPayload(message);
 
-            final List<Record> list = positionMap.get(payload.getDeviceID());
-            if (list.size() <= 1 || list.get(0).isLocal != payload.isLocal()) {
-                list.add(0, new Record(payload.isLocal()));
-            }
-            while (list.size() > MAX_POSITION_COUNT) {
-                list.remove(list.size() - 1);
+            synchronized (positionMap) {
+                final List<Record> list = positionMap.get(payload.getDeviceID());
+                if (list.size() <= 1 || list.get(0).isLocal != payload.isLocal()) {
+                    list.add(0, new Record(payload.isLocal()));
+                }
+                while (list.size() > MAX_POSITION_COUNT) {
+                    list.remove(list.size() - 1);
+                }
             }
         }
     }
@@ -95,13 +95,17 @@ public class MasterUserLocationHandler extends AbstractMasterHandler implements
      * @return true if change to local happened in the last 'interval' min.
      */
     public boolean switchedPositionToLocal(DeviceID deviceID, int interval) {
-        if (positionMap.get(deviceID).size() < 2) {
-            return false;
+        final Record lastMessage;
+        final Record preLastMessage;
+        synchronized (positionMap) {
+            final List<Record> list = positionMap.get(deviceID);
+            if (list.size() < 2) {
+                return false;
+            }
+            lastMessage = list.get(0);
+            preLastMessage = list.get(1);
         }
 
-        final Record lastMessage = positionMap.get(deviceID).get(0);
-        final Record preLastMessage = positionMap.get(deviceID).get(1);
-
         //Is last location local and was last outside of home network and was that change in the last 2 min?
         boolean result = lastMessage.isLocal && !preLastMessage.isLocal
                 && System.currentTimeMillis() - lastMessage.timestamp < TimeUnit.MINUTES.toMillis(interval);
@@ -119,10 +123,7 @@ public class MasterUserLocationHandler extends AbstractMasterHandler implements
      * @return true if device is in local network
      */
     public boolean isDeviceLocal(DeviceID deviceID) {
-        final Channel channel = requireComponent(Server.KEY).findChannel(deviceID);
-        return channel != null
-                && channel.isOpen()
-                && channel.attr(CoreConstants.NettyConstants.ATTR_LOCAL_CONNECTION).get();
+        return requireComponent(PresenceIndex.KEY).isLocal(deviceID);
     }
 
     private static class Record {
@@ -0,0 +1,308 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.handler;
+
+import de.ncoder.typedmap.Key;
+import de.unipassau.isl.evs.ssh.core.container.AbstractComponent;
+import de.unipassau.isl.evs.ssh.core.container.Container;
+import de.unipassau.isl.evs.ssh.core.messaging.Message;
+import de.unipassau.isl.evs.ssh.core.messaging.RoutingKey;
+import de.unipassau.isl.evs.ssh.core.naming.DeviceID;
+import de.unipassau.isl.evs.ssh.core.schedule.Scheduler;
+import de.unipassau.isl.evs.ssh.master.MasterConfiguration;
+import de.unipassau.isl.evs.ssh.master.network.metrics.Histogram;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.SLAVE_CAMERA_GET;
+
+/**
+ * Keeps track of the requests the Master forwarded to Slaves (the proxy messages) in order to answer a request it
+ * received, see {@link AbstractMasterHandler#recordReceivedMessageProxy(Message.AddressedMessage, Message.AddressedMessage)}.
+ * <p>
+ * Each pending request has a deadline depending on the RoutingKey of the proxy message. If the Slave doesn't reply in
+ * time, the request is removed and the original requester gets an error reply, so that lost replies neither leak
+ * memory nor leave the App waiting forever. If the table is full, the oldest request is timed out early.
+ * The round-trip times of the replies are recorded for every Slave.
+ * <p>
+ * Requests can be recorded with a coalescing key identifying the data they ask for, e.g. the RoutingKey and Module.
+ * Further requests with the same key can then be attached to the pending request instead of being forwarded again,
+ * and are answered with the same reply.
+ *
+ * @author Team
+ */
+public class PendingRequestTable extends AbstractComponent {
+    public static final Key<PendingRequestTable> KEY = new Key<>(PendingRequestTable.class);
+    private static final long SWEEP_INTERVAL_MILLIS = 500;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final ConcurrentMap<Integer, PendingRequest> pending = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Object, PendingRequest> pendingByCoalescingKey = new ConcurrentHashMap<>();
+    private final Map<RoutingKey, Long> deadlines = new LinkedHashMap<>();
+    private final ConcurrentMap<DeviceID, Histogram> roundTripTimes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<DeviceID, AtomicLong> timeouts = new ConcurrentHashMap<>();
+    private long defaultDeadline;
+    private int maxPending;
+    private ScheduledFuture<?> sweeper;
+
+    @Override
+    public void init(Container container) {
+        super.init(container);
+        final MasterConfiguration config = requireComponent(MasterConfiguration.KEY);
+        defaultDeadline = config.getRequestTimeout();
+        deadlines.put(SLAVE_CAMERA_GET, (long) config.getCameraRequestTimeout());
+        maxPending = config.getMaxPendingRequests();
+        sweeper = requireComponent(Scheduler.KEY).scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    expire(System.currentTimeMillis());
+                } catch (RuntimeException e) {
+                    logger.error("Could not expire pending requests", e);
+                }
+            }
+        }, SWEEP_INTERVAL_MILLIS, SWEEP_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        if (sweeper != null) {
+            sweeper.cancel(false);
+        }
+        pending.clear();
+        pendingByCoalescingKey.clear();
+        super.destroy();
+    }
+
+    void add(AbstractMasterHandler owner, Message.AddressedMessage receivedMessage, Message.AddressedMessage proxyMessage,
+             @Nullable Object coalescingKey) {
+        final long now = System.currentTimeMillis();
+        final PendingRequest request = new PendingRequest(owner, receivedMessage, proxyMessage.getToID(),
+                coalescingKey, now, now + getDeadline(proxyMessage));
+        final PendingRequest previous = pending.put(proxyMessage.getSequenceNr(), request);
+        if (previous != null) {
+            logger.warn("Sequence number " + proxyMessage.getSequenceNr() + " reused while " + previous + " was pending");
+            complete(previous);
+        }
+        if (coalescingKey != null) {
+            pendingByCoalescingKey.put(coalescingKey, request);
+        }
+        while (pending.size() > maxPending) {
+            if (!evictOldest()) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if a request with the same coalescing key was pending and the received message will be
+     * answered together with it, {@code false} if the request has to be forwarded
+     */
+    boolean attach(AbstractMasterHandler owner, Object coalescingKey, Message.AddressedMessage receivedMessage) {
+        final PendingRequest request = pendingByCoalescingKey.get(coalescingKey);
+        return request != null && request.owner == owner && request.attach(receivedMessage);
+    }
+
+    /**
+     * @return all received messages waiting for the reply to the given proxy message, which is empty if the request
+     * already timed out
+     */
+    List<Message.AddressedMessage> take(AbstractMasterHandler owner, int proxySequenceNumber) {
+        final PendingRequest request = pending.get(proxySequenceNumber);
+        if (request == null || request.owner != owner || !pending.remove(proxySequenceNumber, request)) {
+            logger.debug("No pending request for reply to " + proxySequenceNumber + ", it probably timed out");
+            return Collections.emptyList();
+        }
+        getRoundTripTimes(request.slaveID, true)
+                .record(System.currentTimeMillis() - request.sentAt, TimeUnit.MILLISECONDS);
+        return complete(request);
+    }
+
+    private List<Message.AddressedMessage> complete(PendingRequest request) {
+        if (request.coalescingKey != null) {
+            pendingByCoalescingKey.remove(request.coalescingKey, request);
+        }
+        return request.complete();
+    }
+
+    private long getDeadline(Message.AddressedMessage proxyMessage) {
+        for (Map.Entry<RoutingKey, Long> entry : deadlines.entrySet()) {
+            if (entry.getKey().matches(proxyMessage)) {
+                return entry.getValue();
+            }
+        }
+        return defaultDeadline;
+    }
+
+    /**
+     * Time out all requests whose deadline is not after the given time.
+     */
+    void expire(long now) {
+        for (Map.Entry<Integer, PendingRequest> entry : pending.entrySet()) {
+            if (entry.getValue().deadline <= now) {
+                timeout(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private boolean evictOldest() {
+        Map.Entry<Integer, PendingRequest> oldest = null;
+        for (Map.Entry<Integer, PendingRequest> entry : pending.entrySet()) {
+            if (oldest == null || entry.getValue().sentAt < oldest.getValue().sentAt) {
+                oldest = entry;
+            }
+        }
+        return oldest != null && timeout(oldest.getKey(), oldest.getValue());
+    }
+
+    private boolean timeout(Integer proxySequenceNumber, PendingRequest request) {
+        if (!pending.remove(proxySequenceNumber, request)) {
+            // the reply arrived in the meantime
+            return false;
+        }
+        logger.info("Request " + request + " timed out");
+        AtomicLong counter = timeouts.get(request.slaveID);
+        if (counter == null) {
+            final AtomicLong newCounter = new AtomicLong();
+            counter = timeouts.putIfAbsent(request.slaveID, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        counter.incrementAndGet();
+        for (Message.AddressedMessage receivedMessage : complete(request)) {
+            try {
+                request.owner.onProxiedRequestTimedOut(receivedMessage);
+            } catch (RuntimeException e) {
+                logger.warn("Could not reply to timed out request " + receivedMessage, e);
+            }
+        }
+        return true;
+    }
+
+    private Histogram getRoundTripTimes(DeviceID slaveID, boolean create) {
+        Histogram histogram = roundTripTimes.get(slaveID);
+        if (histogram == null && create) {
+            final Histogram newHistogram = new Histogram();
+            histogram = roundTripTimes.putIfAbsent(slaveID, newHistogram);
+            if (histogram == null) {
+                histogram = newHistogram;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * @return the number of requests that are currently waiting for a reply
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * @return the round-trip times of requests answered by the given Slave, or {@code null} if it never replied
+     */
+    @Nullable
+    public Histogram getRoundTripTimes(DeviceID slaveID) {
+        return getRoundTripTimes(slaveID, false);
+    }
+
+    /**
+     * @return the round-trip times of all Slaves
+     */
+    public Map<DeviceID, Histogram> getAllRoundTripTimes() {
+        return Collections.unmodifiableMap(roundTripTimes);
+    }
+
+    /**
+     * @return the number of requests to the given Slave that timed out
+     */
+    public long getTimeoutCount(DeviceID slaveID) {
+        final AtomicLong counter = timeouts.get(slaveID);
+        return counter != null ? counter.get() : 0;
+    }
+
+    private static class PendingRequest {
+        private final AbstractMasterHandler owner;
+        private final List<Message.AddressedMessage> receivedMessages = new ArrayList<>(1);
+        private final DeviceID slaveID;
+        @Nullable
+        private final Object coalescingKey;
+        private final long sentAt;
+        private final long deadline;
+        private boolean completed = false;
+
+        private PendingRequest(AbstractMasterHandler owner, Message.AddressedMessage receivedMessage, DeviceID slaveID,
+                               @Nullable Object coalescingKey, long sentAt, long deadline) {
+            this.owner = owner;
+            this.receivedMessages.add(receivedMessage);
+            this.slaveID = slaveID;
+            this.coalescingKey = coalescingKey;
+            this.sentAt = sentAt;
+            this.deadline = deadline;
+        }
+
+        private synchronized boolean attach(Message.AddressedMessage receivedMessage) {
+            if (completed) {
+                return false;
+            }
+            receivedMessages.add(receivedMessage);
+            return true;
+        }
+
+        /**
+         * Prevent further messages from being attached.
+         *
+         * @return all received messages waiting for this request
+         */
+        private synchronized List<Message.AddressedMessage> complete() {
+            completed = true;
+            return new ArrayList<>(receivedMessages);
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "PendingRequest{" +
+                    "receivedMessages=" + receivedMessages +
+                    ", slaveID=" + slaveID +
+                    ", sentAt=" + sentAt +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.messaging;
+
+import de.unipassau.isl.evs.ssh.core.messaging.RoutingKey;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.ErrorPayload;
+import de.unipassau.isl.evs.ssh.master.messaging.payload.CameraChunkPayload;
+import de.unipassau.isl.evs.ssh.master.messaging.payload.LightScenePayload;
+
+/**
+ * RoutingKeys of messages that are only sent by the Master and are not yet part of
+ * {@link de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys}.
+ *
+ * @author Team
+ */
+public enum MasterRoutingKeys {
+    ;
+
+    /**
+     * A chunk of a camera picture, sent instead of the picture in the reply to a
+     * {@link de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys#MASTER_CAMERA_GET} request or a
+     * {@link de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys#APP_CAMERA_BROADCAST}.
+     */
+    public static final RoutingKey<CameraChunkPayload> APP_CAMERA_CHUNK = new RoutingKey<>("/app/camera/chunk", CameraChunkPayload.class);
+
+    /**
+     * Switch several Lights connected to the same Slave at once, sent instead of one
+     * {@link de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys#SLAVE_LIGHT_SET} per Light.
+     * The Slave replies with the new states of the Lights it switched.
+     */
+    public static final RoutingKey<LightScenePayload> SLAVE_LIGHT_SCENE = new RoutingKey<>("/slave/light/scene", LightScenePayload.class);
+    public static final RoutingKey<LightScenePayload> SLAVE_LIGHT_SCENE_REPLY = SLAVE_LIGHT_SCENE.getReply(LightScenePayload.class);
+    public static final RoutingKey<ErrorPayload> SLAVE_LIGHT_SCENE_ERROR = SLAVE_LIGHT_SCENE.getReply(ErrorPayload.class);
+}
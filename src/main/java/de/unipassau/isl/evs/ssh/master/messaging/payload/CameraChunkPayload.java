@@ -0,0 +1,105 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.messaging.payload;
+
+import de.unipassau.isl.evs.ssh.core.messaging.payload.MessagePayload;
+
+import java.util.Arrays;
+
+/**
+ * A part of a picture taken by a camera that is sent in several chunks instead of a single
+ * {@link de.unipassau.isl.evs.ssh.core.messaging.payload.CameraPayload}.
+ * All chunks of one picture share the same transfer ID and are sent in order, so that the receiver can display the
+ * picture progressively and knows it is complete once the chunk with the index {@code chunkCount - 1} was received.
+ *
+ * @author Team
+ */
+public class CameraChunkPayload implements MessagePayload {
+    private final int transferID;
+    private final String moduleName;
+    private final int chunkIndex;
+    private final int chunkCount;
+    private final int totalLength;
+    private final byte[] data;
+
+    /**
+     * @param transferID  identifies the picture this chunk belongs to, the sequence number of the request for the
+     *                    picture if there was one
+     * @param moduleName  the name of the camera that took the picture
+     * @param chunkIndex  the index of this chunk, starting with 0
+     * @param chunkCount  the number of chunks the picture consists of
+     * @param totalLength the size of the whole picture in bytes
+     * @param data        the bytes of this chunk
+     */
+    public CameraChunkPayload(int transferID, String moduleName, int chunkIndex, int chunkCount, int totalLength, byte[] data) {
+        this.transferID = transferID;
+        this.moduleName = moduleName;
+        this.chunkIndex = chunkIndex;
+        this.chunkCount = chunkCount;
+        this.totalLength = totalLength;
+        this.data = data;
+    }
+
+    public int getTransferID() {
+        return transferID;
+    }
+
+    public String getModuleName() {
+        return moduleName;
+    }
+
+    public int getChunkIndex() {
+        return chunkIndex;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    public int getTotalLength() {
+        return totalLength;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public boolean isLastChunk() {
+        return chunkIndex == chunkCount - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "CameraChunkPayload{" +
+                "transferID=" + transferID +
+                ", moduleName='" + moduleName + '\'' +
+                ", chunk=" + (chunkIndex + 1) + "/" + chunkCount +
+                ", totalLength=" + totalLength +
+                ", data=" + (data == null ? null : Arrays.toString(Arrays.copyOf(data, Math.min(data.length, 8)))) +
+                '}';
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.messaging.payload;
+
+import de.unipassau.isl.evs.ssh.core.messaging.payload.LightPayload;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.MessagePayload;
+
+import java.util.List;
+
+/**
+ * Several Lights connected to the same Slave that are switched at once, sent instead of one
+ * {@link LightPayload} per Light. The Slave replies with a LightScenePayload containing the new state of each
+ * Light it switched, Lights that couldn't be switched are missing from the reply.
+ *
+ * @author Team
+ */
+public class LightScenePayload implements MessagePayload {
+    private final String sceneName;
+    private final List<LightPayload> lights;
+
+    /**
+     * @param sceneName the name of the scene, only used for logging
+     * @param lights    the Lights and the state each one should be switched to
+     */
+    public LightScenePayload(String sceneName, List<LightPayload> lights) {
+        this.sceneName = sceneName;
+        this.lights = lights;
+    }
+
+    public String getSceneName() {
+        return sceneName;
+    }
+
+    public List<LightPayload> getLights() {
+        return lights;
+    }
+
+    @Override
+    public String toString() {
+        return "LightScenePayload{" +
+                "sceneName='" + sceneName + '\'' +
+                ", lights=" + lights +
+                '}';
+    }
+}
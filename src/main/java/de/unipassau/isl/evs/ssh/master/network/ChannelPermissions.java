@@ -0,0 +1,204 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.network;
+
+import de.ncoder.typedmap.Key;
+import de.unipassau.isl.evs.ssh.core.container.AbstractComponent;
+import de.unipassau.isl.evs.ssh.core.container.Container;
+import de.unipassau.isl.evs.ssh.core.database.dto.PermissionDTO;
+import de.unipassau.isl.evs.ssh.core.naming.DeviceID;
+import de.unipassau.isl.evs.ssh.core.schedule.ExecutionServiceComponent;
+import de.unipassau.isl.evs.ssh.master.database.DatabaseChangeListener;
+import de.unipassau.isl.evs.ssh.master.database.DatabaseConnector;
+import de.unipassau.isl.evs.ssh.master.database.PermissionController;
+import de.unipassau.isl.evs.ssh.master.database.PermissionSnapshot;
+import io.netty.channel.Channel;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static de.unipassau.isl.evs.ssh.master.database.generated.tables.Electronicmodule.ELECTRONICMODULE;
+import static de.unipassau.isl.evs.ssh.master.database.generated.tables.HasPermission.HAS_PERMISSION;
+import static de.unipassau.isl.evs.ssh.master.database.generated.tables.Permission.PERMISSION;
+import static de.unipassau.isl.evs.ssh.master.database.generated.tables.Userdevice.USERDEVICE;
+
+/**
+ * Keeps a {@link PermissionSnapshot} of the connected UserDevice as attribute of each authenticated Channel,
+ * so that checking a Permission of a Device is a field read instead of a database query.
+ * <p>
+ * The snapshot is attached by the {@link ServerHandshakeHandler} once the handshake is complete.
+ * Every commit changing the permission tables increments the permission version, which immediately invalidates all
+ * attached snapshots, as snapshots of an older version are never used. The new snapshots are then read with a single
+ * query and pushed to the Channels of all online Devices. Until that happened, {@link #getSnapshot(DeviceID)}
+ * returns {@code null} and the caller has to query the {@link PermissionController}.
+ *
+ * @author Team
+ */
+public class ChannelPermissions extends AbstractComponent {
+    public static final Key<ChannelPermissions> KEY = new Key<>(ChannelPermissions.class);
+    private static final AttributeKey<PermissionSnapshot> ATTR_PERMISSIONS =
+            AttributeKey.valueOf(ChannelPermissions.class.getSimpleName() + ".PERMISSIONS");
+    private static final String[] PERMISSION_TABLES = {
+            "\"" + HAS_PERMISSION.getName() + "\"",
+            "\"" + PERMISSION.getName() + "\"",
+            "\"" + USERDEVICE.getName() + "\"",
+            "\"" + ELECTRONICMODULE.getName() + "\""
+    };
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final AtomicLong permissionVersion = new AtomicLong();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    private final DatabaseChangeListener changeListener = new DatabaseChangeListener() {
+        @Override
+        public void onStatementsCommitted(List<String> statements) {
+            for (String statement : statements) {
+                if (affectsPermissions(statement)) {
+                    permissionVersion.incrementAndGet();
+                    scheduleRefresh();
+                    return;
+                }
+            }
+        }
+    };
+    private final Runnable refresh = new Runnable() {
+        @Override
+        public void run() {
+            // clear the flag first, so that commits during the refresh schedule another one
+            refreshScheduled.set(false);
+            refreshAll();
+        }
+    };
+
+    @Override
+    public void init(Container container) {
+        super.init(container);
+        requireComponent(DatabaseConnector.KEY).addChangeListener(changeListener);
+    }
+
+    @Override
+    public void destroy() {
+        final DatabaseConnector databaseConnector = getComponent(DatabaseConnector.KEY);
+        if (databaseConnector != null) {
+            databaseConnector.removeChangeListener(changeListener);
+        }
+        super.destroy();
+    }
+
+    private static boolean affectsPermissions(String statement) {
+        for (String table : PERMISSION_TABLES) {
+            if (statement.contains(table)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the current permission version, incremented whenever the Permissions stored in the database change
+     */
+    public long getPermissionVersion() {
+        return permissionVersion.get();
+    }
+
+    /**
+     * Read the current Permissions of the Device and attach them to its Channel.
+     * Called by the {@link ServerHandshakeHandler} before the Channel is registered as authenticated.
+     */
+    void attach(Channel channel, DeviceID deviceID) {
+        final long version = permissionVersion.get();
+        setSnapshot(channel, requireComponent(PermissionController.KEY).getPermissionSnapshot(deviceID, version));
+    }
+
+    /**
+     * @return the snapshot of the Permissions of the connected Device if it is up to date, or {@code null} if the
+     * Device isn't connected or its Permissions changed since the snapshot was taken.
+     */
+    @Nullable
+    public PermissionSnapshot getSnapshot(DeviceID deviceID) {
+        final Server server = getComponent(Server.KEY);
+        final Channel channel = server != null ? server.findChannel(deviceID) : null;
+        if (channel == null) {
+            return null;
+        }
+        final PermissionSnapshot snapshot = channel.attr(ATTR_PERMISSIONS).get();
+        if (snapshot == null || snapshot.getVersion() != permissionVersion.get()) {
+            return null;
+        }
+        return snapshot;
+    }
+
+    private void scheduleRefresh() {
+        if (refreshScheduled.compareAndSet(false, true)) {
+            requireComponent(ExecutionServiceComponent.KEY).execute(refresh);
+        }
+    }
+
+    private void refreshAll() {
+        final Server server = getComponent(Server.KEY);
+        final PresenceIndex presenceIndex = getComponent(PresenceIndex.KEY);
+        if (server == null || presenceIndex == null) {
+            return;
+        }
+        final long version = permissionVersion.get();
+        final Map<DeviceID, PermissionSnapshot> snapshots =
+                requireComponent(PermissionController.KEY).getPermissionSnapshots(version);
+        final PermissionSnapshot empty = PermissionSnapshot.of(version, Collections.<PermissionDTO>emptyList());
+        int pushed = 0;
+        for (DeviceID deviceID : presenceIndex.getOnlineDevices()) {
+            final Channel channel = server.findChannel(deviceID);
+            if (channel == null) {
+                continue;
+            }
+            final PermissionSnapshot snapshot = snapshots.get(deviceID);
+            setSnapshot(channel, snapshot != null ? snapshot : empty);
+            pushed++;
+        }
+        logger.debug("Pushed permission version " + version + " to " + pushed + " Channels");
+    }
+
+    /**
+     * Set the snapshot of the Channel, unless a concurrent update already set a snapshot of a newer version.
+     */
+    private static void setSnapshot(Channel channel, PermissionSnapshot snapshot) {
+        final Attribute<PermissionSnapshot> attr = channel.attr(ATTR_PERMISSIONS);
+        PermissionSnapshot current;
+        do {
+            current = attr.get();
+            if (current != null && current.getVersion() > snapshot.getVersion()) {
+                return;
+            }
+        } while (!attr.compareAndSet(current, snapshot));
+    }
+}
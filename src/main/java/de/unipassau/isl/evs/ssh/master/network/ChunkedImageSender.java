@@ -0,0 +1,176 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.network;
+
+import de.ncoder.typedmap.Key;
+import de.unipassau.isl.evs.ssh.core.container.AbstractComponent;
+import de.unipassau.isl.evs.ssh.core.messaging.Message;
+import de.unipassau.isl.evs.ssh.core.naming.DeviceID;
+import de.unipassau.isl.evs.ssh.master.MasterConfiguration;
+import de.unipassau.isl.evs.ssh.master.messaging.payload.CameraChunkPayload;
+import io.netty.channel.Channel;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GenericFutureListener;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.util.Arrays;
+
+import static de.unipassau.isl.evs.ssh.master.messaging.MasterRoutingKeys.APP_CAMERA_CHUNK;
+
+/**
+ * Sends pictures to devices in several {@link CameraChunkPayload}s of bounded size instead of one big message.
+ * The next chunk is only sent once the previous one was written to the connection, so that at most one chunk per
+ * transfer is held by the Master at any time and other messages can be sent in between the chunks.
+ * If a chunk can't be sent, the transfer is aborted instead of leaving a hole in the picture.
+ *
+ * @author Team
+ */
+public class ChunkedImageSender extends AbstractComponent {
+    public static final Key<ChunkedImageSender> KEY = new Key<>(ChunkedImageSender.class);
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    /**
+     * Notified about the outcome of a transfer.
+     */
+    public interface TransferCallback {
+        /**
+         * Called after the last chunk was written to the connection.
+         */
+        void onComplete();
+
+        /**
+         * Called if the transfer was aborted because a chunk couldn't be sent.
+         *
+         * @param cause the reason the chunk couldn't be sent
+         */
+        void onFailure(Throwable cause);
+    }
+
+    /**
+     * @return {@code true}, if the given picture should be sent using
+     * {@link #send(DeviceID, int, String, byte[], TransferCallback)} instead of a single message
+     */
+    public boolean isChunkingEnabled(@Nullable byte[] picture) {
+        final int chunkSize = getChunkSize();
+        return chunkSize > 0 && picture != null && picture.length > chunkSize;
+    }
+
+    /**
+     * Send the picture in chunks to the given device. The chunks are sent from the event loop of the channel to
+     * the device, this method returns immediately.
+     *
+     * @param recipient  the device to send the picture to
+     * @param transferID the ID identifying this picture, see {@link CameraChunkPayload#getTransferID()}
+     * @param moduleName the name of the camera that took the picture
+     * @param picture    the picture
+     * @param callback   notified once the transfer is complete or aborted, may be {@code null}
+     */
+    public void send(DeviceID recipient, int transferID, String moduleName, byte[] picture,
+                     @Nullable TransferCallback callback) {
+        final Channel channel = requireComponent(Server.KEY).findChannel(recipient);
+        if (channel == null) {
+            logger.info("Not sending picture to " + recipient + " as it is not connected");
+            if (callback != null) {
+                callback.onFailure(new IOException("Client " + recipient + " is not connected"));
+            }
+            return;
+        }
+        channel.eventLoop().execute(new Transfer(channel, recipient, transferID, moduleName, picture, getChunkSize(), callback));
+    }
+
+    private int getChunkSize() {
+        return requireComponent(MasterConfiguration.KEY).getCameraChunkSize();
+    }
+
+    private class Transfer implements Runnable, GenericFutureListener<Future<Void>> {
+        private final Channel channel;
+        private final DeviceID recipient;
+        private final int transferID;
+        private final String moduleName;
+        private final byte[] picture;
+        private final int chunkSize;
+        private final int chunkCount;
+        private final TransferCallback callback;
+        private int nextChunk = 0;
+
+        private Transfer(Channel channel, DeviceID recipient, int transferID, String moduleName, byte[] picture,
+                         int chunkSize, TransferCallback callback) {
+            this.channel = channel;
+            this.recipient = recipient;
+            this.transferID = transferID;
+            this.moduleName = moduleName;
+            this.picture = picture;
+            this.chunkSize = chunkSize;
+            this.chunkCount = (picture.length + chunkSize - 1) / chunkSize;
+            this.callback = callback;
+        }
+
+        /**
+         * Send the next chunk, the following one is sent once this one was written, see {@link #operationComplete(Future)}.
+         */
+        @Override
+        public void run() {
+            if (!channel.isActive() || getContainer() == null) {
+                abort(new ClosedChannelException());
+                return;
+            }
+            final int from = nextChunk * chunkSize;
+            final byte[] data = Arrays.copyOfRange(picture, from, Math.min(from + chunkSize, picture.length));
+            final CameraChunkPayload payload = new CameraChunkPayload(
+                    transferID, moduleName, nextChunk, chunkCount, picture.length, data);
+            nextChunk++;
+            requireComponent(ServerOutgoingRouter.KEY)
+                    .sendMessageAndGetFuture(recipient, APP_CAMERA_CHUNK, new Message(payload))
+                    .addListener(this);
+        }
+
+        @Override
+        public void operationComplete(Future<Void> future) {
+            if (!future.isSuccess()) {
+                abort(future.cause());
+            } else if (nextChunk < chunkCount) {
+                // the future of a failed send may complete on another thread
+                channel.eventLoop().execute(this);
+            } else if (callback != null) {
+                callback.onComplete();
+            }
+        }
+
+        private void abort(Throwable cause) {
+            logger.info("Aborting picture transfer " + transferID + " to " + recipient + " after "
+                    + nextChunk + "/" + chunkCount + " chunks", cause);
+            if (callback != null) {
+                callback.onFailure(cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.network;
+
+import de.unipassau.isl.evs.ssh.core.naming.DeviceID;
+import io.netty.channel.Channel;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Notifies listeners about connections of the {@link Server} being opened, authenticated and closed and about Devices
+ * switching between the local network and the internet.
+ * Events are published from the I/O threads, but every listener is called on the Executor it was subscribed with,
+ * so slow listeners can't stall the connections. Use a single-threaded Executor if the order of events matters.
+ * Subscribing and unsubscribing is thread-safe and doesn't block publishing.
+ *
+ * @author Team
+ */
+public class ConnectionEventBus {
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    /**
+     * Whether the last authenticated connection of each Device was local, used for detecting locality changes.
+     */
+    private final ConcurrentMap<DeviceID, Boolean> lastLocality = new ConcurrentHashMap<>();
+
+    /**
+     * Subscribe a listener to the given types of events, or to all events if no types are given.
+     *
+     * @param executor the Executor the listener will be called on
+     */
+    public void subscribe(ConnectionEventListener listener, Executor executor, EventType... types) {
+        final Set<EventType> typeSet = types.length == 0 ? EnumSet.allOf(EventType.class) : EnumSet.copyOf(Arrays.asList(types));
+        subscriptions.add(new Subscription(listener, executor, typeSet));
+    }
+
+    /**
+     * @return {@code true} if the listener was subscribed
+     */
+    public boolean unsubscribe(ConnectionEventListener listener) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.listener == listener) {
+                return subscriptions.remove(subscription);
+            }
+        }
+        return false;
+    }
+
+    void publishConnected(Channel channel, boolean isLocal) {
+        publish(new ConnectionEvent(EventType.CONNECTED, channel, null, isLocal, false));
+    }
+
+    void publishHandshakeComplete(Channel channel, DeviceID deviceID, boolean isLocal) {
+        publish(new ConnectionEvent(EventType.HANDSHAKE_COMPLETE, channel, deviceID, isLocal, true));
+        final Boolean wasLocal = lastLocality.put(deviceID, isLocal);
+        if (wasLocal != null && wasLocal != isLocal) {
+            publish(new ConnectionEvent(EventType.LOCALITY_CHANGED, channel, deviceID, isLocal, true));
+        }
+    }
+
+    void publishDisconnected(Channel channel, @Nullable DeviceID deviceID, boolean isLocal, boolean wasAuthenticated) {
+        publish(new ConnectionEvent(EventType.DISCONNECTED, channel, deviceID, isLocal, wasAuthenticated));
+    }
+
+    private void publish(final ConnectionEvent event) {
+        for (final Subscription subscription : subscriptions) {
+            if (!subscription.types.contains(event.getType())) {
+                continue;
+            }
+            try {
+                subscription.executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            subscription.listener.onConnectionEvent(event);
+                        } catch (RuntimeException e) {
+                            logger.warn("Listener " + subscription.listener + " failed to handle " + event, e);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                logger.warn("Could not deliver " + event + " to " + subscription.listener, e);
+            }
+        }
+    }
+
+    public enum EventType {
+        /**
+         * A new connection was accepted, the handshake has not started yet
+         */
+        CONNECTED,
+        /**
+         * A Device successfully authenticated itself
+         */
+        HANDSHAKE_COMPLETE,
+        /**
+         * A connection was closed, no matter whether its handshake was completed
+         */
+        DISCONNECTED,
+        /**
+         * A Device authenticated from the local network after its previous connection came from the internet
+         * or vice versa
+         */
+        LOCALITY_CHANGED
+    }
+
+    public interface ConnectionEventListener {
+        void onConnectionEvent(ConnectionEvent event);
+    }
+
+    public static class ConnectionEvent {
+        private final EventType type;
+        private final Channel channel;
+        @Nullable
+        private final DeviceID deviceID;
+        private final boolean isLocal;
+        private final boolean isAuthenticated;
+        private final long timestamp = System.currentTimeMillis();
+
+        private ConnectionEvent(EventType type, Channel channel, @Nullable DeviceID deviceID, boolean isLocal, boolean isAuthenticated) {
+            this.type = type;
+            this.channel = channel;
+            this.deviceID = deviceID;
+            this.isLocal = isLocal;
+            this.isAuthenticated = isAuthenticated;
+        }
+
+        public EventType getType() {
+            return type;
+        }
+
+        public Channel getChannel() {
+            return channel;
+        }
+
+        /**
+         * @return the ID of the connected Device, or {@code null} if it didn't identify itself yet
+         */
+        @Nullable
+        public DeviceID getDeviceID() {
+            return deviceID;
+        }
+
+        public boolean isLocal() {
+            return isLocal;
+        }
+
+        /**
+         * @return {@code true} if the handshake of the connection was completed successfully
+         */
+        public boolean isAuthenticated() {
+            return isAuthenticated;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public String toString() {
+            return "ConnectionEvent{" +
+                    "type=" + type +
+                    ", deviceID=" + deviceID +
+                    ", isLocal=" + isLocal +
+                    ", channel=" + channel +
+                    '}';
+        }
+    }
+
+    private static class Subscription {
+        private final ConnectionEventListener listener;
+        private final Executor executor;
+        private final Set<EventType> types;
+
+        private Subscription(ConnectionEventListener listener, Executor executor, Set<EventType> types) {
+            this.listener = listener;
+            this.executor = executor;
+            this.types = types;
+        }
+    }
+}
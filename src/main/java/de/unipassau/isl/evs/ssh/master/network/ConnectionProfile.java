@@ -0,0 +1,120 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.network;
+
+import de.unipassau.isl.evs.ssh.core.network.handler.PipelinePlug;
+import de.unipassau.isl.evs.ssh.master.MasterConfiguration;
+import de.unipassau.isl.evs.ssh.master.network.compression.CompressionAlgorithm;
+import de.unipassau.isl.evs.ssh.master.network.compression.CompressionStatistics;
+import de.unipassau.isl.evs.ssh.master.network.compression.PayloadCompressor;
+import de.unipassau.isl.evs.ssh.master.network.compression.PayloadDecompressor;
+import io.netty.channel.ChannelHandler;
+import io.netty.handler.codec.serialization.ClassResolver;
+import io.netty.handler.codec.serialization.ClassResolvers;
+import io.netty.handler.codec.serialization.ObjectDecoder;
+import io.netty.handler.codec.serialization.ObjectEncoder;
+import io.netty.handler.logging.LogLevel;
+import io.netty.handler.logging.LoggingHandler;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Describes which Handlers are added to the pipeline of every incoming connection and holds the instances of
+ * stateless Handlers, so that they can be shared by all connections instead of being allocated for each one.
+ * Diagnostic Handlers are only created if they are enabled in the {@link MasterConfiguration}.
+ *
+ * @author Team
+ */
+public class ConnectionProfile {
+    private final boolean traceLogging;
+    private final int outboundQueueLimit;
+    private final int handshakeTimeout;
+    private final CompressionAlgorithm compressionAlgorithm;
+    private final CompressionStatistics compressionStatistics;
+
+    private final LoggingHandler loggingHandler;
+    private final PayloadCompressor compressor;
+    private final ObjectEncoder objectEncoder = new ObjectEncoder();
+    private final ClassResolver classResolver = ClassResolvers.weakCachingConcurrentResolver(getClass().getClassLoader());
+    private final PipelinePlug pipelinePlug = new PipelinePlug();
+
+    public ConnectionProfile(MasterConfiguration config, CompressionStatistics compressionStatistics) {
+        this.traceLogging = config.isTraceLoggingEnabled();
+        this.outboundQueueLimit = config.getOutboundQueueLimit();
+        this.handshakeTimeout = config.getHandshakeTimeout();
+        this.compressionAlgorithm = CompressionAlgorithm.fromName(config.getCompressionAlgorithm());
+        this.compressionStatistics = compressionStatistics;
+        this.loggingHandler = traceLogging ? new LoggingHandler(LogLevel.TRACE) : null;
+        this.compressor = new PayloadCompressor(compressionAlgorithm, config.getCompressionThreshold(),
+                config.getCompressionLevel(), compressionStatistics);
+    }
+
+    /**
+     * @return the Handler logging all traffic of a connection during the handshake, or {@code null} if disabled
+     */
+    @Nullable
+    public LoggingHandler getLoggingHandler() {
+        return loggingHandler;
+    }
+
+    public boolean isTraceLoggingEnabled() {
+        return traceLogging;
+    }
+
+    public int getOutboundQueueLimit() {
+        return outboundQueueLimit;
+    }
+
+    /**
+     * @return the time in seconds a client has to finish the handshake, 0 if there is no limit
+     */
+    public int getHandshakeTimeout() {
+        return handshakeTimeout;
+    }
+
+    public PayloadCompressor getCompressor() {
+        return compressor;
+    }
+
+    public PayloadDecompressor newDecompressor() {
+        return new PayloadDecompressor(compressionAlgorithm, compressionStatistics);
+    }
+
+    public ObjectEncoder getObjectEncoder() {
+        return objectEncoder;
+    }
+
+    public ObjectDecoder newObjectDecoder() {
+        return new ObjectDecoder(classResolver);
+    }
+
+    /**
+     * @return the shared PipelinePlug if it can be added to multiple pipelines, otherwise a new instance
+     */
+    public ChannelHandler getPipelinePlug() {
+        return pipelinePlug.isSharable() ? pipelinePlug : new PipelinePlug();
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.network;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.util.AttributeKey;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides whether a newly accepted connection may start a handshake, before any resources are allocated for it.
+ * The number of concurrent handshakes, the number of connections per remote address and the rate of new
+ * handshakes are limited. Rejected connections are counted per {@link Rejection} reason.
+ *
+ * @author Team
+ */
+public class HandshakeAdmissionControl {
+    private static final AttributeKey<Boolean> ATTR_HALF_OPEN = AttributeKey.valueOf(HandshakeAdmissionControl.class, "HALF_OPEN");
+
+    private final int maxHalfOpen;
+    private final int maxPerAddress;
+    private final TokenBucket handshakeRate;
+
+    private final AtomicInteger halfOpen = new AtomicInteger();
+    private final Map<InetAddress, Integer> connectionsPerAddress = new HashMap<>();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final Map<Rejection, AtomicLong> rejections = new HashMap<>();
+
+    /**
+     * @param maxHalfOpen       the maximum number of connections that may be in the handshake at the same time
+     * @param maxPerAddress     the maximum number of connections from a single remote address
+     * @param handshakesPerSecond the number of handshakes that may be started per second
+     */
+    public HandshakeAdmissionControl(int maxHalfOpen, int maxPerAddress, int handshakesPerSecond) {
+        this.maxHalfOpen = maxHalfOpen;
+        this.maxPerAddress = maxPerAddress;
+        this.handshakeRate = new TokenBucket(handshakesPerSecond, handshakesPerSecond, 1, TimeUnit.SECONDS);
+        for (Rejection rejection : Rejection.values()) {
+            rejections.put(rejection, new AtomicLong());
+        }
+    }
+
+    /**
+     * Check whether the given connection may start a handshake. If it is admitted, it will be counted until it is
+     * closed, otherwise the reason for the rejection is returned and the caller should close the connection.
+     *
+     * @return {@code null} if the connection was admitted, otherwise the reason why it was rejected
+     */
+    @Nullable
+    public Rejection admit(Channel channel) {
+        final InetAddress address = ((InetSocketAddress) channel.remoteAddress()).getAddress();
+        final Rejection rejection = tryAdmit(address);
+        if (rejection != null) {
+            rejections.get(rejection).incrementAndGet();
+            return rejection;
+        }
+
+        admitted.incrementAndGet();
+        channel.attr(ATTR_HALF_OPEN).set(Boolean.TRUE);
+        channel.closeFuture().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                handshakeFinished(future.channel());
+                release(address);
+            }
+        });
+        return null;
+    }
+
+    private synchronized Rejection tryAdmit(InetAddress address) {
+        final Integer connections = connectionsPerAddress.get(address);
+        if (connections != null && connections >= maxPerAddress) {
+            return Rejection.TOO_MANY_CONNECTIONS_FROM_ADDRESS;
+        }
+        if (halfOpen.get() >= maxHalfOpen) {
+            return Rejection.TOO_MANY_HANDSHAKES;
+        }
+        if (!handshakeRate.tryAcquire()) {
+            return Rejection.HANDSHAKE_RATE_EXCEEDED;
+        }
+        halfOpen.incrementAndGet();
+        connectionsPerAddress.put(address, connections == null ? 1 : connections + 1);
+        return null;
+    }
+
+    private synchronized void release(InetAddress address) {
+        final Integer connections = connectionsPerAddress.get(address);
+        if (connections == null || connections <= 1) {
+            connectionsPerAddress.remove(address);
+        } else {
+            connectionsPerAddress.put(address, connections - 1);
+        }
+    }
+
+    /**
+     * Stop counting the given connection as half-open, either because the handshake was successful or because
+     * the connection was closed.
+     */
+    public void handshakeFinished(Channel channel) {
+        final Boolean wasHalfOpen = channel.attr(ATTR_HALF_OPEN).getAndSet(Boolean.FALSE);
+        if (Boolean.TRUE.equals(wasHalfOpen)) {
+            halfOpen.decrementAndGet();
+        }
+    }
+
+    /**
+     * Count a connection that was closed because its handshake didn't finish in time.
+     */
+    public void recordTimeout() {
+        timeouts.incrementAndGet();
+    }
+
+    /**
+     * @return the number of connections that are currently in the handshake
+     */
+    public int getHalfOpenCount() {
+        return halfOpen.get();
+    }
+
+    /**
+     * @return the number of connections that were admitted since the start of the Server
+     */
+    public long getAdmittedCount() {
+        return admitted.get();
+    }
+
+    /**
+     * @return the number of connections that were closed because their handshake didn't finish in time
+     */
+    public long getTimeoutCount() {
+        return timeouts.get();
+    }
+
+    /**
+     * @return the number of connections that were rejected for the given reason
+     */
+    public long getRejectedCount(Rejection rejection) {
+        return rejections.get(rejection).get();
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("HandshakeAdmissionControl{")
+                .append("halfOpen=").append(getHalfOpenCount())
+                .append(", admitted=").append(getAdmittedCount())
+                .append(", timeouts=").append(getTimeoutCount());
+        for (Rejection rejection : Rejection.values()) {
+            sb.append(", ").append(rejection).append('=').append(getRejectedCount(rejection));
+        }
+        return sb.append('}').toString();
+    }
+
+    public enum Rejection {
+        TOO_MANY_HANDSHAKES, TOO_MANY_CONNECTIONS_FROM_ADDRESS, HANDSHAKE_RATE_EXCEEDED
+    }
+}
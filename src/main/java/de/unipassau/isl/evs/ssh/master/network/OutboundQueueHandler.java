@@ -0,0 +1,305 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.network;
+
+import de.unipassau.isl.evs.ssh.core.messaging.Message;
+import de.unipassau.isl.evs.ssh.core.messaging.RoutingKey;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerAdapter;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.APP_DOOR_STATUS_UPDATE;
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.APP_LIGHT_UPDATE;
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.APP_USERINFO_UPDATE;
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.GLOBAL_MODULES_UPDATE;
+
+/**
+ * Schedules the outgoing messages of a channel by their {@link MessagePriority}, so that a slow client can't make the
+ * Master buffer an unbounded amount of data and small urgent messages don't wait behind large transfers.
+ * <ul>
+ * <li>{@link MessagePriority#URGENT} messages are written immediately, even if the write buffer is above its high
+ * water mark, as long as less than {@code queueLimit} of them are not yet passed to the socket.</li>
+ * <li>{@link MessagePriority#NORMAL} messages are written while the channel is writable.</li>
+ * <li>Only one {@link MessagePriority#BULK} message is written at a time, and only if the channel is writable,
+ * so that the write buffer never holds more than one large transfer that other messages would have to wait for.</li>
+ * </ul>
+ * All other messages are queued in the lane of their priority and written once nothing of a higher priority
+ * is waiting. Messages may thus overtake messages of a lower priority, but are kept in order within their lane.
+ * Messages with a routing key that only transports the latest state
+ * (e.g. {@link de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys#APP_LIGHT_UPDATE})
+ * replace older queued messages for the same state instead of being appended to the queue.
+ *
+ * @author Team
+ */
+public class OutboundQueueHandler extends ChannelHandlerAdapter {
+    /**
+     * Routing keys whose messages only contain the latest state of something and make older messages obsolete.
+     */
+    private static final RoutingKey[] LATEST_STATE_KEYS = {
+            APP_LIGHT_UPDATE, APP_DOOR_STATUS_UPDATE, GLOBAL_MODULES_UPDATE, APP_USERINFO_UPDATE
+    };
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final int queueLimit;
+    private final Map<MessagePriority, Deque<PendingWrite>> lanes = new EnumMap<>(MessagePriority.class);
+    /**
+     * The number of queued messages per lane, indexed by {@link MessagePriority#ordinal()} and readable from any thread.
+     */
+    private final AtomicIntegerArray depths = new AtomicIntegerArray(MessagePriority.values().length);
+    private final Map<Object, PendingWrite> latestState = new HashMap<>();
+    private int urgentInFlight = 0;
+    private boolean bulkInFlight = false;
+
+    /**
+     * @param queueLimit the maximum number of messages that will be queued while the channel is not writable
+     */
+    public OutboundQueueHandler(int queueLimit) {
+        this.queueLimit = queueLimit;
+        for (MessagePriority priority : MessagePriority.values()) {
+            lanes.put(priority, new ArrayDeque<PendingWrite>());
+        }
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (!(msg instanceof Message.AddressedMessage)) {
+            ctx.write(msg, promise);
+            return;
+        }
+
+        final Message.AddressedMessage amsg = (Message.AddressedMessage) msg;
+        final MessagePriority priority = ServerOutgoingRouter.getPriority(amsg);
+        if (lanes.get(priority).isEmpty() && canWrite(ctx, priority)) {
+            doWrite(ctx, priority, amsg, promise);
+            return;
+        }
+
+        final Object stateKey = getLatestStateKey(amsg);
+        if (stateKey != null) {
+            final PendingWrite older = latestState.get(stateKey);
+            if (older != null) {
+                // the older message is obsolete, so consider it delivered and send the new one in its place
+                older.promise.trySuccess();
+                older.message = amsg;
+                older.promise = promise;
+                return;
+            }
+        }
+
+        if (getQueueDepth() >= queueLimit) {
+            logger.warn("Outbound queue for " + ctx.channel() + " is full, dropping " + amsg);
+            promise.tryFailure(new IOException("Outbound queue limit of " + queueLimit + " messages exceeded"));
+            return;
+        }
+        final PendingWrite pending = new PendingWrite(priority, stateKey, amsg, promise);
+        lanes.get(priority).add(pending);
+        depths.incrementAndGet(priority.ordinal());
+        if (stateKey != null) {
+            latestState.put(stateKey, pending);
+        }
+    }
+
+    /**
+     * @return whether a message of the given priority may be written now, assuming no message of the same priority
+     * is waiting
+     */
+    private boolean canWrite(ChannelHandlerContext ctx, MessagePriority priority) {
+        switch (priority) {
+            case URGENT:
+                return urgentInFlight < queueLimit;
+            case NORMAL:
+                return lanes.get(MessagePriority.URGENT).isEmpty() && ctx.channel().isWritable();
+            default:
+                return lanes.get(MessagePriority.URGENT).isEmpty() && lanes.get(MessagePriority.NORMAL).isEmpty()
+                        && !bulkInFlight && ctx.channel().isWritable();
+        }
+    }
+
+    private void doWrite(final ChannelHandlerContext ctx, final MessagePriority priority,
+                         Message.AddressedMessage amsg, final ChannelPromise promise) {
+        if (priority == MessagePriority.NORMAL) {
+            ctx.write(amsg, promise);
+            return;
+        }
+        // track when urgent and bulk messages have been passed to the socket to schedule the next ones
+        if (priority == MessagePriority.URGENT) {
+            urgentInFlight++;
+        } else {
+            bulkInFlight = true;
+        }
+        final ChannelPromise tracked = ctx.newPromise();
+        tracked.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                if (priority == MessagePriority.URGENT) {
+                    urgentInFlight--;
+                } else {
+                    bulkInFlight = false;
+                }
+                if (future.isSuccess()) {
+                    promise.trySuccess();
+                } else {
+                    promise.tryFailure(future.cause());
+                }
+                if (ctx.channel().isActive()) {
+                    drain(ctx);
+                }
+            }
+        });
+        ctx.write(amsg, tracked);
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            drain(ctx);
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        failPending();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        failPending();
+        super.handlerRemoved(ctx);
+    }
+
+    /**
+     * Write queued messages, highest priority first, until no further message may be written.
+     */
+    private void drain(ChannelHandlerContext ctx) {
+        boolean written = false;
+        PendingWrite pending;
+        while ((pending = pollWritable(ctx)) != null) {
+            depths.decrementAndGet(pending.priority.ordinal());
+            if (pending.stateKey != null) {
+                latestState.remove(pending.stateKey);
+            }
+            doWrite(ctx, pending.priority, pending.message, pending.promise);
+            written = true;
+        }
+        if (written) {
+            ctx.flush();
+        }
+    }
+
+    @Nullable
+    private PendingWrite pollWritable(ChannelHandlerContext ctx) {
+        for (MessagePriority priority : MessagePriority.values()) {
+            final Deque<PendingWrite> lane = lanes.get(priority);
+            if (!lane.isEmpty()) {
+                // lower lanes must wait while a higher lane is blocked
+                return canWrite(ctx, priority) ? lane.poll() : null;
+            }
+        }
+        return null;
+    }
+
+    private void failPending() {
+        for (Deque<PendingWrite> lane : lanes.values()) {
+            PendingWrite pending;
+            while ((pending = lane.poll()) != null) {
+                depths.decrementAndGet(pending.priority.ordinal());
+                pending.promise.tryFailure(new ClosedChannelException());
+            }
+        }
+        latestState.clear();
+    }
+
+    /**
+     * @return the number of messages that are currently held back
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (int i = 0; i < depths.length(); i++) {
+            depth += depths.get(i);
+        }
+        return depth;
+    }
+
+    /**
+     * @return the number of messages of the given priority that are currently held back
+     */
+    public int getQueueDepth(MessagePriority priority) {
+        return depths.get(priority.ordinal());
+    }
+
+    /**
+     * @return a key identifying the state transported by the given message, or {@code null} if the message
+     * doesn't contain a state that can be replaced by newer messages
+     */
+    @Nullable
+    private static Object getLatestStateKey(Message.AddressedMessage amsg) {
+        for (RoutingKey routingKey : LATEST_STATE_KEYS) {
+            if (routingKey.matches(amsg)) {
+                if (APP_LIGHT_UPDATE.matches(amsg)) {
+                    return Arrays.asList(routingKey, APP_LIGHT_UPDATE.getPayload(amsg).getModule().getName());
+                } else if (APP_DOOR_STATUS_UPDATE.matches(amsg)) {
+                    return Arrays.asList(routingKey, APP_DOOR_STATUS_UPDATE.getPayload(amsg).getModuleName());
+                } else {
+                    return routingKey;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static class PendingWrite {
+        private final MessagePriority priority;
+        private final Object stateKey;
+        private Message.AddressedMessage message;
+        private ChannelPromise promise;
+
+        private PendingWrite(MessagePriority priority, Object stateKey, Message.AddressedMessage message,
+                             ChannelPromise promise) {
+            this.priority = priority;
+            this.stateKey = stateKey;
+            this.message = message;
+            this.promise = promise;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.network;
+
+import de.unipassau.isl.evs.ssh.core.messaging.IncomingDispatcher;
+import de.unipassau.isl.evs.ssh.core.messaging.Message;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.CameraPayload;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.ClimatePayload;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.DoorBlockPayload;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.DoorPayload;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.DoorStatusPayload;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.LightPayload;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.MessagePayload;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.SystemHealthPayload;
+import de.unipassau.isl.evs.ssh.core.naming.DeviceID;
+import io.netty.channel.ChannelHandlerAdapter;
+import io.netty.channel.ChannelHandlerContext;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.concurrent.RejectedExecutionException;
+
+import static de.unipassau.isl.evs.ssh.core.CoreConstants.NettyConstants.ATTR_PEER_ID;
+
+/**
+ * Replaces the {@link IncomingDispatcher} in the pipeline of a connection if partitioned dispatch is enabled.
+ * Messages concerning a Module are dispatched on the partition of that Module and all other messages on the partition
+ * of the sending Device, so messages for the same Module or from the same Device are handled in order, while
+ * unrelated Modules and Devices are handled in parallel.
+ * Messages claiming to come from another Device than the one authenticated for the connection are dropped.
+ *
+ * @author Team
+ * @see ServerExecutorGroups#getPartition(Object)
+ */
+class PartitionedDispatcher extends ChannelHandlerAdapter {
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final IncomingDispatcher dispatcher;
+    private final ServerExecutorGroups executorGroups;
+
+    PartitionedDispatcher(IncomingDispatcher dispatcher, ServerExecutorGroups executorGroups) {
+        this.dispatcher = dispatcher;
+        this.executorGroups = executorGroups;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof Message.AddressedMessage)) {
+            super.channelRead(ctx, msg);
+            return;
+        }
+        final Message.AddressedMessage amsg = (Message.AddressedMessage) msg;
+        final DeviceID peerID = ctx.channel().attr(ATTR_PEER_ID).get();
+        if (!Objects.equals(amsg.getFromID(), peerID)) {
+            logger.warn("Dropping message from " + peerID + " claiming to be sent by " + amsg.getFromID() + ": " + amsg);
+            return;
+        }
+
+        final String moduleName = getModuleName(amsg.getPayload());
+        try {
+            executorGroups.getPartition(moduleName != null ? moduleName : peerID).execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        dispatcher.dispatch(amsg);
+                    } catch (RuntimeException e) {
+                        logger.error("Could not dispatch " + amsg, e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("Could not dispatch " + amsg + ", the Master is shutting down", e);
+        }
+    }
+
+    /**
+     * @return the name of the Module the payload concerns, or {@code null} if it doesn't concern a single Module
+     */
+    @Nullable
+    private static String getModuleName(MessagePayload payload) {
+        if (payload instanceof LightPayload) {
+            return ((LightPayload) payload).getModule().getName();
+        } else if (payload instanceof ClimatePayload) {
+            return ((ClimatePayload) payload).getModule().getName();
+        } else if (payload instanceof SystemHealthPayload) {
+            return ((SystemHealthPayload) payload).getModule().getName();
+        } else if (payload instanceof DoorPayload) {
+            return ((DoorPayload) payload).getModuleName();
+        } else if (payload instanceof DoorStatusPayload) {
+            return ((DoorStatusPayload) payload).getModuleName();
+        } else if (payload instanceof DoorBlockPayload) {
+            return ((DoorBlockPayload) payload).getModuleName();
+        } else if (payload instanceof CameraPayload) {
+            return ((CameraPayload) payload).getModuleName();
+        } else {
+            return null;
+        }
+    }
+}
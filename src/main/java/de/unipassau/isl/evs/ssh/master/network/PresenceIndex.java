@@ -0,0 +1,130 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.network;
+
+import de.ncoder.typedmap.Key;
+import de.unipassau.isl.evs.ssh.core.container.AbstractComponent;
+import de.unipassau.isl.evs.ssh.core.container.Container;
+import de.unipassau.isl.evs.ssh.core.naming.DeviceID;
+import io.netty.channel.Channel;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Knows for every Device whether it is currently connected to the {@link Server} and whether that connection
+ * comes from the local network, so that location-aware components don't have to look up and inspect the Channel
+ * of each Device.
+ * The index is maintained from the {@link ConnectionEventBus}. The events are handled directly on the I/O thread
+ * publishing them, so the index is up to date before the first message of a new connection is handled and
+ * the location of a Device never lags behind a reconnect.
+ *
+ * @author Team
+ */
+public class PresenceIndex extends AbstractComponent implements ConnectionEventBus.ConnectionEventListener {
+    public static final Key<PresenceIndex> KEY = new Key<>(PresenceIndex.class);
+
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final ConcurrentMap<DeviceID, Channel> onlineDevices = new ConcurrentHashMap<>();
+    private final ConcurrentMap<DeviceID, Channel> localDevices = new ConcurrentHashMap<>();
+
+    @Override
+    public void init(Container container) {
+        super.init(container);
+        requireComponent(Server.KEY).getEventBus().subscribe(this, DIRECT_EXECUTOR,
+                ConnectionEventBus.EventType.HANDSHAKE_COMPLETE, ConnectionEventBus.EventType.DISCONNECTED);
+    }
+
+    @Override
+    public void destroy() {
+        final Server server = getComponent(Server.KEY);
+        if (server != null) {
+            server.getEventBus().unsubscribe(this);
+        }
+        onlineDevices.clear();
+        localDevices.clear();
+        super.destroy();
+    }
+
+    @Override
+    public void onConnectionEvent(ConnectionEventBus.ConnectionEvent event) {
+        final DeviceID deviceID = event.getDeviceID();
+        if (deviceID == null || !event.isAuthenticated()) {
+            return;
+        }
+        final Channel channel = event.getChannel();
+        if (event.getType() == ConnectionEventBus.EventType.HANDSHAKE_COMPLETE) {
+            onlineDevices.put(deviceID, channel);
+            if (event.isLocal()) {
+                localDevices.put(deviceID, channel);
+            } else {
+                localDevices.remove(deviceID);
+            }
+        } else if (event.getType() == ConnectionEventBus.EventType.DISCONNECTED) {
+            // only remove the entry if the Device didn't reconnect in the meantime
+            onlineDevices.remove(deviceID, channel);
+            localDevices.remove(deviceID, channel);
+        }
+    }
+
+    /**
+     * @return {@code true} if the Device has an authenticated connection to the Server
+     */
+    public boolean isOnline(DeviceID deviceID) {
+        return onlineDevices.containsKey(deviceID);
+    }
+
+    /**
+     * @return {@code true} if the Device has an authenticated connection to the Server from the local network
+     */
+    public boolean isLocal(DeviceID deviceID) {
+        return localDevices.containsKey(deviceID);
+    }
+
+    /**
+     * @return an unmodifiable live view of all Devices that have an authenticated connection
+     */
+    public Set<DeviceID> getOnlineDevices() {
+        return Collections.unmodifiableSet(onlineDevices.keySet());
+    }
+
+    /**
+     * @return an unmodifiable live view of all Devices that have an authenticated connection from the local network
+     */
+    public Set<DeviceID> getLocalDevices() {
+        return Collections.unmodifiableSet(localDevices.keySet());
+    }
+}
@@ -27,9 +27,6 @@
 package de.unipassau.isl.evs.ssh.master.network;
 
 
-import com.google.common.base.Function;
-import com.google.common.base.Predicate;
-import com.google.common.collect.Iterables;
 import de.ncoder.typedmap.Key;
 import de.unipassau.isl.evs.ssh.core.CoreConstants;
 import de.unipassau.isl.evs.ssh.core.container.AbstractComponent;
@@ -39,14 +36,18 @@ import de.unipassau.isl.evs.ssh.core.naming.DeviceID;
 import de.unipassau.isl.evs.ssh.core.network.NettyInternalLogger;
 import de.unipassau.isl.evs.ssh.core.schedule.ExecutionServiceComponent;
 import de.unipassau.isl.evs.ssh.master.MasterConfiguration;
+import de.unipassau.isl.evs.ssh.master.network.compression.CompressionStatistics;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.DefaultChannelGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.HashedWheelTimer;
 import io.netty.util.ResourceLeakDetector;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 import io.netty.util.internal.logging.Slf4JLoggerFactory;
@@ -56,11 +57,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Objects;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
-import static de.unipassau.isl.evs.ssh.core.CoreConstants.NettyConstants.ATTR_PEER_ID;
+import static de.unipassau.isl.evs.ssh.core.CoreConstants.NettyConstants.ALL_IDLE_TIME;
+import static de.unipassau.isl.evs.ssh.core.CoreConstants.NettyConstants.READER_IDLE_TIME;
+import static de.unipassau.isl.evs.ssh.core.CoreConstants.NettyConstants.WRITER_IDLE_TIME;
 
 /**
  * The heart of the master server: a netty stack accepting connections from devices and handling communication with them using a netty pipeline.
@@ -93,6 +97,27 @@ public class Server extends AbstractComponent {
      * If it isn't contained here, it is not connected to the Server.
      */
     private ChannelGroup connections;
+    /**
+     * The authenticated connections by the ID of the connected Device, so that the connection to a Device can be found
+     * without iterating all connections.
+     */
+    private final ConcurrentMap<DeviceID, Channel> channelsByDevice = new ConcurrentHashMap<>();
+    /**
+     * Compression ratio and time spent compressing, shared by all connections.
+     */
+    private final CompressionStatistics compressionStatistics = new CompressionStatistics();
+    /**
+     * Limits the number of concurrent handshakes and connections per address, created on startup.
+     */
+    private HandshakeAdmissionControl admissionControl;
+    /**
+     * A single timer with coarse ticks checking all connections for idleness, created on startup.
+     */
+    private HashedWheelTimer idleTimer;
+    private final ConnectionEventBus eventBus = new ConnectionEventBus();
+    private final ConcurrentMap<ServerConnectionListener, ConnectionEventBus.ConnectionEventListener> listenerAdapters
+            = new ConcurrentHashMap<>();
+    private SharedIdleStateHandler idleStateHandler;
 
     /**
      * Init timeouts and the connection registry and start the netty IO server synchronously
@@ -128,15 +153,23 @@ public class Server extends AbstractComponent {
             throw new IllegalStateException("Server already running");
         }
 
-        //Setup the Executor and Connection Pool
+        //Setup the Connection Pool
         final ExecutionServiceComponent eventLoop = requireComponent(ExecutionServiceComponent.KEY);
         connections = new DefaultChannelGroup(eventLoop.next());
 
+        final MasterConfiguration config = requireComponent(MasterConfiguration.KEY);
+        admissionControl = new HandshakeAdmissionControl(config.getMaxPendingHandshakes(),
+                config.getMaxConnectionsPerAddress(), config.getHandshakesPerSecond());
+        idleTimer = new HashedWheelTimer(new DefaultThreadFactory("master-idle"), 1, TimeUnit.SECONDS);
+        idleStateHandler = new SharedIdleStateHandler(idleTimer, READER_IDLE_TIME, WRITER_IDLE_TIME, ALL_IDLE_TIME);
+        final ServerExecutorGroups groups = requireComponent(ServerExecutorGroups.KEY);
         ServerBootstrap b = new ServerBootstrap()
-                .group(eventLoop)
+                .group(groups.getBossGroup(), groups.getIOGroup())
                 .channel(NioServerSocketChannel.class)
                 .childHandler(getHandshakeHandler())
-                .childOption(ChannelOption.SO_KEEPALIVE, true);
+                .childOption(ChannelOption.SO_KEEPALIVE, true)
+                .childOption(ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK, config.getWriteBufferHighWaterMark())
+                .childOption(ChannelOption.WRITE_BUFFER_LOW_WATER_MARK, config.getWriteBufferLowWaterMark());
 
         //Bind to ports and wait for the start of the server
         final int localPort = getLocalPort();
@@ -150,6 +183,12 @@ public class Server extends AbstractComponent {
             publicChannel = b.bind(publicPort).sync();
         }
         logger.info("Server bound to port " + localChannel.channel() + (publicChannel != null ? " and " + publicChannel.channel() : ""));
+
+        //Discovery responses advertising the previous address must not be sent any more
+        final UDPDiscoveryServer discoveryServer = getComponent(UDPDiscoveryServer.KEY);
+        if (discoveryServer != null) {
+            discoveryServer.invalidateResponseCache();
+        }
     }
 
     /**
@@ -173,6 +212,9 @@ public class Server extends AbstractComponent {
         if (publicChannel != null && publicChannel.channel() != null) {
             publicChannel.channel().close();
         }
+        if (idleTimer != null) {
+            idleTimer.stop();
+        }
         super.destroy();
     }
 
@@ -183,13 +225,23 @@ public class Server extends AbstractComponent {
      */
     @Nullable
     public Channel findChannel(DeviceID id) {
-        for (Channel channel : connections) {
-            //noinspection ConstantConditions
-            if (channel.isActive() && Objects.equals(channel.attr(ATTR_PEER_ID).get(), id)) {
-                return channel;
+        final Channel channel = channelsByDevice.get(id);
+        return channel != null && channel.isActive() ? channel : null;
+    }
+
+    /**
+     * Register a connection that finished its handshake. If the Device already has a connection, messages to the
+     * Device will be sent on the new connection.
+     */
+    void addAuthenticatedChannel(final Channel channel, final DeviceID deviceID) {
+        connections.add(channel);
+        channelsByDevice.put(deviceID, channel);
+        channel.closeFuture().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                channelsByDevice.remove(deviceID, channel);
             }
-        }
-        return null;
+        });
     }
 
     /**
@@ -239,25 +291,32 @@ public class Server extends AbstractComponent {
         return connections;
     }
 
+    /**
+     * @return the statistics about compressed messages sent and received by all connections
+     */
+    public CompressionStatistics getCompressionStatistics() {
+        return compressionStatistics;
+    }
+
+    /**
+     * @return the admission control deciding which incoming connections may start a handshake
+     */
+    public HandshakeAdmissionControl getAdmissionControl() {
+        return admissionControl;
+    }
+
+    /**
+     * @return the Handler detecting idle connections, shared by all connections
+     */
+    public SharedIdleStateHandler getIdleStateHandler() {
+        return idleStateHandler;
+    }
+
     /**
      * @return an Iterable containing the DeviceIDs of all currently connected Devices
      */
     public Iterable<DeviceID> getActiveDevices() {
-        final ChannelGroup input = getActiveChannels();
-        final Iterable<DeviceID> transformed = Iterables.transform(input, new Function<Channel, DeviceID>() {
-            @Override
-            public DeviceID apply(Channel input) {
-                return input.attr(ATTR_PEER_ID).get();
-            }
-        });
-        //noinspection UnnecessaryLocalVariable
-        final Iterable<DeviceID> filtered = Iterables.filter(transformed, new Predicate<DeviceID>() {
-            @Override
-            public boolean apply(@Nullable DeviceID input) {
-                return input != null;
-            }
-        });
-        return filtered;
+        return Collections.unmodifiableSet(channelsByDevice.keySet());
     }
 
     /**
@@ -283,14 +342,41 @@ public class Server extends AbstractComponent {
         }
     }
 
-    final List<ServerConnectionListener> listeners = new LinkedList<>();
+    /**
+     * @return the bus notifying about connections being opened, authenticated and closed
+     */
+    public ConnectionEventBus getEventBus() {
+        return eventBus;
+    }
 
-    public boolean addListener(ServerConnectionListener object) {
-        return listeners.add(object);
+    /**
+     * Notify the listener about authenticated connections and their closing. The listener is called on a thread of
+     * the handler group, so it doesn't block the I/O.
+     *
+     * @see #getEventBus() for more fine-grained events
+     */
+    public boolean addListener(final ServerConnectionListener object) {
+        final ConnectionEventBus.ConnectionEventListener adapter = new ConnectionEventBus.ConnectionEventListener() {
+            @Override
+            public void onConnectionEvent(ConnectionEventBus.ConnectionEvent event) {
+                if (event.getType() == ConnectionEventBus.EventType.HANDSHAKE_COMPLETE) {
+                    object.onClientConnected(event.getChannel());
+                } else if (event.getType() == ConnectionEventBus.EventType.DISCONNECTED && event.isAuthenticated()) {
+                    object.onClientDisonnected(event.getChannel());
+                }
+            }
+        };
+        if (listenerAdapters.putIfAbsent(object, adapter) != null) {
+            return false;
+        }
+        eventBus.subscribe(adapter, requireComponent(ServerExecutorGroups.KEY).getHandlerGroup().next(),
+                ConnectionEventBus.EventType.HANDSHAKE_COMPLETE, ConnectionEventBus.EventType.DISCONNECTED);
+        return true;
     }
 
     public boolean removeListener(ServerConnectionListener object) {
-        return listeners.remove(object);
+        final ConnectionEventBus.ConnectionEventListener adapter = listenerAdapters.remove(object);
+        return adapter != null && eventBus.unsubscribe(adapter);
     }
 
     public interface ServerConnectionListener {
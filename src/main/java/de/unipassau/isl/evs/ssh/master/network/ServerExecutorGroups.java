@@ -0,0 +1,134 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.network;
+
+import de.ncoder.typedmap.Key;
+import de.unipassau.isl.evs.ssh.core.container.AbstractComponent;
+import de.unipassau.isl.evs.ssh.core.container.Container;
+import de.unipassau.isl.evs.ssh.master.MasterConfiguration;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutorGroup;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Provides separate thread pools for accepting connections, for the I/O of the connections and for running the
+ * MessageHandlers, so that Handlers blocking on the database don't delay reading from or writing to sockets and
+ * busy connections don't delay accepting new ones.
+ * The number of threads of each group can be configured in the {@link MasterConfiguration}.
+ * <p>
+ * If partitioned dispatch is enabled, the MessageHandlers are run on single-threaded partitions instead of the
+ * handler group, see {@link PartitionedDispatcher}.
+ *
+ * @author Team
+ */
+public class ServerExecutorGroups extends AbstractComponent {
+    public static final Key<ServerExecutorGroups> KEY = new Key<>(ServerExecutorGroups.class);
+
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup ioGroup;
+    private EventExecutorGroup handlerGroup;
+    @Nullable
+    private ExecutorService[] partitions;
+
+    @Override
+    public void init(Container container) {
+        super.init(container);
+        final MasterConfiguration config = requireComponent(MasterConfiguration.KEY);
+        bossGroup = new NioEventLoopGroup(config.getBossThreads(), new DefaultThreadFactory("master-boss"));
+        // 0 lets netty choose the number of threads depending on the number of processors
+        ioGroup = new NioEventLoopGroup(config.getIOThreads(), new DefaultThreadFactory("master-io"));
+        handlerGroup = new DefaultEventExecutorGroup(config.getHandlerThreads(), new DefaultThreadFactory("master-handler"));
+        if (config.isPartitionedDispatchEnabled()) {
+            final ThreadFactory threadFactory = new DefaultThreadFactory("master-partition");
+            partitions = new ExecutorService[Math.max(config.getHandlerThreads(), 1)];
+            for (int i = 0; i < partitions.length; i++) {
+                partitions[i] = Executors.newSingleThreadExecutor(threadFactory);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (partitions != null) {
+            for (ExecutorService partition : partitions) {
+                partition.shutdown();
+            }
+        }
+        handlerGroup.shutdownGracefully();
+        ioGroup.shutdownGracefully();
+        bossGroup.shutdownGracefully();
+        super.destroy();
+    }
+
+    /**
+     * @return the group accepting new connections and answering UDP discovery requests
+     */
+    public EventLoopGroup getBossGroup() {
+        return bossGroup;
+    }
+
+    /**
+     * @return the group doing the I/O, encryption and (de-)serialization of all connections
+     */
+    public EventLoopGroup getIOGroup() {
+        return ioGroup;
+    }
+
+    /**
+     * @return the group the IncomingDispatcher and thereby all MessageHandlers are executed on
+     */
+    public EventExecutorGroup getHandlerGroup() {
+        return handlerGroup;
+    }
+
+    /**
+     * @return {@code true} if the MessageHandlers are executed on the partitions instead of the handler group
+     */
+    public boolean isPartitionedDispatch() {
+        return partitions != null;
+    }
+
+    /**
+     * @param partitionKey the key identifying the partition, messages with equal keys are executed in order
+     * @return the single-threaded Executor for the given key
+     * @throws IllegalStateException if partitioned dispatch is disabled
+     */
+    public Executor getPartition(Object partitionKey) {
+        if (partitions == null) {
+            throw new IllegalStateException("Partitioned dispatch is disabled");
+        }
+        return partitions[(partitionKey.hashCode() & Integer.MAX_VALUE) % partitions.length];
+    }
+}
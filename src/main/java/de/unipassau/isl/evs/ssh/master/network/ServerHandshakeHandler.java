@@ -48,21 +48,25 @@ import de.unipassau.isl.evs.ssh.core.network.handshake.HandshakeException;
 import de.unipassau.isl.evs.ssh.core.network.handshake.HandshakePacket;
 import de.unipassau.isl.evs.ssh.core.network.handshake.HandshakePacket.ServerAuthenticationResponse;
 import de.unipassau.isl.evs.ssh.core.sec.KeyStoreController;
+import de.unipassau.isl.evs.ssh.master.MasterConfiguration;
 import de.unipassau.isl.evs.ssh.master.database.SlaveController;
 import de.unipassau.isl.evs.ssh.master.database.UserManagementController;
 import de.unipassau.isl.evs.ssh.master.handler.MasterRegisterDeviceHandler;
+import de.unipassau.isl.evs.ssh.master.network.compression.PayloadCompressor;
+import de.unipassau.isl.evs.ssh.master.network.compression.PayloadDecompressor;
+import de.unipassau.isl.evs.ssh.master.network.metrics.ConnectionMetrics;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerAdapter;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.serialization.ClassResolvers;
 import io.netty.handler.codec.serialization.ObjectDecoder;
 import io.netty.handler.codec.serialization.ObjectEncoder;
-import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.ScheduledFuture;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -74,6 +78,7 @@ import java.security.PublicKey;
 import java.security.SecureRandom;
 import java.security.cert.X509Certificate;
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 import static de.unipassau.isl.evs.ssh.core.CoreConstants.NettyConstants.*;
 
@@ -89,14 +94,29 @@ import static de.unipassau.isl.evs.ssh.core.CoreConstants.NettyConstants.*;
 public class ServerHandshakeHandler extends ChannelHandlerAdapter {
     private static final AttributeKey<byte[]> CHAP_CHALLENGE = AttributeKey.valueOf(ServerHandshakeHandler.class, "CHAP_CHALLENGE");
     private static final AttributeKey<State> STATE = AttributeKey.valueOf(ServerHandshakeHandler.class, "STATE");
+    private static final AttributeKey<Long> STATE_ENTERED = AttributeKey.valueOf(ServerHandshakeHandler.class, "STATE_ENTERED");
+    private static final AttributeKey<Long> HANDSHAKE_STARTED = AttributeKey.valueOf(ServerHandshakeHandler.class, "HANDSHAKE_STARTED");
+    private static final AttributeKey<ScheduledFuture<?>> HANDSHAKE_DEADLINE = AttributeKey.valueOf(ServerHandshakeHandler.class, "HANDSHAKE_DEADLINE");
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     private final Server server;
     private final Container container;
 
+    @Nullable
+    private final ConnectionProfile profile;
+    @Nullable
+    private final ConnectionMetrics metrics;
+
     public ServerHandshakeHandler(Server server, Container container) {
         this.server = server;
         this.container = container;
+        if (container != null) {
+            profile = new ConnectionProfile(container.require(MasterConfiguration.KEY), server.getCompressionStatistics());
+            metrics = container.require(ConnectionMetrics.KEY);
+        } else {
+            profile = null;
+            metrics = null;
+        }
     }
 
     /**
@@ -107,42 +127,96 @@ public class ServerHandshakeHandler extends ChannelHandlerAdapter {
      */
     @Override
     public void channelRegistered(ChannelHandlerContext ctx) throws Exception {
-        logger.debug("channelRegistered " + ctx);
-        if (container == null) {
+        logger.debug("channelRegistered {}", ctx);
+        if (container == null || profile == null || metrics == null) {
             //Do not accept new connections after the Server has been shut down
             logger.debug("channelRegistered:closed");
             ctx.close();
             return;
         }
+        final HandshakeAdmissionControl.Rejection rejection = server.getAdmissionControl().admit(ctx.channel());
+        if (rejection != null) {
+            //Drop the connection before any resources are allocated for it
+            logger.info("Rejecting connection from {}: {}", ctx.channel().remoteAddress(), rejection);
+            ctx.close();
+            return;
+        }
+
+        // Count the raw traffic, the Security handlers will be added after this one
+        ctx.pipeline().addFirst(ConnectionMetrics.class.getSimpleName(), metrics.getByteCounter());
+
+        // Add (de-)compression Handlers, the Security handlers will be added before them after the Hello
+        ctx.pipeline().addBefore(ctx.name(), PayloadCompressor.class.getSimpleName(), profile.getCompressor());
+        ctx.pipeline().addBefore(ctx.name(), PayloadDecompressor.class.getSimpleName(), profile.newDecompressor());
 
         // Add (de-)serialization Handlers before this Handler
-        ctx.pipeline().addBefore(ctx.name(), ObjectEncoder.class.getSimpleName(), new ObjectEncoder());
-        ctx.pipeline().addBefore(ctx.name(), ObjectDecoder.class.getSimpleName(), new ObjectDecoder(
-                ClassResolvers.weakCachingConcurrentResolver(getClass().getClassLoader())));
-        ctx.pipeline().addBefore(ctx.name(), LoggingHandler.class.getSimpleName(), new LoggingHandler(LogLevel.TRACE));
+        ctx.pipeline().addBefore(ctx.name(), ObjectEncoder.class.getSimpleName(), profile.getObjectEncoder());
+        ctx.pipeline().addBefore(ctx.name(), ObjectDecoder.class.getSimpleName(), profile.newObjectDecoder());
+        if (profile.isTraceLoggingEnabled()) {
+            ctx.pipeline().addBefore(ctx.name(), LoggingHandler.class.getSimpleName(), profile.getLoggingHandler());
+        }
 
         // Timeout Handler
-        ctx.pipeline().addBefore(ctx.name(), IdleStateHandler.class.getSimpleName(),
-                new IdleStateHandler(READER_IDLE_TIME, WRITER_IDLE_TIME, ALL_IDLE_TIME));
+        ctx.pipeline().addBefore(ctx.name(), IdleStateHandler.class.getSimpleName(), server.getIdleStateHandler());
         ctx.pipeline().addBefore(ctx.name(), TimeoutHandler.class.getSimpleName(), new TimeoutHandler());
 
+        // Hold back messages while the client can't keep up
+        ctx.pipeline().addBefore(ctx.name(), OutboundQueueHandler.class.getSimpleName(),
+                new OutboundQueueHandler(profile.getOutboundQueueLimit()));
+
+        // Count the messages after they have been deserialized
+        ctx.pipeline().addBefore(ctx.name(), ConnectionMetrics.class.getSimpleName() + "Messages", metrics.getMessageCounter());
+
         // Add exception handler
-        ctx.pipeline().addLast(PipelinePlug.class.getSimpleName(), new PipelinePlug());
+        ctx.pipeline().addLast(PipelinePlug.class.getSimpleName(), profile.getPipelinePlug());
 
         super.channelRegistered(ctx);
-        logger.debug("Pipeline after register: " + ctx.pipeline());
+        logger.debug("Pipeline after register: {}", ctx.pipeline());
     }
 
     @Override
     public void channelActive(ChannelHandlerContext ctx) throws Exception {
-        logger.debug("channelActive " + ctx);
+        logger.debug("channelActive {}", ctx);
         super.channelActive(ctx);
         assert container.require(NamingManager.KEY).isMaster();
+        ctx.attr(HANDSHAKE_STARTED).set(System.nanoTime());
         setState(ctx, null, State.EXPECT_HELLO);
         final boolean isLocal = ((InetSocketAddress) ctx.channel().localAddress()).getPort() == server.getLocalPort();
         ctx.attr(ATTR_LOCAL_CONNECTION).set(isLocal);
-        logger.debug("Channel to " + (isLocal ? "local" : "internet") + " device open, waiting for Client Hello");
+        server.getEventBus().publishConnected(ctx.channel(), isLocal);
+        ctx.channel().closeFuture().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                final Channel channel = future.channel();
+                server.getEventBus().publishDisconnected(channel, channel.attr(ATTR_PEER_ID).get(), isLocal,
+                        channel.attr(STATE).get() == State.FINISHED);
+            }
+        });
+        logger.debug("Channel to {} device open, waiting for Client Hello", isLocal ? "local" : "internet");
         setChapChallenge(ctx, new byte[HandshakePacket.CHAP.CHALLENGE_LENGTH]);
+        scheduleHandshakeDeadline(ctx);
+    }
+
+    /**
+     * Close the connection if the handshake isn't finished within the configured time, so that stalled peers
+     * can't hold a slot of the {@link HandshakeAdmissionControl} forever.
+     */
+    private void scheduleHandshakeDeadline(final ChannelHandlerContext ctx) {
+        final int handshakeTimeout = profile != null ? profile.getHandshakeTimeout() : 0;
+        if (handshakeTimeout <= 0) {
+            return;
+        }
+        final ScheduledFuture<?> deadline = ctx.executor().schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (getState(ctx) != State.FINISHED && ctx.channel().isOpen()) {
+                    logger.info("Handshake with {} timed out in state {}", ctx.channel().remoteAddress(), getState(ctx));
+                    server.getAdmissionControl().recordTimeout();
+                    ctx.close();
+                }
+            }
+        }, handshakeTimeout, TimeUnit.SECONDS);
+        ctx.attr(HANDSHAKE_DEADLINE).set(deadline);
     }
 
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
@@ -175,7 +249,7 @@ public class ServerHandshakeHandler extends ChannelHandlerAdapter {
         ctx.attr(CoreConstants.NettyConstants.ATTR_PEER_CERT).set(deviceCertificate);
         final DeviceID deviceID = DeviceID.fromCertificate(deviceCertificate);
         ctx.attr(CoreConstants.NettyConstants.ATTR_PEER_ID).set(deviceID);
-        logger.debug("Client " + deviceID + " connected, checking authentication");
+        logger.debug("Client {} connected, checking authentication", deviceID);
 
         final X509Certificate masterCert = container.require(NamingManager.KEY).getMasterCertificate();
         final boolean isMaster = container.require(NamingManager.KEY).isMaster();
@@ -184,10 +258,11 @@ public class ServerHandshakeHandler extends ChannelHandlerAdapter {
         // add Security handlers
         final PublicKey remotePublicKey = deviceCertificate.getPublicKey();
         final PrivateKey localPrivateKey = container.require(KeyStoreController.KEY).getOwnPrivateKey();
-        ctx.pipeline().addBefore(ObjectEncoder.class.getSimpleName(), Encrypter.class.getSimpleName(), new Encrypter(remotePublicKey));
-        ctx.pipeline().addBefore(ObjectEncoder.class.getSimpleName(), Decrypter.class.getSimpleName(), new Decrypter(localPrivateKey));
-        ctx.pipeline().addBefore(ObjectEncoder.class.getSimpleName(), SignatureChecker.class.getSimpleName(), new SignatureChecker(remotePublicKey));
-        ctx.pipeline().addBefore(ObjectEncoder.class.getSimpleName(), SignatureGenerator.class.getSimpleName(), new SignatureGenerator(localPrivateKey));
+        final String first = PayloadCompressor.class.getSimpleName();
+        ctx.pipeline().addBefore(first, Encrypter.class.getSimpleName(), new Encrypter(remotePublicKey));
+        ctx.pipeline().addBefore(first, Decrypter.class.getSimpleName(), new Decrypter(localPrivateKey));
+        ctx.pipeline().addBefore(first, SignatureChecker.class.getSimpleName(), new SignatureChecker(remotePublicKey));
+        ctx.pipeline().addBefore(first, SignatureGenerator.class.getSimpleName(), new SignatureGenerator(localPrivateKey));
     }
 
     private void handleInitialChapRequest(ChannelHandlerContext ctx, HandshakePacket.CHAP msg) throws HandshakeException {
@@ -224,7 +299,8 @@ public class ServerHandshakeHandler extends ChannelHandlerAdapter {
         final UserDevice userDevice = container.require(UserManagementController.KEY).getUserDevice(deviceID);
         if (slave != null || userDevice != null) {
             setState(ctx, State.CHECK_AUTH, State.FINISHED);
-            logger.info("Device " + deviceID + " is registered as " + (slave != null ? "Slave " + slave : "UserDevice " + userDevice));
+            logger.info("Device {} is registered as {} {}", deviceID, slave != null ? "Slave" : "UserDevice",
+                    slave != null ? slave : userDevice);
 
             final byte[] passiveRegistrationToken = slave == null ? null : slave.getPassiveRegistrationToken();
             final boolean isConnectionLocal = ctx.attr(ATTR_LOCAL_CONNECTION).get() == Boolean.TRUE;
@@ -235,7 +311,7 @@ public class ServerHandshakeHandler extends ChannelHandlerAdapter {
             handshakeSuccessful(ctx);
         } else {
             setState(ctx, State.CHECK_AUTH, State.EXPECT_REGISTER);
-            logger.info("Device " + deviceID + " is not registered, requesting registration");
+            logger.info("Device {} is not registered, requesting registration", deviceID);
 
             ctx.writeAndFlush(ServerAuthenticationResponse.unauthenticated(
                     "Unknown Client, please register."
@@ -253,11 +329,11 @@ public class ServerHandshakeHandler extends ChannelHandlerAdapter {
         );
 
         if (success) {
-            logger.debug("Accepted registration request from " + ctx.attr(CoreConstants.NettyConstants.ATTR_PEER_ID).get());
+            logger.debug("Accepted registration request from {}", ctx.attr(CoreConstants.NettyConstants.ATTR_PEER_ID).get());
             checkAuthentication(ctx);
         } else {
             setState(ctx, State.CHECK_AUTH, State.EXPECT_REGISTER);
-            logger.debug("Rejected registration request from " + ctx.attr(CoreConstants.NettyConstants.ATTR_PEER_ID).get());
+            logger.debug("Rejected registration request from {}", ctx.attr(CoreConstants.NettyConstants.ATTR_PEER_ID).get());
 
             ctx.writeAndFlush(ServerAuthenticationResponse.unauthenticated(
                     "Client registration rejected, closing connection."
@@ -272,34 +348,46 @@ public class ServerHandshakeHandler extends ChannelHandlerAdapter {
         }
         final DeviceID deviceID = ctx.channel().attr(ATTR_PEER_ID).get();
 
+        // the connection no longer counts as pending handshake
+        final ScheduledFuture<?> deadline = ctx.attr(HANDSHAKE_DEADLINE).getAndRemove();
+        if (deadline != null) {
+            deadline.cancel(false);
+        }
+        server.getAdmissionControl().handshakeFinished(ctx.channel());
+        final Long started = ctx.attr(HANDSHAKE_STARTED).get();
+        if (metrics != null && started != null) {
+            metrics.recordHandshakeSuccessful(ctx.channel(), deviceID, System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+
         // allow pings
         TimeoutHandler.setPingEnabled(ctx.channel(), true);
-        // add Dispatcher
-        ctx.pipeline().addBefore(ctx.name(), IncomingDispatcher.class.getSimpleName(), container.require(IncomingDispatcher.KEY));
+        // add Dispatcher, running all MessageHandlers on their own threads so that they don't block the I/O
+        final ServerExecutorGroups executorGroups = container.require(ServerExecutorGroups.KEY);
+        if (executorGroups.isPartitionedDispatch()) {
+            ctx.pipeline().addBefore(ctx.name(), PartitionedDispatcher.class.getSimpleName(),
+                    new PartitionedDispatcher(container.require(IncomingDispatcher.KEY), executorGroups));
+        } else {
+            ctx.pipeline().addBefore(executorGroups.getHandlerGroup(), ctx.name(),
+                    IncomingDispatcher.class.getSimpleName(), container.require(IncomingDispatcher.KEY));
+        }
         // Logging is handled by IncomingDispatcher and OutgoingRouter
-        ctx.pipeline().remove(LoggingHandler.class.getSimpleName());
+        if (ctx.pipeline().get(LoggingHandler.class.getSimpleName()) != null) {
+            ctx.pipeline().remove(LoggingHandler.class.getSimpleName());
+        }
         // remove HandshakeHandler
         ctx.pipeline().remove(this);
 
+        // attach the Permissions before the Channel can be found, so that no request has to query the database
+        container.require(ChannelPermissions.KEY).attach(ctx.channel(), deviceID);
         // Register connection
-        server.getActiveChannels().add(ctx.channel());
-        logger.info("Handshake with " + deviceID + " successful, current Pipeline: " + ctx.pipeline());
+        server.addAuthenticatedChannel(ctx.channel(), deviceID);
+        logger.info("Handshake with {} successful", deviceID);
+        logger.debug("Current Pipeline: {}", ctx.pipeline());
 
         Message message = new Message(new DeviceConnectedPayload(deviceID, ctx.channel(), ctx.attr(ATTR_LOCAL_CONNECTION).get()));
         container.require(OutgoingRouter.KEY).sendMessageLocal(RoutingKeys.MASTER_DEVICE_CONNECTED, message);
 
-        ctx.channel().closeFuture().addListener(new ChannelFutureListener() {
-            @Override
-            public void operationComplete(ChannelFuture future) throws Exception {
-                for (Server.ServerConnectionListener listener : server.listeners) {
-                    listener.onClientConnected(future.channel());
-                }
-            }
-        });
-
-        for (Server.ServerConnectionListener listener : server.listeners) {
-            listener.onClientConnected(ctx.channel());
-        }
+        server.getEventBus().publishHandshakeComplete(ctx.channel(), deviceID, ctx.attr(ATTR_LOCAL_CONNECTION).get() == Boolean.TRUE);
     }
 
     private void setState(ChannelHandlerContext ctx, @Nullable State expectedState, @Nullable State newState) throws HandshakeException {
@@ -307,7 +395,13 @@ public class ServerHandshakeHandler extends ChannelHandlerAdapter {
             throw new HandshakeException("Expected state " + expectedState + " but was " + getState(ctx) + ", " +
                     "new state would have been " + newState);
         }
-        logger.debug("State transition " + expectedState + " -> " + newState);
+        logger.debug("State transition {} -> {}", expectedState, newState);
+
+        final long now = System.nanoTime();
+        final Long entered = ctx.channel().attr(STATE_ENTERED).getAndSet(now);
+        if (metrics != null && expectedState != null && entered != null) {
+            metrics.recordHandshakeState(expectedState.name(), now - entered, TimeUnit.NANOSECONDS);
+        }
     }
 
     private State getState(ChannelHandlerContext ctx) {
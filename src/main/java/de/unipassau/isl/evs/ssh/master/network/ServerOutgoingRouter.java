@@ -27,23 +27,164 @@
 package de.unipassau.isl.evs.ssh.master.network;
 
 import java.io.IOException;
+import java.util.LinkedHashSet;
 import java.util.Objects;
+import java.util.Set;
 
+import de.ncoder.typedmap.Key;
 import de.unipassau.isl.evs.ssh.core.messaging.IncomingDispatcher;
 import de.unipassau.isl.evs.ssh.core.messaging.Message;
 import de.unipassau.isl.evs.ssh.core.messaging.OutgoingRouter;
+import de.unipassau.isl.evs.ssh.core.messaging.RoutingKey;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.CameraPayload;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.DoorBlockPayload;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.DoorPayload;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.DoorStatusPayload;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.ErrorPayload;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.MessagePayload;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.NotificationPayload;
+import de.unipassau.isl.evs.ssh.core.naming.DeviceID;
 import de.unipassau.isl.evs.ssh.core.schedule.ExecutionServiceComponent;
+import de.unipassau.isl.evs.ssh.master.messaging.payload.CameraChunkPayload;
 import io.netty.channel.Channel;
 import io.netty.util.concurrent.Future;
 
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.APP_CAMERA_BROADCAST;
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.APP_DOOR_STATUS_UPDATE;
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.APP_NOTIFICATION_RECEIVE;
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.APP_USERINFO_UPDATE;
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.GLOBAL_MODULES_UPDATE;
+import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.SLAVE_DOOR_UNLATCH;
+import static de.unipassau.isl.evs.ssh.master.messaging.MasterRoutingKeys.APP_CAMERA_CHUNK;
+
 /**
  * Receives messages from system components and decides how to route them to the targets.
  *
  * @author Niko Fink
  */
 public class ServerOutgoingRouter extends OutgoingRouter {
+    public static final Key<ServerOutgoingRouter> KEY = new Key<>(ServerOutgoingRouter.class);
+
+    private static final RoutingKey[] URGENT_KEYS = {
+            APP_DOOR_STATUS_UPDATE, APP_NOTIFICATION_RECEIVE, SLAVE_DOOR_UNLATCH
+    };
+    private static final RoutingKey[] BULK_KEYS = {
+            APP_CAMERA_BROADCAST, APP_CAMERA_CHUNK, GLOBAL_MODULES_UPDATE, APP_USERINFO_UPDATE
+    };
+
+    /**
+     * The connections written to by the batch of the current thread, or {@code null} if no batch is started.
+     */
+    private final ThreadLocal<Set<Channel>> batchChannels = new ThreadLocal<>();
+
+    /**
+     * Classify a message for the per-channel scheduling done by the {@link OutboundQueueHandler}.
+     * Replies are classified by their payload, as they don't have a routing key of their own.
+     *
+     * @return the priority with which the message is sent
+     */
+    public static MessagePriority getPriority(Message.AddressedMessage amsg) {
+        for (RoutingKey routingKey : URGENT_KEYS) {
+            if (routingKey.matches(amsg)) {
+                return MessagePriority.URGENT;
+            }
+        }
+        for (RoutingKey routingKey : BULK_KEYS) {
+            if (routingKey.matches(amsg)) {
+                return MessagePriority.BULK;
+            }
+        }
+        final MessagePayload payload = amsg.getPayload();
+        if (payload instanceof CameraPayload || payload instanceof CameraChunkPayload) {
+            return MessagePriority.BULK;
+        } else if (payload == null || payload instanceof ErrorPayload || payload instanceof NotificationPayload
+                || payload instanceof DoorPayload || payload instanceof DoorStatusPayload
+                || payload instanceof DoorBlockPayload) {
+            // acknowledgements, errors and everything concerning the door
+            return MessagePriority.URGENT;
+        } else {
+            return MessagePriority.NORMAL;
+        }
+    }
+
+    /**
+     * Send the same Message to several Devices. The Message and its payload are created once and shared by all
+     * recipients, only the addressing is done for each recipient. Recipients that are not connected are skipped.
+     * <p>
+     * The serialization, encryption and signing are still done separately for each connection, as every frame contains
+     * the Message addressed to its recipient and is encrypted with the key of that connection.
+     *
+     * @param recipients the Devices to send the Message to
+     * @param routingKey the RoutingKey with which the Message is sent
+     * @param message    the Message to send
+     * @return the number of recipients the Message was sent to
+     */
+    public int sendMessageToAll(Iterable<DeviceID> recipients, RoutingKey routingKey, Message message) {
+        final Server server = getComponent(Server.KEY);
+        if (server == null) {
+            return 0;
+        }
+        int sent = 0;
+        for (DeviceID recipient : recipients) {
+            if (server.findChannel(recipient) != null) {
+                sendMessage(recipient, routingKey, message);
+                sent++;
+            }
+        }
+        return sent;
+    }
+
+    /**
+     * @return {@code true} if the Device currently has an open connection to the Server
+     */
+    public boolean isConnected(DeviceID deviceID) {
+        final Server server = getComponent(Server.KEY);
+        final Channel channel = server != null ? server.findChannel(deviceID) : null;
+        return channel != null && channel.isOpen();
+    }
+
+    /**
+     * Start a batch of messages sent by the calling thread. The messages are written to the connections of their
+     * recipients as usual, but the connections are only flushed once by {@link #flushBatch()}, so that several
+     * messages to the same Device leave in as few packets as possible.
+     * Must always be followed by {@link #flushBatch()}, preferably in a {@code finally} block.
+     */
+    public void startBatch() {
+        if (batchChannels.get() != null) {
+            throw new IllegalStateException("A batch is already started by this thread");
+        }
+        batchChannels.set(new LinkedHashSet<Channel>());
+    }
+
+    /**
+     * Flush each connection written to since {@link #startBatch()} once and end the batch.
+     */
+    public void flushBatch() {
+        final Set<Channel> channels = batchChannels.get();
+        batchChannels.remove();
+        if (channels != null) {
+            for (Channel channel : channels) {
+                channel.flush();
+            }
+        }
+    }
+
+    /**
+     * Send a Message and get the future of the write to the connection of the recipient, which fails e.g. if the
+     * recipient is not connected or the outbound queue of its connection is full.
+     *
+     * @return the future of the write, its listeners are notified on the event loop of the connection if there is one
+     */
+    public Future<Void> sendMessageAndGetFuture(DeviceID toID, RoutingKey routingKey, Message message) {
+        return write(message.setDestination(getOwnID(), toID, routingKey.getKey()));
+    }
+
     @Override
     protected Future<Void> doSendMessage(Message.AddressedMessage amsg) {
+        return write(amsg);
+    }
+
+    private Future<Void> write(Message.AddressedMessage amsg) {
         final ExecutionServiceComponent executionService = requireComponent(ExecutionServiceComponent.KEY);
         if (Objects.equals(amsg.getToID(), getOwnID())) {
             //Send Local
@@ -51,13 +192,20 @@ public class ServerOutgoingRouter extends OutgoingRouter {
             return executionService.newSucceededFuture(null);
         } else {
             //Find client and send the message there
-            Channel channel = requireComponent(Server.KEY).findChannel(amsg.getToID());
+            //A standby Master has no Server until it takes over
+            final Server server = getComponent(Server.KEY);
+            Channel channel = server != null ? server.findChannel(amsg.getToID()) : null;
             if (channel == null || !channel.isOpen()) {
                 Exception e = new IOException("Client " + amsg.getToID() + " is not connected");
                 e.fillInStackTrace();
                 return executionService.newFailedFuture(e);
                 //in a future version, pending messages could be queued instead of failed directly
             } else {
+                final Set<Channel> batch = batchChannels.get();
+                if (batch != null) {
+                    batch.add(channel);
+                    return channel.write(amsg);
+                }
                 return channel.writeAndFlush(amsg);
             }
         }
@@ -0,0 +1,253 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.network;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerAdapter;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.AttributeKey;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A replacement for netty's {@link IdleStateHandler} that can be shared by all connections.
+ * Instead of scheduling timers on the event loop of every connection and rescheduling them on every read and write,
+ * each connection only stores the time of its last read and write. All connections are checked by a single shared
+ * {@link Timer}, which only re-arms the check of a connection once it's due, so reads and writes cost no scheduler work.
+ * <p>
+ * The same {@link IdleStateEvent}s as from the IdleStateHandler are fired, so the TimeoutHandler keeps working.
+ * The idle times have a precision of the tick duration of the Timer.
+ *
+ * @author Team
+ */
+@ChannelHandler.Sharable
+public class SharedIdleStateHandler extends ChannelHandlerAdapter {
+    private static final AttributeKey<ChannelIdleState> IDLE_STATE = AttributeKey.valueOf(SharedIdleStateHandler.class, "IDLE_STATE");
+
+    private final Timer timer;
+    private final long readerIdleTime;
+    private final long writerIdleTime;
+    private final long allIdleTime;
+
+    /**
+     * @param timer          the Timer shared by all connections
+     * @param readerIdleTime the time in seconds without reads after which a READER_IDLE event is fired, 0 to disable
+     * @param writerIdleTime the time in seconds without writes after which a WRITER_IDLE event is fired, 0 to disable
+     * @param allIdleTime    the time in seconds without reads or writes after which an ALL_IDLE event is fired, 0 to disable
+     */
+    public SharedIdleStateHandler(Timer timer, int readerIdleTime, int writerIdleTime, int allIdleTime) {
+        this.timer = timer;
+        this.readerIdleTime = TimeUnit.SECONDS.toNanos(Math.max(0, readerIdleTime));
+        this.writerIdleTime = TimeUnit.SECONDS.toNanos(Math.max(0, writerIdleTime));
+        this.allIdleTime = TimeUnit.SECONDS.toNanos(Math.max(0, allIdleTime));
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isActive()) {
+            start(ctx);
+        }
+        super.handlerAdded(ctx);
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        start(ctx);
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        stop(ctx);
+        super.handlerRemoved(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        stop(ctx);
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        final ChannelIdleState state = ctx.attr(IDLE_STATE).get();
+        if (state != null) {
+            state.lastRead = System.nanoTime();
+            state.firstReaderIdle = state.firstAllIdle = true;
+        }
+        super.channelRead(ctx, msg);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        final ChannelIdleState state = ctx.attr(IDLE_STATE).get();
+        if (state != null) {
+            state.lastWrite = System.nanoTime();
+            state.firstWriterIdle = state.firstAllIdle = true;
+        }
+        super.write(ctx, msg, promise);
+    }
+
+    private void start(ChannelHandlerContext ctx) {
+        final ChannelIdleState state = new ChannelIdleState(ctx);
+        if (ctx.attr(IDLE_STATE).setIfAbsent(state) == null) {
+            state.schedule(getMinimumIdleTime());
+        }
+    }
+
+    private void stop(ChannelHandlerContext ctx) {
+        final ChannelIdleState state = ctx.attr(IDLE_STATE).getAndRemove();
+        if (state != null) {
+            state.cancel();
+        }
+    }
+
+    private long getMinimumIdleTime() {
+        long min = Long.MAX_VALUE;
+        for (long time : new long[]{readerIdleTime, writerIdleTime, allIdleTime}) {
+            if (time > 0) {
+                min = Math.min(min, time);
+            }
+        }
+        return min;
+    }
+
+    /**
+     * The idle state of a single connection. The timestamps are written by the event loop of the connection and read
+     * by the thread of the shared Timer.
+     */
+    private class ChannelIdleState implements TimerTask {
+        private final ChannelHandlerContext ctx;
+        private volatile long lastRead;
+        private volatile long lastWrite;
+        private volatile boolean firstReaderIdle = true;
+        private volatile boolean firstWriterIdle = true;
+        private volatile boolean firstAllIdle = true;
+        private volatile Timeout timeout;
+        /**
+         * The times the last events were fired, only accessed by the thread of the Timer.
+         */
+        private long lastReaderEvent;
+        private long lastWriterEvent;
+        private long lastAllEvent;
+
+        private ChannelIdleState(ChannelHandlerContext ctx) {
+            this.ctx = ctx;
+            lastRead = lastWrite = lastReaderEvent = lastWriterEvent = lastAllEvent = System.nanoTime();
+        }
+
+        private void schedule(long delay) {
+            if (delay != Long.MAX_VALUE) {
+                timeout = timer.newTimeout(this, delay, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private void cancel() {
+            final Timeout timeout = this.timeout;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+
+        @Override
+        public void run(Timeout timeout) throws Exception {
+            if (timeout.isCancelled() || !ctx.channel().isOpen()) {
+                return;
+            }
+            final long now = System.nanoTime();
+            final long lastRead = this.lastRead;
+            final long lastWrite = this.lastWrite;
+            long nextCheck = Long.MAX_VALUE;
+
+            if (readerIdleTime > 0) {
+                final long remaining = readerIdleTime - (now - Math.max(lastRead, lastReaderEvent));
+                if (remaining <= 0) {
+                    fire(IdleState.READER_IDLE, firstReaderIdle);
+                    firstReaderIdle = false;
+                    lastReaderEvent = now;
+                    nextCheck = Math.min(nextCheck, readerIdleTime);
+                } else {
+                    nextCheck = Math.min(nextCheck, remaining);
+                }
+            }
+            if (writerIdleTime > 0) {
+                final long remaining = writerIdleTime - (now - Math.max(lastWrite, lastWriterEvent));
+                if (remaining <= 0) {
+                    fire(IdleState.WRITER_IDLE, firstWriterIdle);
+                    firstWriterIdle = false;
+                    lastWriterEvent = now;
+                    nextCheck = Math.min(nextCheck, writerIdleTime);
+                } else {
+                    nextCheck = Math.min(nextCheck, remaining);
+                }
+            }
+            if (allIdleTime > 0) {
+                final long remaining = allIdleTime - (now - Math.max(Math.max(lastRead, lastWrite), lastAllEvent));
+                if (remaining <= 0) {
+                    fire(IdleState.ALL_IDLE, firstAllIdle);
+                    firstAllIdle = false;
+                    lastAllEvent = now;
+                    nextCheck = Math.min(nextCheck, allIdleTime);
+                } else {
+                    nextCheck = Math.min(nextCheck, remaining);
+                }
+            }
+            schedule(nextCheck);
+        }
+
+        /**
+         * Fire the event on the event loop of the connection, as if it came from an {@link IdleStateHandler}.
+         */
+        private void fire(IdleState state, boolean first) {
+            final IdleStateEvent event;
+            switch (state) {
+                case READER_IDLE:
+                    event = first ? IdleStateEvent.FIRST_READER_IDLE_STATE_EVENT : IdleStateEvent.READER_IDLE_STATE_EVENT;
+                    break;
+                case WRITER_IDLE:
+                    event = first ? IdleStateEvent.FIRST_WRITER_IDLE_STATE_EVENT : IdleStateEvent.WRITER_IDLE_STATE_EVENT;
+                    break;
+                default:
+                    event = first ? IdleStateEvent.FIRST_ALL_IDLE_STATE_EVENT : IdleStateEvent.ALL_IDLE_STATE_EVENT;
+                    break;
+            }
+            ctx.executor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    ctx.fireUserEventTriggered(event);
+                }
+            });
+        }
+    }
+}
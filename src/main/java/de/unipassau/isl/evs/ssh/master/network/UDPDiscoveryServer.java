@@ -26,6 +26,9 @@
 
 package de.unipassau.isl.evs.ssh.master.network;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import de.ncoder.typedmap.Key;
 import de.unipassau.isl.evs.ssh.core.CoreConstants;
 import de.unipassau.isl.evs.ssh.core.container.AbstractComponent;
@@ -33,12 +36,13 @@ import de.unipassau.isl.evs.ssh.core.container.Container;
 import de.unipassau.isl.evs.ssh.core.naming.DeviceID;
 import de.unipassau.isl.evs.ssh.core.naming.NamingManager;
 import de.unipassau.isl.evs.ssh.core.network.Client;
-import de.unipassau.isl.evs.ssh.core.schedule.ExecutionServiceComponent;
 import de.unipassau.isl.evs.ssh.core.sec.KeyStoreController;
+import de.unipassau.isl.evs.ssh.master.MasterConfiguration;
 import de.unipassau.isl.evs.ssh.master.database.SlaveController;
 import de.unipassau.isl.evs.ssh.master.database.UserManagementController;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandlerAdapter;
 import io.netty.channel.ChannelHandlerContext;
@@ -50,9 +54,14 @@ import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
 import java.security.Signature;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import static de.unipassau.isl.evs.ssh.core.CoreConstants.NettyConstants.DISCOVERY_PAYLOAD_REQUEST;
 import static de.unipassau.isl.evs.ssh.core.CoreConstants.NettyConstants.DISCOVERY_PAYLOAD_RESPONSE;
@@ -73,15 +82,40 @@ public class UDPDiscoveryServer extends AbstractComponent {
      * Use {@link ChannelFuture#sync()} to wait for client startup.
      */
     private ChannelFuture channel;
+    /**
+     * Signed responses for each address and port a Client should connect to.
+     */
+    private final Map<InetSocketAddress, byte[]> responseCache = new ConcurrentHashMap<>();
+    /**
+     * The key the responses are signed with, loaded on startup and by {@link #invalidateResponseCache()}, as the
+     * KeyStore returns a new object on every lookup.
+     */
+    private volatile PrivateKey privateKey;
+    /**
+     * Limits the number of responses sent to a single address, created on startup.
+     */
+    private LoadingCache<InetAddress, TokenBucket> senderRateLimits;
 
     @Override
     public void init(Container container) {
         super.init(container);
+        privateKey = requireComponent(KeyStoreController.KEY).getOwnPrivateKey();
+
+        final int requestsPerMinute = requireComponent(MasterConfiguration.KEY).getDiscoveryRequestsPerMinute();
+        senderRateLimits = CacheBuilder.newBuilder()
+                .maximumSize(1024)
+                .expireAfterAccess(1, TimeUnit.MINUTES)
+                .build(new CacheLoader<InetAddress, TokenBucket>() {
+                    @Override
+                    public TokenBucket load(InetAddress key) {
+                        return new TokenBucket(Math.max(1, requestsPerMinute / 4), requestsPerMinute, 1, TimeUnit.MINUTES);
+                    }
+                });
 
         // Setup UDP Channel
         Bootstrap b = new Bootstrap()
                 .channel(NioDatagramChannel.class)
-                .group(requireComponent(ExecutionServiceComponent.KEY))
+                .group(requireComponent(ServerExecutorGroups.KEY).getBossGroup())
                 .handler(new RequestHandler())
                 .option(ChannelOption.SO_BROADCAST, true);
         channel = b.bind(CoreConstants.NettyConstants.DISCOVERY_SERVER_PORT);
@@ -97,23 +131,44 @@ public class UDPDiscoveryServer extends AbstractComponent {
 
     /**
      * Send a response with the ConnectInformation of this Master to the requesting Client.
+     * The signed response only depends on the address the request was received on and the port of the server,
+     * so it is built and signed once and then reused for all following requests.
      *
      * @param request the request sent from a {@link Client}
      */
     private void sendDiscoveryResponse(DatagramPacket request) {
-        final ByteBuf buffer = channel.channel().alloc().heapBuffer();
-
-        // gather information
-        final byte[] header = DISCOVERY_PAYLOAD_RESPONSE.getBytes();
-        final String addressString = request.recipient().getAddress().getHostAddress();
-        final byte[] address = addressString.getBytes();
         final InetSocketAddress serverAddress = requireComponent(Server.KEY).getAddress();
         if (serverAddress == null) {
             logger.warn("Could not respond to UDP discovery request as Server is not started yet");
             return;
         }
-        final int port = serverAddress.getPort();
-        logger.info("sendDiscoveryResponse with connection data " + addressString + ":" + port + " to " + request.sender());
+        final InetSocketAddress connectAddress = new InetSocketAddress(request.recipient().getAddress(), serverAddress.getPort());
+        byte[] cached = responseCache.get(connectAddress);
+        if (cached == null) {
+            try {
+                cached = buildDiscoveryResponse(connectAddress, privateKey);
+            } catch (GeneralSecurityException e) {
+                logger.warn("Could not send UDP discovery response", e);
+                return;
+            }
+            responseCache.put(connectAddress, cached);
+        }
+        logger.info("sendDiscoveryResponse with connection data " + connectAddress + " to " + request.sender());
+
+        final DatagramPacket response = new DatagramPacket(Unpooled.wrappedBuffer(cached), request.sender());
+        channel.channel().writeAndFlush(response);
+    }
+
+    /**
+     * Build and sign the response containing the address and port a Client should connect to.
+     */
+    private byte[] buildDiscoveryResponse(InetSocketAddress connectAddress, PrivateKey privateKey) throws GeneralSecurityException {
+        final ByteBuf buffer = Unpooled.buffer();
+
+        // gather information
+        final byte[] header = DISCOVERY_PAYLOAD_RESPONSE.getBytes();
+        final byte[] address = connectAddress.getAddress().getHostAddress().getBytes();
+        final int port = connectAddress.getPort();
 
         // write it to the buffer
         buffer.writeInt(header.length);
@@ -123,19 +178,32 @@ public class UDPDiscoveryServer extends AbstractComponent {
         buffer.writeInt(port);
 
         // and sign the data
-        try {
-            Signature signature = Signature.getInstance("ECDSA");
-            signature.initSign(requireComponent(KeyStoreController.KEY).getOwnPrivateKey());
-            signature.update(buffer.nioBuffer());
-            final byte[] sign = signature.sign();
-            buffer.writeInt(sign.length);
-            buffer.writeBytes(sign);
-        } catch (GeneralSecurityException e) {
-            logger.warn("Could not send UDP discovery response", e);
-        }
+        Signature signature = Signature.getInstance("ECDSA");
+        signature.initSign(privateKey);
+        signature.update(buffer.nioBuffer());
+        final byte[] sign = signature.sign();
+        buffer.writeInt(sign.length);
+        buffer.writeBytes(sign);
 
-        final DatagramPacket response = new DatagramPacket(buffer, request.sender());
-        channel.channel().writeAndFlush(response);
+        final byte[] response = new byte[buffer.readableBytes()];
+        buffer.readBytes(response);
+        return response;
+    }
+
+    /**
+     * Reload the key of this Master and drop all cached discovery responses.
+     * Must be called whenever the key of this Master or the address of the {@link Server} changes.
+     */
+    public void invalidateResponseCache() {
+        privateKey = requireComponent(KeyStoreController.KEY).getOwnPrivateKey();
+        responseCache.clear();
+    }
+
+    /**
+     * @return {@code true} if the sender of the request hasn't exceeded its rate of discovery requests
+     */
+    private boolean isWithinRateLimit(InetSocketAddress sender) {
+        return senderRateLimits.getUnchecked(sender.getAddress()).tryAcquire();
     }
 
     /**
@@ -147,6 +215,10 @@ public class UDPDiscoveryServer extends AbstractComponent {
         public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
             try {
                 final DatagramPacket request = (DatagramPacket) msg;
+                if (!isWithinRateLimit(request.sender())) {
+                    logger.debug("Discarding UDP packet from " + request.sender() + " that exceeded its rate limit");
+                    return;
+                }
                 final ByteBuf buffer = request.content();
                 buffer.markReaderIndex();
                 final String messageType = readString(buffer);
@@ -0,0 +1,116 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.network.broadcast;
+
+import de.unipassau.isl.evs.ssh.core.schedule.Scheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces bursts of requests for a broadcast into a single run.
+ * The broadcast runs once no further request was made for the quiet window, but at the latest
+ * the maximum delay after the first request that is still pending, so that clients never become too stale
+ * during a long burst.
+ *
+ * @author Team
+ */
+class CoalescedBroadcast {
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final Scheduler scheduler;
+    private final Runnable broadcast;
+    private final long quietWindowMillis;
+    private final long maxDelayMillis;
+
+    private ScheduledFuture<?> pending;
+    private long firstRequest;
+    private int generation = 0;
+
+    /**
+     * @param quietWindowMillis the time without further requests after which the broadcast runs, 0 to run it directly
+     * @param maxDelayMillis    the maximum time from the first request to the broadcast
+     */
+    CoalescedBroadcast(Scheduler scheduler, Runnable broadcast, long quietWindowMillis, long maxDelayMillis) {
+        this.scheduler = scheduler;
+        this.broadcast = broadcast;
+        this.quietWindowMillis = quietWindowMillis;
+        this.maxDelayMillis = Math.max(maxDelayMillis, quietWindowMillis);
+    }
+
+    /**
+     * Request the broadcast to run. All requests until it runs are served by a single run.
+     */
+    void request() {
+        if (quietWindowMillis <= 0) {
+            broadcast.run();
+            return;
+        }
+        synchronized (this) {
+            final long now = System.currentTimeMillis();
+            // if the pending run already started, it might have missed the change this request is about
+            if (pending == null || !pending.cancel(false)) {
+                firstRequest = now;
+            }
+            final long delay = Math.max(0, Math.min(quietWindowMillis, firstRequest + maxDelayMillis - now));
+            pending = scheduler.schedule(new Run(++generation), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Cancel a pending run without running the broadcast.
+     */
+    synchronized void cancel() {
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+
+    private class Run implements Runnable {
+        private final int runGeneration;
+
+        private Run(int runGeneration) {
+            this.runGeneration = runGeneration;
+        }
+
+        @Override
+        public void run() {
+            synchronized (CoalescedBroadcast.this) {
+                if (generation == runGeneration) {
+                    pending = null;
+                }
+            }
+            try {
+                broadcast.run();
+            } catch (RuntimeException e) {
+                logger.error("Broadcast failed", e);
+            }
+        }
+    }
+}
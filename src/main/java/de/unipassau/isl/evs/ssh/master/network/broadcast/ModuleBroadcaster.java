@@ -33,6 +33,7 @@ import java.util.List;
 
 import de.ncoder.typedmap.Key;
 import de.unipassau.isl.evs.ssh.core.container.AbstractComponent;
+import de.unipassau.isl.evs.ssh.core.container.Container;
 import de.unipassau.isl.evs.ssh.core.database.dto.Module;
 import de.unipassau.isl.evs.ssh.core.database.dto.Slave;
 import de.unipassau.isl.evs.ssh.core.messaging.Message;
@@ -40,8 +41,11 @@ import de.unipassau.isl.evs.ssh.core.messaging.OutgoingRouter;
 import de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys;
 import de.unipassau.isl.evs.ssh.core.messaging.payload.ModulesPayload;
 import de.unipassau.isl.evs.ssh.core.naming.DeviceID;
+import de.unipassau.isl.evs.ssh.core.schedule.Scheduler;
+import de.unipassau.isl.evs.ssh.master.MasterConfiguration;
 import de.unipassau.isl.evs.ssh.master.database.SlaveController;
 import de.unipassau.isl.evs.ssh.master.network.Server;
+import de.unipassau.isl.evs.ssh.master.network.ServerOutgoingRouter;
 
 /**
  * The ModuleBroadcaster class sends push messages to connected clients to update their information about connected
@@ -51,6 +55,25 @@ import de.unipassau.isl.evs.ssh.master.network.Server;
  */
 public class ModuleBroadcaster extends AbstractComponent {
     public static final Key<ModuleBroadcaster> KEY = new Key<>(ModuleBroadcaster.class);
+    private CoalescedBroadcast coalescedUpdate;
+
+    @Override
+    public void init(Container container) {
+        super.init(container);
+        final MasterConfiguration config = requireComponent(MasterConfiguration.KEY);
+        coalescedUpdate = new CoalescedBroadcast(requireComponent(Scheduler.KEY), new Runnable() {
+            @Override
+            public void run() {
+                updateAllClients();
+            }
+        }, config.getBroadcastQuietWindow(), config.getBroadcastMaxDelay());
+    }
+
+    @Override
+    public void destroy() {
+        coalescedUpdate.cancel();
+        super.destroy();
+    }
 
     private Message createUpdateMessage() {
         final SlaveController slaveController = requireComponent(SlaveController.KEY);
@@ -69,9 +92,17 @@ public class ModuleBroadcaster extends AbstractComponent {
      */
     public void updateAllClients() {
         final Iterable<DeviceID> connectedClients = requireComponent(Server.KEY).getActiveDevices();
-        for (DeviceID connectedClient : connectedClients) {
-            updateClient(connectedClient);
-        }
+        // query the database once for all clients
+        requireComponent(ServerOutgoingRouter.KEY).sendMessageToAll(connectedClients,
+                RoutingKeys.GLOBAL_MODULES_UPDATE, createUpdateMessage());
+    }
+
+    /**
+     * Request an update of all clients. Requests are coalesced, see {@link CoalescedBroadcast}, so that a burst of
+     * changes leads to a single broadcast.
+     */
+    public void scheduleUpdateAllClients() {
+        coalescedUpdate.request();
     }
 
     /**
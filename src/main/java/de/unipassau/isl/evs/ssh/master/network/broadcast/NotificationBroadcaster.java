@@ -26,20 +26,30 @@
 
 package de.unipassau.isl.evs.ssh.master.network.broadcast;
 
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
 import de.ncoder.typedmap.Key;
 import de.unipassau.isl.evs.ssh.core.container.AbstractComponent;
+import de.unipassau.isl.evs.ssh.core.container.Container;
 import de.unipassau.isl.evs.ssh.core.database.dto.UserDevice;
 import de.unipassau.isl.evs.ssh.core.messaging.Message;
-import de.unipassau.isl.evs.ssh.core.messaging.OutgoingRouter;
 import de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys;
 import de.unipassau.isl.evs.ssh.core.messaging.payload.NotificationPayload;
+import de.unipassau.isl.evs.ssh.core.naming.DeviceID;
+import de.unipassau.isl.evs.ssh.core.schedule.Scheduler;
+import de.unipassau.isl.evs.ssh.master.MasterConfiguration;
 import de.unipassau.isl.evs.ssh.master.database.PermissionController;
-import de.unipassau.isl.evs.ssh.master.handler.MasterUserLocationHandler;
+import de.unipassau.isl.evs.ssh.master.network.PresenceIndex;
+import de.unipassau.isl.evs.ssh.master.network.ServerOutgoingRouter;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Handles notification messages and generates messages for each target and passes them to the OutgoingRouter.
@@ -49,94 +59,106 @@ import java.util.List;
 public class NotificationBroadcaster extends AbstractComponent {
     public static final Key<NotificationBroadcaster> KEY = new Key<>(NotificationBroadcaster.class);
     private final Logger logger = LoggerFactory.getLogger(getClass());
+    private NotificationPolicy policy;
+    @Nullable
+    private NotificationDigest digest;
+
+    /**
+     * Notifications that only go to the users at home if at least one of them is at home.
+     */
+    private static final Set<NotificationPayload.NotificationType> LOCATION_AWARE_TYPES = EnumSet.of(
+            NotificationPayload.NotificationType.WEATHER_WARNING,
+            NotificationPayload.NotificationType.HUMIDITY_WARNING,
+            NotificationPayload.NotificationType.BRIGHTNESS_WARNING
+    );
+
+    @Override
+    public void init(Container container) {
+        super.init(container);
+        final MasterConfiguration config = requireComponent(MasterConfiguration.KEY);
+        policy = new NotificationPolicy(config);
+        final int digestInterval = config.getNotificationDigestInterval();
+        if (digestInterval > 0) {
+            digest = new NotificationDigest(requireComponent(Scheduler.KEY),
+                    requireComponent(ServerOutgoingRouter.KEY), digestInterval);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (digest != null) {
+            digest.cancel();
+            digest = null;
+        }
+        policy = null;
+        super.destroy();
+    }
 
     /**
      * Sends out a notification to all users that have the permission to receive that notification.
-     * If the notification is a WEATHER_WARNING or HUMIDITY_WARNING it first checks for users that
+     * If the notification is a WEATHER_WARNING, HUMIDITY_WARNING or BRIGHTNESS_WARNING it first checks for users that
      * are at home. If no one is at home, everyone with permission will receive the notification.
+     * Repeated notifications and notification storms are suppressed according to the {@link NotificationPolicy}.
+     * Low-priority notifications are delivered with the next {@link NotificationDigest} of each receiver.
      *
      * @param type of the notification e.g. WEATHER_WARNING
      * @param args data that should be displayed in the notification e.g. humidity
      */
     public void sendMessageToAllReceivers(NotificationPayload.NotificationType type, Serializable... args) {
+        if (!policy.admit(type, args)) {
+            return;
+        }
         logger.info("Sending notification of type " + type.toString());
         final List<UserDevice> allUserDevicesWithPermission = requireComponent(PermissionController.KEY)
                 .getAllUserDevicesWithPermission(type.getReceivePermission(), null);
-        NotificationPayload payload = new NotificationPayload(type, args);
-        Message messageToSend = new Message(payload);
-        boolean userAtHome;
-        /*This might give an error as we do not
-          know if the enums and DTOs have the same names*/
-        if (type.equals(NotificationPayload.NotificationType.WEATHER_WARNING)) {
-            /*If no one is at home everyone should get the WeatherWarning.
+        final Set<DeviceID> receivers = new HashSet<>(allUserDevicesWithPermission.size());
+        for (UserDevice userDevice : allUserDevicesWithPermission) {
+            receivers.add(userDevice.getUserDeviceID());
+        }
+
+        if (LOCATION_AWARE_TYPES.contains(type)) {
+            /*If no one is at home everyone should get the warning.
               If someone with permission is at home, only them should get a notification.*/
-            userAtHome = isSomeoneAtHome(allUserDevicesWithPermission);
-            if (userAtHome) {
-                sendToUsersAtHome(allUserDevicesWithPermission, messageToSend);
-            } else {
-                sendToUsers(allUserDevicesWithPermission, messageToSend);
+            final Set<DeviceID> receiversAtHome = getReceiversAtHome(receivers);
+            if (!receiversAtHome.isEmpty()) {
+                sendToUsers(receiversAtHome, type, args);
+                return;
             }
-        } else if (type.equals(NotificationPayload.NotificationType.HUMIDITY_WARNING)) {
-            userAtHome = isSomeoneAtHome(allUserDevicesWithPermission);
-            if (userAtHome) {
-                sendToUsersAtHome(allUserDevicesWithPermission, messageToSend);
-            } else {
-                sendToUsers(allUserDevicesWithPermission, messageToSend);
-            }
-        } else if (type.equals(NotificationPayload.NotificationType.BRIGHTNESS_WARNING)) {
-            userAtHome = isSomeoneAtHome(allUserDevicesWithPermission);
-            if (userAtHome) {
-                sendToUsersAtHome(allUserDevicesWithPermission, messageToSend);
-            } else {
-                sendToUsers(allUserDevicesWithPermission, messageToSend);
-            }
-        } else {
-            sendToUsers(allUserDevicesWithPermission, messageToSend);
         }
+        sendToUsers(receivers, type, args);
     }
 
     /**
-     * Searches for userDevices that are currently at home and have the permission to receive the
-     * notification. If the userDevice is connected locally it sends him the notification.
-     *
-     * @param allUserDevicesWithPermission to receive the notification
-     * @param messageToSend                content of the notification
+     * @return the number of notifications of the given type that were suppressed as duplicates or due to rate limits
      */
-    private void sendToUsersAtHome(List<UserDevice> allUserDevicesWithPermission, Message messageToSend) {
-        for (UserDevice userDevice : allUserDevicesWithPermission) {
-            if (requireComponent(MasterUserLocationHandler.KEY).isDeviceLocal(userDevice.getUserDeviceID())) {
-                requireComponent(OutgoingRouter.KEY).sendMessage(userDevice.getUserDeviceID(),
-                        RoutingKeys.APP_NOTIFICATION_RECEIVE, messageToSend);
-            }
-        }
-
+    public long getSuppressedCount(NotificationPayload.NotificationType type) {
+        return policy.getSuppressedCount(type);
     }
 
     /**
-     * Checks if at least one user, that has the permission to receive the notification, is at home.
+     * Searches for userDevices that are currently at home and have the permission to receive the notification.
      *
-     * @param allUserDevicesWithPermission to receive the notification
-     * @return true if someone is home, false if no one is home
+     * @param receivers all userDevices with the permission to receive the notification
+     * @return the receivers that are connected locally
      */
-    private boolean isSomeoneAtHome(List<UserDevice> allUserDevicesWithPermission) {
-        for (UserDevice userDevice : allUserDevicesWithPermission) {
-            if (requireComponent(MasterUserLocationHandler.KEY).isDeviceLocal(userDevice.getUserDeviceID())) {
-                return true;
-            }
-        }
-        return false;
+    private Set<DeviceID> getReceiversAtHome(Set<DeviceID> receivers) {
+        // usually only few devices are at home, so iterate those and look them up in the receivers
+        return ImmutableSet.copyOf(Sets.intersection(requireComponent(PresenceIndex.KEY).getLocalDevices(), receivers));
     }
 
     /**
-     * Sends out an notification to all userDevices with Permission to receive the notification.
+     * Sends out an notification to the given userDevices, or queues it for their next digest if it has a low priority.
      *
-     * @param allUserDevicesWithPermission to receive the notification
-     * @param messageToSend                content of the notification
+     * @param receivers of the notification
+     * @param type      of the notification
+     * @param args      data that should be displayed in the notification
      */
-    private void sendToUsers(List<UserDevice> allUserDevicesWithPermission, Message messageToSend) {
-        for (UserDevice userDevice : allUserDevicesWithPermission) {
-            requireComponent(OutgoingRouter.KEY).sendMessage(userDevice.getUserDeviceID(),
-                    RoutingKeys.APP_NOTIFICATION_RECEIVE, messageToSend);
+    private void sendToUsers(Set<DeviceID> receivers, NotificationPayload.NotificationType type, Serializable... args) {
+        if (digest != null && NotificationDigest.isLowPriority(type, args)) {
+            digest.add(receivers, type, args);
+        } else {
+            requireComponent(ServerOutgoingRouter.KEY).sendMessageToAll(receivers,
+                    RoutingKeys.APP_NOTIFICATION_RECEIVE, new Message(new NotificationPayload(type, args)));
         }
     }
 }
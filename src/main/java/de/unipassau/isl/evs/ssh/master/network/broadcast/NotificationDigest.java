@@ -0,0 +1,167 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.network.broadcast;
+
+import de.unipassau.isl.evs.ssh.core.messaging.Message;
+import de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.NotificationPayload;
+import de.unipassau.isl.evs.ssh.core.messaging.payload.NotificationPayload.NotificationType;
+import de.unipassau.isl.evs.ssh.core.naming.DeviceID;
+import de.unipassau.isl.evs.ssh.core.schedule.Scheduler;
+import de.unipassau.isl.evs.ssh.master.network.ServerOutgoingRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects low-priority notifications for each Device and delivers them together once per interval, so that a phone
+ * wakes its radio once per digest instead of once per notification.
+ * If a notification is queued again before the digest is delivered, only the latest one is sent. For measurements
+ * like the humidity this means only the latest value is delivered.
+ *
+ * @author Team
+ */
+class NotificationDigest {
+    /**
+     * Types for which only the latest notification is of interest, no matter its arguments
+     */
+    private static final Set<NotificationType> LATEST_ONLY_TYPES = EnumSet.of(
+            NotificationType.HUMIDITY_WARNING,
+            NotificationType.BRIGHTNESS_WARNING
+    );
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final ServerOutgoingRouter router;
+    private final Map<DeviceID, Map<List<Object>, Message>> pending = new HashMap<>();
+    private final ScheduledFuture<?> future;
+
+    NotificationDigest(Scheduler scheduler, ServerOutgoingRouter router, long intervalMillis) {
+        this.router = router;
+        future = scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flush();
+                } catch (RuntimeException e) {
+                    logger.error("Could not deliver notification digest", e);
+                }
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return {@code true} if notifications of the given type and arguments may be delayed until the next digest.
+     * These are the climate warnings, the holiday mode switching and recoveries reported by the system health check.
+     */
+    static boolean isLowPriority(NotificationType type, Serializable... args) {
+        switch (type) {
+            case HUMIDITY_WARNING:
+            case BRIGHTNESS_WARNING:
+            case HOLIDAY_MODE_SWITCHED_ON:
+            case HOLIDAY_MODE_SWITCHED_OFF:
+                return true;
+            case SYSTEM_HEALTH_WARNING:
+                // the first argument tells whether the module has an error
+                return args.length > 0 && Boolean.FALSE.equals(args[0]);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Queue a notification for the next digest of each of the receivers.
+     */
+    synchronized void add(Iterable<DeviceID> receivers, NotificationType type, Serializable... args) {
+        final List<Object> key = new ArrayList<>();
+        key.add(type);
+        if (!LATEST_ONLY_TYPES.contains(type)) {
+            key.addAll(Arrays.asList(args));
+        }
+        final Message message = new Message(new NotificationPayload(type, args));
+        for (DeviceID receiver : receivers) {
+            Map<List<Object>, Message> queue = pending.get(receiver);
+            if (queue == null) {
+                queue = new LinkedHashMap<>();
+                pending.put(receiver, queue);
+            }
+            // re-insert so that the updated notification is sent in the order of the latest update
+            queue.remove(key);
+            queue.put(key, message);
+        }
+    }
+
+    /**
+     * Deliver the digests of all Devices. Devices that are not connected anymore don't receive their digest.
+     */
+    void flush() {
+        final Map<DeviceID, Map<List<Object>, Message>> digests;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            digests = new HashMap<>(pending);
+            pending.clear();
+        }
+        for (Map.Entry<DeviceID, Map<List<Object>, Message>> entry : digests.entrySet()) {
+            final DeviceID receiver = entry.getKey();
+            if (!router.isConnected(receiver)) {
+                logger.debug("Dropping notification digest of " + receiver + ", device is not connected");
+                continue;
+            }
+            // write all notifications of the digest first, so that they leave in as few packets as possible
+            router.startBatch();
+            try {
+                for (Message message : entry.getValue().values()) {
+                    router.sendMessage(receiver, RoutingKeys.APP_NOTIFICATION_RECEIVE, message);
+                }
+            } finally {
+                router.flushBatch();
+            }
+        }
+    }
+
+    /**
+     * Stop delivering digests, pending notifications are discarded.
+     */
+    void cancel() {
+        future.cancel(false);
+        synchronized (this) {
+            pending.clear();
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.network.broadcast;
+
+import de.unipassau.isl.evs.ssh.core.messaging.payload.NotificationPayload.NotificationType;
+import de.unipassau.isl.evs.ssh.master.MasterConfiguration;
+import de.unipassau.isl.evs.ssh.master.network.TokenBucket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides whether a notification is sent, so that flapping sensors can't flood the network and the phones.
+ * Each {@link NotificationType} has its own rule consisting of a deduplication window, during which repetitions
+ * of a notification are dropped, and a token bucket limiting the overall rate of the type.
+ * Repetitions are either any notification of the same type or only those with equal arguments.
+ * Notifications reporting the state of a subject, like the health of a module, are deduplicated per subject instead:
+ * a repetition of the last reported state is dropped, while a change of the state is always a new notification.
+ * All values can be configured in the Notification section of the {@link MasterConfiguration}.
+ *
+ * @author Team
+ */
+class NotificationPolicy {
+    private static final int DEFAULT_RATE_PER_MINUTE = 10;
+    private static final int DEFAULT_BURST = 5;
+    /**
+     * Number of remembered argument combinations per type after which outdated ones are purged
+     */
+    private static final int PURGE_THRESHOLD = 64;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final Map<NotificationType, Rule> rules = new EnumMap<>(NotificationType.class);
+
+    NotificationPolicy(MasterConfiguration config) {
+        for (NotificationType type : NotificationType.values()) {
+            final int dedupWindow = config.getNotificationDedupWindow(type, getDefaultDedupWindow(type));
+            final boolean byArguments = config.isNotificationDedupByArguments(type, type == NotificationType.SYSTEM_HEALTH_WARNING);
+            final int ratePerMinute = config.getNotificationRatePerMinute(type, DEFAULT_RATE_PER_MINUTE);
+            final int burst = config.getNotificationBurst(type, DEFAULT_BURST);
+            final TokenBucket bucket = ratePerMinute > 0
+                    ? new TokenBucket(Math.max(burst, 1), ratePerMinute, 1, TimeUnit.MINUTES) : null;
+            rules.put(type, new Rule(dedupWindow, byArguments, getSubjectArgument(type), bucket));
+        }
+    }
+
+    /**
+     * @return the index of the argument naming the subject whose state is reported by notifications of the given
+     * type, or -1 if the notifications don't report a state
+     */
+    private static int getSubjectArgument(NotificationType type) {
+        switch (type) {
+            case SYSTEM_HEALTH_WARNING:
+                // (boolean hasError, String moduleName)
+                return 1;
+            default:
+                return -1;
+        }
+    }
+
+    private static int getDefaultDedupWindow(NotificationType type) {
+        switch (type) {
+            case HUMIDITY_WARNING:
+            case BRIGHTNESS_WARNING:
+                return (int) TimeUnit.MINUTES.toMillis(5);
+            case SYSTEM_HEALTH_WARNING:
+                return (int) TimeUnit.MINUTES.toMillis(10);
+            case WEATHER_SERVICE_FAILED:
+                return (int) TimeUnit.MINUTES.toMillis(45);
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Check whether a notification may be sent and record it if so.
+     *
+     * @return {@code true} if the notification should be sent, {@code false} if it was suppressed
+     */
+    boolean admit(NotificationType type, Serializable... args) {
+        final Rule rule = rules.get(type);
+        final Rule.Decision decision = rule.admit(args);
+        if (decision == Rule.Decision.DUPLICATE) {
+            logger.debug("Suppressed duplicate notification " + type + " " + Arrays.toString(args));
+            return false;
+        } else if (decision == Rule.Decision.RATE_LIMITED) {
+            logger.info("Suppressed notification " + type + " " + Arrays.toString(args) + ", rate limit exceeded");
+            return false;
+        }
+        final long suppressed = rule.takeSuppressedSinceLastSent();
+        if (suppressed > 0) {
+            logger.info("Sending notification " + type + " after suppressing " + suppressed + " notifications");
+        }
+        return true;
+    }
+
+    /**
+     * @return the total number of suppressed notifications of the given type
+     */
+    long getSuppressedCount(NotificationType type) {
+        return rules.get(type).getSuppressedCount();
+    }
+
+    private static class Rule {
+        private enum Decision {
+            SEND, DUPLICATE, RATE_LIMITED
+        }
+
+        private final long dedupWindow;
+        private final boolean byArguments;
+        private final int subjectArgument;
+        private final TokenBucket bucket;
+        private final Map<List<Serializable>, Sent> lastSent = new HashMap<>();
+        private long suppressedCount = 0;
+        private long suppressedSinceLastSent = 0;
+
+        private Rule(long dedupWindow, boolean byArguments, int subjectArgument, TokenBucket bucket) {
+            this.dedupWindow = dedupWindow;
+            this.byArguments = byArguments;
+            this.subjectArgument = subjectArgument;
+            this.bucket = bucket;
+        }
+
+        private synchronized Decision admit(Serializable[] args) {
+            final long now = System.currentTimeMillis();
+            final List<Serializable> state = byArguments ? Arrays.asList(args) : Collections.<Serializable>emptyList();
+            final List<Serializable> key = byArguments && subjectArgument >= 0 && subjectArgument < args.length
+                    ? Collections.singletonList(args[subjectArgument]) : state;
+            if (dedupWindow > 0) {
+                // a notification with a different state than the last one sent for its subject is never a duplicate
+                final Sent last = lastSent.get(key);
+                if (last != null && now - last.time < dedupWindow && last.state.equals(state)) {
+                    suppress();
+                    return Decision.DUPLICATE;
+                }
+            }
+            if (bucket != null && !bucket.tryAcquire()) {
+                suppress();
+                return Decision.RATE_LIMITED;
+            }
+            if (dedupWindow > 0) {
+                if (lastSent.size() >= PURGE_THRESHOLD) {
+                    purge(now);
+                }
+                lastSent.put(key, new Sent(now, state));
+            }
+            return Decision.SEND;
+        }
+
+        private void suppress() {
+            suppressedCount++;
+            suppressedSinceLastSent++;
+        }
+
+        private void purge(long now) {
+            final Iterator<Sent> it = lastSent.values().iterator();
+            while (it.hasNext()) {
+                if (now - it.next().time >= dedupWindow) {
+                    it.remove();
+                }
+            }
+        }
+
+        private synchronized long takeSuppressedSinceLastSent() {
+            final long suppressed = suppressedSinceLastSent;
+            suppressedSinceLastSent = 0;
+            return suppressed;
+        }
+
+        private synchronized long getSuppressedCount() {
+            return suppressedCount;
+        }
+
+        private static class Sent {
+            private final long time;
+            private final List<Serializable> state;
+
+            private Sent(long time, List<Serializable> state) {
+                this.time = time;
+                this.state = state;
+            }
+        }
+    }
+}
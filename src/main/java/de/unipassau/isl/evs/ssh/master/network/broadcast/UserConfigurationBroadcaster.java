@@ -26,97 +26,206 @@
 
 package de.unipassau.isl.evs.ssh.master.network.broadcast;
 
-import com.google.common.base.Function;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ListMultimap;
-import com.google.common.collect.Multimaps;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import de.ncoder.typedmap.Key;
 import de.unipassau.isl.evs.ssh.core.container.AbstractComponent;
+import de.unipassau.isl.evs.ssh.core.container.Container;
 import de.unipassau.isl.evs.ssh.core.database.dto.Group;
 import de.unipassau.isl.evs.ssh.core.database.dto.PermissionDTO;
+import de.unipassau.isl.evs.ssh.core.database.dto.Slave;
 import de.unipassau.isl.evs.ssh.core.database.dto.UserDevice;
 import de.unipassau.isl.evs.ssh.core.messaging.Message;
 import de.unipassau.isl.evs.ssh.core.messaging.OutgoingRouter;
 import de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys;
 import de.unipassau.isl.evs.ssh.core.messaging.payload.UserDeviceInformationPayload;
 import de.unipassau.isl.evs.ssh.core.naming.DeviceID;
+import de.unipassau.isl.evs.ssh.core.schedule.Scheduler;
+import de.unipassau.isl.evs.ssh.master.MasterConfiguration;
+import de.unipassau.isl.evs.ssh.master.database.DatabaseChangeListener;
+import de.unipassau.isl.evs.ssh.master.database.DatabaseConnector;
 import de.unipassau.isl.evs.ssh.master.database.PermissionController;
 import de.unipassau.isl.evs.ssh.master.database.SlaveController;
 import de.unipassau.isl.evs.ssh.master.database.UserManagementController;
 import de.unipassau.isl.evs.ssh.master.network.Server;
+import de.unipassau.isl.evs.ssh.master.network.ServerOutgoingRouter;
+
+import static de.unipassau.isl.evs.ssh.master.database.generated.tables.Holidaylog.HOLIDAYLOG;
 
 /**
  * The ModuleBroadcaster class sends push messages to connected clients to update their information about users and
  * groups.
+ * <p>
+ * The UserDeviceInformationPayload is cached behind a configuration version, which is incremented by every change
+ * written to the database except for the holiday log. The payload is only rebuilt once the version changed, and
+ * {@link #updateAllClients()} only sends it to clients that didn't already receive the current version.
  *
  * @author Wolfgang Popp.
  */
 public class UserConfigurationBroadcaster extends AbstractComponent {
     public static final Key<UserConfigurationBroadcaster> KEY = new Key<>(UserConfigurationBroadcaster.class);
 
+    private static final String HOLIDAY_LOG_TABLE = "\"" + HOLIDAYLOG.getName() + "\"";
+
+    private final AtomicLong configurationVersion = new AtomicLong();
+    private final ConcurrentMap<DeviceID, Long> sentVersions = new ConcurrentHashMap<>();
+    private final DatabaseChangeListener changeListener = new DatabaseChangeListener() {
+        @Override
+        public void onStatementsCommitted(List<String> statements) {
+            for (String statement : statements) {
+                if (!statement.contains(HOLIDAY_LOG_TABLE)) {
+                    configurationVersion.incrementAndGet();
+                    return;
+                }
+            }
+        }
+    };
+    private UserDeviceInformationPayload cachedPayload;
+    private long cachedVersion = -1;
+    private CoalescedBroadcast coalescedUpdate;
+
+    @Override
+    public void init(Container container) {
+        super.init(container);
+        final MasterConfiguration config = requireComponent(MasterConfiguration.KEY);
+        coalescedUpdate = new CoalescedBroadcast(requireComponent(Scheduler.KEY), new Runnable() {
+            @Override
+            public void run() {
+                updateAllClients();
+            }
+        }, config.getBroadcastQuietWindow(), config.getBroadcastMaxDelay());
+        requireComponent(DatabaseConnector.KEY).addChangeListener(changeListener);
+    }
+
+    @Override
+    public void destroy() {
+        coalescedUpdate.cancel();
+        final DatabaseConnector databaseConnector = getComponent(DatabaseConnector.KEY);
+        if (databaseConnector != null) {
+            databaseConnector.removeChangeListener(changeListener);
+        }
+        super.destroy();
+    }
 
     /**
-     * Sends a message with a UserDeviceInformationPayload to each connected client.
+     * Sends a message with a UserDeviceInformationPayload to each connected client that doesn't have
+     * the current version yet.
      */
     public void updateAllClients() {
-        final Iterable<DeviceID> connectedClients = requireComponent(Server.KEY).getActiveDevices();
+        final long version = configurationVersion.get();
+        final Set<DeviceID> slaveIDs = getSlaveIDs();
+        final List<DeviceID> connectedClients = new ArrayList<>();
+        for (DeviceID connectedClient : requireComponent(Server.KEY).getActiveDevices()) {
+            final Long sentVersion = sentVersions.get(connectedClient);
+            if ((sentVersion == null || sentVersion < version) && !slaveIDs.contains(connectedClient)) {
+                connectedClients.add(connectedClient);
+            }
+        }
+        if (connectedClients.isEmpty()) {
+            return;
+        }
+        final Message message = new Message(getUserDeviceInformationPayload());
+        requireComponent(ServerOutgoingRouter.KEY).sendMessageToAll(connectedClients,
+                RoutingKeys.APP_USERINFO_UPDATE, message);
         for (DeviceID connectedClient : connectedClients) {
-            updateClient(connectedClient);
+            sentVersions.put(connectedClient, version);
         }
     }
 
+    /**
+     * Request an update of all clients. Requests are coalesced, see {@link CoalescedBroadcast}, so that a burst of
+     * changes leads to a single broadcast.
+     */
+    public void scheduleUpdateAllClients() {
+        coalescedUpdate.request();
+    }
+
     /**
      * Sends a message with a UserDeviceInformationPayload to the given client.
      *
      * @param id the id of the client that will receive the message
      */
     public void updateClient(DeviceID id) {
-        final Message message = new Message(generateUserDeviceInformationPayload());
         if (!isSlave(id)) {
+            final long version = configurationVersion.get();
+            final Message message = new Message(getUserDeviceInformationPayload());
             requireComponent(OutgoingRouter.KEY).sendMessage(id, RoutingKeys.APP_USERINFO_UPDATE, message);
+            sentVersions.put(id, version);
         }
     }
 
+    /**
+     * @return the version of the user configuration, which is incremented whenever the database is changed
+     */
+    public long getConfigurationVersion() {
+        return configurationVersion.get();
+    }
+
     private boolean isSlave(DeviceID id) {
         return requireComponent(SlaveController.KEY).getSlave(id) != null;
     }
 
+    /**
+     * @return the IDs of all Slaves, loaded with a single query instead of one per connected device
+     */
+    private Set<DeviceID> getSlaveIDs() {
+        final Set<DeviceID> slaveIDs = new HashSet<>();
+        for (Slave slave : requireComponent(SlaveController.KEY).getSlaves()) {
+            slaveIDs.add(slave.getSlaveID());
+        }
+        return slaveIDs;
+    }
+
+    /**
+     * @return the payload for the current configuration version, only built if the version changed
+     */
+    private synchronized UserDeviceInformationPayload getUserDeviceInformationPayload() {
+        // read the version before querying, so that concurrent changes lead to a rebuild next time
+        final long version = configurationVersion.get();
+        if (cachedPayload == null || cachedVersion != version) {
+            cachedPayload = generateUserDeviceInformationPayload();
+            cachedVersion = version;
+        }
+        return cachedPayload;
+    }
+
     private UserDeviceInformationPayload generateUserDeviceInformationPayload() {
         final PermissionController permissionController = requireComponent(PermissionController.KEY);
-        final List<Group> groups;
-        final List<UserDevice> userDevices;
-        final List<String> templates;
-        final List<PermissionDTO> permissions;
-        groups = requireComponent(UserManagementController.KEY).getGroups();
-        userDevices = requireComponent(UserManagementController.KEY).getUserDevices();
-        permissions = requireComponent(PermissionController.KEY).getPermissions();
-        templates = requireComponent(PermissionController.KEY).getTemplates();
-
-        ImmutableListMultimap<Group, UserDevice> groupDeviceMapping = Multimaps.index(userDevices,
-                new Function<UserDevice, Group>() {
-                    @Override
-                    public Group apply(UserDevice input) {
-                        for (Group group : groups) {
-                            if (group.getName().equals(input.getInGroup())) {
-                                return group;
-                            }
-                        }
-                        return null;
-                    }
-                });
-
-        ListMultimap<UserDevice, PermissionDTO> userHasPermissions = ArrayListMultimap.create();
+        final UserManagementController userManagementController = requireComponent(UserManagementController.KEY);
+        final List<Group> groups = userManagementController.getGroups();
+        final List<UserDevice> userDevices = userManagementController.getUserDevices();
+        final List<PermissionDTO> permissions = permissionController.getPermissions();
+        final List<String> templates = permissionController.getTemplates();
+        final ListMultimap<DeviceID, PermissionDTO> permissionsOfDevices =
+                permissionController.getPermissionsOfAllUserDevices();
+
+        final Map<String, Group> groupsByName = new HashMap<>();
+        for (Group group : groups) {
+            groupsByName.put(group.getName(), group);
+        }
+
+        final ImmutableListMultimap.Builder<Group, UserDevice> groupDeviceMapping = ImmutableListMultimap.builder();
+        final ListMultimap<UserDevice, PermissionDTO> userHasPermissions = ArrayListMultimap.create();
         for (UserDevice userDevice : userDevices) {
-            userHasPermissions.putAll(userDevice, permissionController.getPermissionsOfUserDevice(userDevice.getUserDeviceID()));
+            groupDeviceMapping.put(groupsByName.get(userDevice.getInGroup()), userDevice);
+            userHasPermissions.putAll(userDevice, permissionsOfDevices.get(userDevice.getUserDeviceID()));
         }
 
         return new UserDeviceInformationPayload(
                 userHasPermissions,
-                groupDeviceMapping,
+                groupDeviceMapping.build(),
                 permissions,
                 groups,
                 templates
@@ -0,0 +1,156 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.network.compression;
+
+import io.netty.buffer.ByteBuf;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The algorithms that can be used for compressing serialized messages.
+ * The {@link #getId() id} of an algorithm is written to the header of each compressed frame and must never change.
+ *
+ * @author Team
+ */
+public enum CompressionAlgorithm {
+    /**
+     * Data is stored without compression.
+     */
+    NONE(0) {
+        @Override
+        public void compress(ByteBuf in, ByteBuf out, int level) {
+            out.writeBytes(in);
+        }
+
+        @Override
+        public void decompress(ByteBuf in, ByteBuf out, int length) throws DataFormatException {
+            if (in.readableBytes() != length) {
+                throw new DataFormatException("Stored frame has length " + in.readableBytes() + ", expected " + length);
+            }
+            out.writeBytes(in);
+        }
+    },
+    /**
+     * Data is compressed using the zlib deflate algorithm.
+     */
+    DEFLATE(1) {
+        @Override
+        public void compress(ByteBuf in, ByteBuf out, int level) {
+            final byte[] input = new byte[in.readableBytes()];
+            in.readBytes(input);
+            final Deflater deflater = new Deflater(level);
+            try {
+                deflater.setInput(input);
+                deflater.finish();
+                final byte[] buffer = new byte[BUFFER_SIZE];
+                while (!deflater.finished()) {
+                    final int count = deflater.deflate(buffer);
+                    out.writeBytes(buffer, 0, count);
+                }
+            } finally {
+                deflater.end();
+            }
+        }
+
+        @Override
+        public void decompress(ByteBuf in, ByteBuf out, int length) throws DataFormatException {
+            final byte[] input = new byte[in.readableBytes()];
+            in.readBytes(input);
+            final Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(input);
+                final byte[] output = new byte[length];
+                int offset = 0;
+                while (offset < length && !inflater.finished()) {
+                    final int count = inflater.inflate(output, offset, length - offset);
+                    if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    offset += count;
+                }
+                if (offset != length || !inflater.finished()) {
+                    throw new DataFormatException("Inflated frame doesn't have the announced length of " + length);
+                }
+                out.writeBytes(output);
+            } finally {
+                inflater.end();
+            }
+        }
+    };
+
+    private static final int BUFFER_SIZE = 4096;
+
+    private final int id;
+
+    CompressionAlgorithm(int id) {
+        this.id = id;
+    }
+
+    /**
+     * @return the id of this algorithm as written to the header of a compressed frame
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Compress all readable bytes of {@code in} and write the result to {@code out}.
+     *
+     * @param level the compression level, ignored by algorithms that don't support different levels
+     */
+    public abstract void compress(ByteBuf in, ByteBuf out, int level);
+
+    /**
+     * Decompress all readable bytes of {@code in} and write the result to {@code out}.
+     *
+     * @param length the length of the decompressed data, as announced in the frame header
+     * @throws DataFormatException if the data is malformed or doesn't have the announced length
+     */
+    public abstract void decompress(ByteBuf in, ByteBuf out, int length) throws DataFormatException;
+
+    /**
+     * @return the algorithm with the given id, or {@code null} if no such algorithm exists
+     */
+    public static CompressionAlgorithm fromId(int id) {
+        for (CompressionAlgorithm algorithm : values()) {
+            if (algorithm.id == id) {
+                return algorithm;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the algorithm with the given name (case insensitive)
+     * @throws IllegalArgumentException if no such algorithm exists
+     */
+    public static CompressionAlgorithm fromName(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+}
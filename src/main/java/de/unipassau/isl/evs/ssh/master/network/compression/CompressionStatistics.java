@@ -0,0 +1,110 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.network.compression;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts how much data was compressed and decompressed by all connections and how much CPU time was spent on it.
+ *
+ * @author Team
+ */
+public class CompressionStatistics {
+    private final AtomicLong compressedFrames = new AtomicLong();
+    private final AtomicLong uncompressedBytes = new AtomicLong();
+    private final AtomicLong compressedBytes = new AtomicLong();
+    private final AtomicLong compressionNanos = new AtomicLong();
+    private final AtomicLong incompressibleFrames = new AtomicLong();
+    private final AtomicLong decompressedFrames = new AtomicLong();
+    private final AtomicLong decompressionNanos = new AtomicLong();
+
+    void recordCompression(int uncompressedLength, int compressedLength, long nanos) {
+        compressedFrames.incrementAndGet();
+        uncompressedBytes.addAndGet(uncompressedLength);
+        compressedBytes.addAndGet(compressedLength);
+        compressionNanos.addAndGet(nanos);
+    }
+
+    void recordIncompressible(long nanos) {
+        incompressibleFrames.incrementAndGet();
+        compressionNanos.addAndGet(nanos);
+    }
+
+    void recordDecompression(long nanos) {
+        decompressedFrames.incrementAndGet();
+        decompressionNanos.addAndGet(nanos);
+    }
+
+    public long getCompressedFrames() {
+        return compressedFrames.get();
+    }
+
+    public long getIncompressibleFrames() {
+        return incompressibleFrames.get();
+    }
+
+    public long getDecompressedFrames() {
+        return decompressedFrames.get();
+    }
+
+    public long getUncompressedBytes() {
+        return uncompressedBytes.get();
+    }
+
+    public long getCompressedBytes() {
+        return compressedBytes.get();
+    }
+
+    /**
+     * @return the size of all compressed frames divided by their original size, or 1 if nothing was compressed yet
+     */
+    public double getCompressionRatio() {
+        final long uncompressed = uncompressedBytes.get();
+        return uncompressed == 0 ? 1 : (double) compressedBytes.get() / uncompressed;
+    }
+
+    public long getCompressionTime(TimeUnit unit) {
+        return unit.convert(compressionNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getDecompressionTime(TimeUnit unit) {
+        return unit.convert(decompressionNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionStatistics{" +
+                "compressedFrames=" + getCompressedFrames() +
+                ", incompressibleFrames=" + getIncompressibleFrames() +
+                ", decompressedFrames=" + getDecompressedFrames() +
+                ", ratio=" + getCompressionRatio() +
+                ", compressionTime=" + getCompressionTime(TimeUnit.MILLISECONDS) + "ms" +
+                ", decompressionTime=" + getDecompressionTime(TimeUnit.MILLISECONDS) + "ms" +
+                '}';
+    }
+}
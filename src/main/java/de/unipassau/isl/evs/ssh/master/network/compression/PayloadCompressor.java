@@ -0,0 +1,141 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.network.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageEncoder;
+import io.netty.util.AttributeKey;
+
+import java.util.List;
+
+/**
+ * Compresses the frames written by the {@link io.netty.handler.codec.serialization.ObjectEncoder} before they are
+ * signed and encrypted.
+ * <p>
+ * Compression is only used if it was negotiated with the peer. The first frame sent on every connection, usually the
+ * Hello, carries a header (starting with {@link #MAGIC}) that advertises the algorithm this side supports. The
+ * {@link PayloadDecompressor} of the peer reads this advertisement and stores the negotiated algorithm in
+ * {@link #ATTR_NEGOTIATED}: the common algorithm if both sides support the same one, {@link CompressionAlgorithm#NONE}
+ * otherwise. As both sides advertise on their first frame, compression is negotiated during the handshake.
+ * Frames are only compressed once the advertisement of the peer has been received.
+ * <p>
+ * A frame with a header has the format
+ * {@code [MAGIC][encoding algorithm id][supported algorithm id][int length][int compressed length][data]}.
+ * The encoding algorithm describes how the data of this frame is stored, while the supported algorithm is the
+ * advertisement of the sender. An uncompressed frame has the format {@code [int length][data]}. As frames are much
+ * smaller than 16MB, the first byte of an uncompressed frame is always 0 and can't be confused with {@link #MAGIC}.
+ *
+ * @author Team
+ */
+@ChannelHandler.Sharable
+public class PayloadCompressor extends MessageToMessageEncoder<ByteBuf> {
+    /**
+     * The first byte of every frame with a compression header.
+     */
+    static final byte MAGIC = (byte) 0xC5;
+    /**
+     * The length of the compression header, consisting of the {@link #MAGIC}, the encoding algorithm id, the
+     * supported algorithm id, the decompressed length and the compressed length.
+     */
+    static final int HEADER_LENGTH = 1 + 1 + 1 + 4 + 4;
+    /**
+     * The maximum length of a frame, the same as the default maximum object size of the ObjectDecoder.
+     */
+    static final int MAX_FRAME_LENGTH = 1024 * 1024;
+    /**
+     * The algorithm negotiated with the peer, or {@code null} if the peer hasn't advertised its algorithm yet.
+     */
+    static final AttributeKey<CompressionAlgorithm> ATTR_NEGOTIATED =
+            AttributeKey.valueOf(PayloadCompressor.class, "NEGOTIATED");
+    private static final AttributeKey<Boolean> ATTR_ANNOUNCED =
+            AttributeKey.valueOf(PayloadCompressor.class, "ANNOUNCED");
+
+    private final CompressionAlgorithm supportedAlgorithm;
+    private final int threshold;
+    private final int level;
+    private final CompressionStatistics statistics;
+
+    /**
+     * @param supportedAlgorithm the algorithm advertised to the peer, {@link CompressionAlgorithm#NONE} to disable
+     *                           compression
+     * @param threshold          the minimum size of a frame before it is compressed
+     * @param level              the compression level passed to the {@link CompressionAlgorithm}
+     * @param statistics         the statistics to update with each compressed frame
+     */
+    public PayloadCompressor(CompressionAlgorithm supportedAlgorithm, int threshold, int level,
+                             CompressionStatistics statistics) {
+        this.supportedAlgorithm = supportedAlgorithm;
+        this.threshold = threshold;
+        this.level = level;
+        this.statistics = statistics;
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) throws Exception {
+        final boolean announce = ctx.channel().attr(ATTR_ANNOUNCED).setIfAbsent(Boolean.TRUE) == null;
+        final CompressionAlgorithm negotiated = ctx.channel().attr(ATTR_NEGOTIATED).get();
+        final boolean compress = negotiated != null && negotiated != CompressionAlgorithm.NONE
+                && msg.readableBytes() >= threshold;
+        if (!compress) {
+            out.add(announce ? encodeFrame(ctx, CompressionAlgorithm.NONE, msg) : msg.retain());
+            return;
+        }
+
+        final long start = System.nanoTime();
+        final int length = msg.readableBytes() - 4;
+        final ByteBuf frame = encodeFrame(ctx, negotiated, msg);
+        final int compressedLength = frame.readableBytes() - HEADER_LENGTH;
+        if (compressedLength < length) {
+            statistics.recordCompression(length, compressedLength, System.nanoTime() - start);
+            out.add(frame);
+        } else {
+            // compression didn't pay off, send the original frame
+            frame.release();
+            statistics.recordIncompressible(System.nanoTime() - start);
+            out.add(announce ? encodeFrame(ctx, CompressionAlgorithm.NONE, msg) : msg.retain());
+        }
+    }
+
+    /**
+     * @param msg the frame written by the ObjectEncoder, consisting of the length of the data and the data itself
+     * @return a new frame with a compression header containing the data encoded with the given algorithm
+     */
+    private ByteBuf encodeFrame(ChannelHandlerContext ctx, CompressionAlgorithm algorithm, ByteBuf msg) {
+        final int length = msg.readableBytes() - 4;
+        final ByteBuf frame = ctx.alloc().buffer(HEADER_LENGTH + length);
+        frame.writerIndex(HEADER_LENGTH);
+        algorithm.compress(msg.slice(msg.readerIndex() + 4, length), frame, level);
+        frame.setByte(0, MAGIC);
+        frame.setByte(1, algorithm.getId());
+        frame.setByte(2, supportedAlgorithm.getId());
+        frame.setInt(3, length);
+        frame.setInt(7, frame.writerIndex() - HEADER_LENGTH);
+        return frame;
+    }
+}
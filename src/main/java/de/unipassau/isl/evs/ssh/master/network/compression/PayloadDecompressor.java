@@ -0,0 +1,123 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.network.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+
+import java.util.List;
+import java.util.zip.DataFormatException;
+
+import static de.unipassau.isl.evs.ssh.master.network.compression.PayloadCompressor.ATTR_NEGOTIATED;
+import static de.unipassau.isl.evs.ssh.master.network.compression.PayloadCompressor.HEADER_LENGTH;
+import static de.unipassau.isl.evs.ssh.master.network.compression.PayloadCompressor.MAGIC;
+import static de.unipassau.isl.evs.ssh.master.network.compression.PayloadCompressor.MAX_FRAME_LENGTH;
+
+/**
+ * Reads compressed and uncompressed frames and passes them to the
+ * {@link io.netty.handler.codec.serialization.ObjectDecoder} in their uncompressed form.
+ * When the peer advertises its supported algorithm in the header of a frame, the compression algorithm is negotiated.
+ * See {@link PayloadCompressor} for the frame format.
+ *
+ * @author Team
+ */
+public class PayloadDecompressor extends ByteToMessageDecoder {
+    private final CompressionAlgorithm configuredAlgorithm;
+    private final CompressionStatistics statistics;
+
+    /**
+     * @param configuredAlgorithm the algorithm that will be used if the peer also supports it, must be the same as
+     *                            the one advertised by the {@link PayloadCompressor}
+     * @param statistics          the statistics to update with each decompressed frame
+     */
+    public PayloadDecompressor(CompressionAlgorithm configuredAlgorithm, CompressionStatistics statistics) {
+        this.configuredAlgorithm = configuredAlgorithm;
+        this.statistics = statistics;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        if (in.readableBytes() < 4) {
+            return;
+        }
+        final int start = in.readerIndex();
+        if (in.getByte(start) != MAGIC) {
+            // uncompressed frame from the ObjectEncoder
+            final int length = in.getInt(start);
+            checkLength(length);
+            if (in.readableBytes() >= 4 + length) {
+                out.add(in.readSlice(4 + length).retain());
+            }
+            return;
+        }
+
+        if (in.readableBytes() < HEADER_LENGTH) {
+            return;
+        }
+        final CompressionAlgorithm algorithm = CompressionAlgorithm.fromId(in.getByte(start + 1));
+        if (algorithm == null) {
+            throw new CorruptedFrameException("Unknown compression algorithm " + in.getByte(start + 1));
+        }
+        final int length = in.getInt(start + 3);
+        final int compressedLength = in.getInt(start + 7);
+        checkLength(length);
+        checkLength(compressedLength);
+        if (in.readableBytes() < HEADER_LENGTH + compressedLength) {
+            return;
+        }
+        // an unknown supported algorithm is no error, the peer may simply be newer than this side
+        final CompressionAlgorithm supported = CompressionAlgorithm.fromId(in.getByte(start + 2));
+        in.skipBytes(HEADER_LENGTH);
+
+        // The peer advertised its algorithm, compress outgoing frames if both sides support the same one
+        ctx.channel().attr(ATTR_NEGOTIATED).setIfAbsent(
+                supported == configuredAlgorithm ? configuredAlgorithm : CompressionAlgorithm.NONE);
+
+        final long startTime = System.nanoTime();
+        final ByteBuf frame = ctx.alloc().buffer(4 + length);
+        try {
+            frame.writeInt(length);
+            algorithm.decompress(in.readSlice(compressedLength), frame, length);
+        } catch (DataFormatException e) {
+            frame.release();
+            throw new CorruptedFrameException(e);
+        }
+        if (algorithm != CompressionAlgorithm.NONE) {
+            statistics.recordDecompression(System.nanoTime() - startTime);
+        }
+        out.add(frame);
+    }
+
+    private void checkLength(int length) {
+        if (length < 0 || length > MAX_FRAME_LENGTH) {
+            throw new TooLongFrameException("Illegal frame length " + length);
+        }
+    }
+}
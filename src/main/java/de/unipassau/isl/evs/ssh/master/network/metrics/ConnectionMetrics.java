@@ -0,0 +1,291 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.network.metrics;
+
+import de.ncoder.typedmap.Key;
+import de.unipassau.isl.evs.ssh.core.container.AbstractComponent;
+import de.unipassau.isl.evs.ssh.core.messaging.Message;
+import de.unipassau.isl.evs.ssh.core.naming.DeviceID;
+import de.unipassau.isl.evs.ssh.master.network.HandshakeAdmissionControl;
+import de.unipassau.isl.evs.ssh.master.network.MessagePriority;
+import de.unipassau.isl.evs.ssh.master.network.OutboundQueueHandler;
+import de.unipassau.isl.evs.ssh.master.network.Server;
+import de.unipassau.isl.evs.ssh.master.network.compression.CompressionStatistics;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerAdapter;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.AttributeKey;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects traffic, handshake and reconnect statistics of all connections to the {@link Server}, both per Device and
+ * aggregated over all Devices. The counters are fed by the {@link #getByteCounter() byte counting} and
+ * {@link #getMessageCounter() message counting} Handlers in every pipeline and by the ServerHandshakeHandler,
+ * so that querying them doesn't require iterating the open connections.
+ *
+ * @author Team
+ */
+public class ConnectionMetrics extends AbstractComponent {
+    public static final Key<ConnectionMetrics> KEY = new Key<>(ConnectionMetrics.class);
+
+    private static final AttributeKey<DeviceMetrics> ATTR_DEVICE_METRICS = AttributeKey.valueOf(ConnectionMetrics.class, "DEVICE_METRICS");
+
+    private final DeviceMetrics aggregate = new DeviceMetrics(null);
+    private final ConcurrentMap<DeviceID, DeviceMetrics> devices = new ConcurrentHashMap<>();
+    private final Histogram handshakeDurations = new Histogram();
+    private final ConcurrentMap<String, Histogram> stateDurations = new ConcurrentHashMap<>();
+
+    private final ByteCounter byteCounter = new ByteCounter();
+    private final MessageCounter messageCounter = new MessageCounter();
+
+    /**
+     * @return the Handler counting raw bytes, which must be the first Handler in the pipeline
+     */
+    public ChannelHandler getByteCounter() {
+        return byteCounter;
+    }
+
+    /**
+     * @return the Handler counting {@link Message.AddressedMessage}s, which must be placed after the deserialization
+     */
+    public ChannelHandler getMessageCounter() {
+        return messageCounter;
+    }
+
+    /**
+     * Record the time a connection spent in one state of the handshake.
+     *
+     * @param state the name of the state that was left
+     */
+    public void recordHandshakeState(String state, long duration, TimeUnit unit) {
+        Histogram histogram = stateDurations.get(state);
+        if (histogram == null) {
+            final Histogram newHistogram = new Histogram();
+            histogram = stateDurations.putIfAbsent(state, newHistogram);
+            if (histogram == null) {
+                histogram = newHistogram;
+            }
+        }
+        histogram.record(duration, unit);
+    }
+
+    /**
+     * Record a successful handshake and start counting the traffic of the channel for the given Device.
+     *
+     * @param duration the time from the opening of the connection to the end of the handshake
+     */
+    public void recordHandshakeSuccessful(Channel channel, DeviceID deviceID, long duration, TimeUnit unit) {
+        handshakeDurations.record(duration, unit);
+
+        final DeviceMetrics metrics = getOrCreate(deviceID);
+        metrics.connects.incrementAndGet();
+        metrics.lastConnected = System.currentTimeMillis();
+        aggregate.connects.incrementAndGet();
+        aggregate.lastConnected = metrics.lastConnected;
+        channel.attr(ATTR_DEVICE_METRICS).set(metrics);
+
+        channel.closeFuture().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                metrics.disconnects.incrementAndGet();
+                metrics.lastDisconnected = System.currentTimeMillis();
+                aggregate.disconnects.incrementAndGet();
+                aggregate.lastDisconnected = metrics.lastDisconnected;
+            }
+        });
+    }
+
+    private DeviceMetrics getOrCreate(DeviceID deviceID) {
+        DeviceMetrics metrics = devices.get(deviceID);
+        if (metrics == null) {
+            final DeviceMetrics newMetrics = new DeviceMetrics(deviceID);
+            metrics = devices.putIfAbsent(deviceID, newMetrics);
+            if (metrics == null) {
+                metrics = newMetrics;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * @return the metrics of the given Device, or {@code null} if the Device never completed a handshake
+     */
+    @Nullable
+    public DeviceMetrics getDeviceMetrics(DeviceID deviceID) {
+        return devices.get(deviceID);
+    }
+
+    /**
+     * @return an unmodifiable view of the metrics of all Devices that ever completed a handshake
+     */
+    public Map<DeviceID, DeviceMetrics> getAllDeviceMetrics() {
+        return Collections.unmodifiableMap(devices);
+    }
+
+    /**
+     * @return the metrics of all connections, including the traffic of unfinished handshakes
+     */
+    public DeviceMetrics getAggregateMetrics() {
+        return aggregate;
+    }
+
+    /**
+     * @return the time from opening a connection to the end of a successful handshake
+     */
+    public Histogram getHandshakeDurations() {
+        return handshakeDurations;
+    }
+
+    /**
+     * @return the time connections spent in each state of the handshake, by name of the state
+     */
+    public Map<String, Histogram> getHandshakeStateDurations() {
+        return Collections.unmodifiableMap(stateDurations);
+    }
+
+    /**
+     * @return the statistics of the {@link Server}'s compression, or {@code null} if the Server isn't running
+     */
+    @Nullable
+    public CompressionStatistics getCompressionStatistics() {
+        final Server server = getComponent(Server.KEY);
+        return server != null ? server.getCompressionStatistics() : null;
+    }
+
+    /**
+     * @return the admission and rejection counters of the {@link Server}, or {@code null} if the Server isn't running
+     */
+    @Nullable
+    public HandshakeAdmissionControl getAdmissionControl() {
+        final Server server = getComponent(Server.KEY);
+        return server != null ? server.getAdmissionControl() : null;
+    }
+
+    /**
+     * @return the number of outgoing messages per priority that are held back for the given Device,
+     * or {@code null} if the Device is not connected
+     */
+    @Nullable
+    public Map<MessagePriority, Integer> getOutboundQueueDepths(DeviceID deviceID) {
+        final Server server = getComponent(Server.KEY);
+        final Channel channel = server != null ? server.findChannel(deviceID) : null;
+        final OutboundQueueHandler queue = channel != null ? channel.pipeline().get(OutboundQueueHandler.class) : null;
+        if (queue == null) {
+            return null;
+        }
+        final Map<MessagePriority, Integer> depths = new EnumMap<>(MessagePriority.class);
+        for (MessagePriority priority : MessagePriority.values()) {
+            depths.put(priority, queue.getQueueDepth(priority));
+        }
+        return depths;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionMetrics{" +
+                "aggregate=" + aggregate +
+                ", handshakeDurations=" + handshakeDurations +
+                ", stateDurations=" + stateDurations +
+                ", compression=" + getCompressionStatistics() +
+                ", admission=" + getAdmissionControl() +
+                '}';
+    }
+
+    /**
+     * Counts the raw bytes sent and received on a connection.
+     */
+    @ChannelHandler.Sharable
+    private class ByteCounter extends ChannelHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            if (msg instanceof ByteBuf) {
+                final int bytes = ((ByteBuf) msg).readableBytes();
+                aggregate.bytesIn.addAndGet(bytes);
+                final DeviceMetrics metrics = ctx.channel().attr(ATTR_DEVICE_METRICS).get();
+                if (metrics != null) {
+                    metrics.bytesIn.addAndGet(bytes);
+                }
+            }
+            super.channelRead(ctx, msg);
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+            if (msg instanceof ByteBuf) {
+                final int bytes = ((ByteBuf) msg).readableBytes();
+                aggregate.bytesOut.addAndGet(bytes);
+                final DeviceMetrics metrics = ctx.channel().attr(ATTR_DEVICE_METRICS).get();
+                if (metrics != null) {
+                    metrics.bytesOut.addAndGet(bytes);
+                }
+            }
+            super.write(ctx, msg, promise);
+        }
+    }
+
+    /**
+     * Counts the messages sent and received on a connection.
+     */
+    @ChannelHandler.Sharable
+    private class MessageCounter extends ChannelHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            if (msg instanceof Message.AddressedMessage) {
+                aggregate.messagesIn.incrementAndGet();
+                final DeviceMetrics metrics = ctx.channel().attr(ATTR_DEVICE_METRICS).get();
+                if (metrics != null) {
+                    metrics.messagesIn.incrementAndGet();
+                }
+            }
+            super.channelRead(ctx, msg);
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+            if (msg instanceof Message.AddressedMessage) {
+                aggregate.messagesOut.incrementAndGet();
+                final DeviceMetrics metrics = ctx.channel().attr(ATTR_DEVICE_METRICS).get();
+                if (metrics != null) {
+                    metrics.messagesOut.incrementAndGet();
+                }
+            }
+            super.write(ctx, msg, promise);
+        }
+    }
+}
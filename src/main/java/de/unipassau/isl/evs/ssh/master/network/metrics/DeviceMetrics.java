@@ -0,0 +1,152 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.network.metrics;
+
+import de.unipassau.isl.evs.ssh.core.naming.DeviceID;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Traffic and connection counters of a single Device, or of all connections together.
+ *
+ * @author Team
+ */
+public class DeviceMetrics {
+    @Nullable
+    private final DeviceID deviceID;
+    private final long created = System.currentTimeMillis();
+
+    final AtomicLong bytesIn = new AtomicLong();
+    final AtomicLong bytesOut = new AtomicLong();
+    final AtomicLong messagesIn = new AtomicLong();
+    final AtomicLong messagesOut = new AtomicLong();
+    final AtomicLong connects = new AtomicLong();
+    final AtomicLong disconnects = new AtomicLong();
+    volatile long lastConnected;
+    volatile long lastDisconnected;
+
+    DeviceMetrics(@Nullable DeviceID deviceID) {
+        this.deviceID = deviceID;
+    }
+
+    /**
+     * @return the Device these metrics belong to, or {@code null} if these are the aggregated metrics of all Devices
+     */
+    @Nullable
+    public DeviceID getDeviceID() {
+        return deviceID;
+    }
+
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+
+    public long getBytesOut() {
+        return bytesOut.get();
+    }
+
+    public long getMessagesIn() {
+        return messagesIn.get();
+    }
+
+    public long getMessagesOut() {
+        return messagesOut.get();
+    }
+
+    /**
+     * @return the number of successful handshakes
+     */
+    public long getConnects() {
+        return connects.get();
+    }
+
+    public long getDisconnects() {
+        return disconnects.get();
+    }
+
+    /**
+     * @return the timestamp of the last successful handshake, or 0 if there was none
+     */
+    public long getLastConnected() {
+        return lastConnected;
+    }
+
+    /**
+     * @return the timestamp of the last closed connection, or 0 if there was none
+     */
+    public long getLastDisconnected() {
+        return lastDisconnected;
+    }
+
+    /**
+     * @return {@code true} if there are more successful handshakes than closed connections
+     */
+    public boolean isConnected() {
+        return getConnects() > getDisconnects();
+    }
+
+    /**
+     * @return the average number of messages received per second since these metrics were created
+     */
+    public double getMessagesInPerSecond() {
+        return getMessagesIn() / getSecondsSinceCreation();
+    }
+
+    /**
+     * @return the average number of messages sent per second since these metrics were created
+     */
+    public double getMessagesOutPerSecond() {
+        return getMessagesOut() / getSecondsSinceCreation();
+    }
+
+    /**
+     * @return the average number of reconnects, i.e. all connects apart from the first one, per hour
+     */
+    public double getReconnectsPerHour() {
+        final long reconnects = Math.max(0, getConnects() - 1);
+        return reconnects / (getSecondsSinceCreation() / TimeUnit.HOURS.toSeconds(1));
+    }
+
+    private double getSecondsSinceCreation() {
+        return Math.max(1, System.currentTimeMillis() - created) / 1000d;
+    }
+
+    @Override
+    public String toString() {
+        return "DeviceMetrics{" +
+                (deviceID != null ? deviceID : "all") +
+                ", bytesIn=" + getBytesIn() +
+                ", bytesOut=" + getBytesOut() +
+                ", messagesIn=" + getMessagesIn() +
+                ", messagesOut=" + getMessagesOut() +
+                ", connects=" + getConnects() +
+                ", disconnects=" + getDisconnects() +
+                '}';
+    }
+}
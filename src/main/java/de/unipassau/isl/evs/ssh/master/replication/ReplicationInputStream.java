@@ -0,0 +1,85 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.replication;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+
+/**
+ * An ObjectInputStream that only deserializes the classes that can be part of a {@link ReplicationMessage}.
+ *
+ * @author Team
+ */
+class ReplicationInputStream extends ObjectInputStream {
+    /**
+     * Classes directly contained in these packages, without sub packages.
+     */
+    private static final String[] ALLOWED_PACKAGES = {"java.lang.", "java.util."};
+    /**
+     * Classes in these packages or any of their sub packages.
+     */
+    private static final String ALLOWED_PACKAGE_TREE = "de.unipassau.isl.evs.ssh.";
+
+    ReplicationInputStream(InputStream in) throws IOException {
+        super(in);
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+        if (!isAllowed(desc.getName())) {
+            throw new InvalidClassException(desc.getName(), "Class is not allowed in replication messages");
+        }
+        return super.resolveClass(desc);
+    }
+
+    @Override
+    protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException {
+        throw new InvalidClassException("Proxy classes are not allowed in replication messages");
+    }
+
+    private static boolean isAllowed(String name) {
+        if (name.startsWith("[")) {
+            final String component = name.replaceFirst("^\\[+", "");
+            // primitive arrays have a one-letter component type, object arrays are named "[Lclass.Name;"
+            return component.length() == 1
+                    || component.startsWith("L") && component.endsWith(";")
+                    && isAllowed(component.substring(1, component.length() - 1));
+        }
+        if (name.startsWith(ALLOWED_PACKAGE_TREE)) {
+            return true;
+        }
+        for (String allowedPackage : ALLOWED_PACKAGES) {
+            if (name.startsWith(allowedPackage) && name.indexOf('.', allowedPackage.length()) < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.replication;
+
+import de.ncoder.typedmap.Key;
+import de.unipassau.isl.evs.ssh.core.container.AbstractComponent;
+import de.unipassau.isl.evs.ssh.core.container.Container;
+import de.unipassau.isl.evs.ssh.core.container.StartupException;
+import de.unipassau.isl.evs.ssh.core.naming.DeviceID;
+import de.unipassau.isl.evs.ssh.core.naming.NamingManager;
+import de.unipassau.isl.evs.ssh.core.sec.KeyStoreController;
+import de.unipassau.isl.evs.ssh.master.MasterConfiguration;
+import de.unipassau.isl.evs.ssh.master.database.DatabaseConnector;
+import de.unipassau.isl.evs.ssh.master.database.SlaveController;
+import de.unipassau.isl.evs.ssh.master.handler.MasterDoorHandler;
+import de.unipassau.isl.evs.ssh.master.handler.MasterRegisterDeviceHandler;
+import de.unipassau.isl.evs.ssh.master.network.PresenceIndex;
+import de.unipassau.isl.evs.ssh.master.network.Server;
+import de.unipassau.isl.evs.ssh.master.network.UDPDiscoveryServer;
+import de.unipassau.isl.evs.ssh.master.task.MasterHolidaySimulationPlannerHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.ServerSocket;
+import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps a standby Master process in sync with the primary Master, so that the standby can take over the listening
+ * ports if the primary fails.
+ * <p>
+ * The primary listens on the configured replication address and streams every change committed to its database and
+ * every change of the {@link ReplicatedState}s to all connected standby Masters.
+ * The standby does not start the {@link Server} and the {@link UDPDiscoveryServer}. It connects to the primary,
+ * imports a snapshot of the database and the state and then applies the streamed changes.
+ * If the standby has no contact to the primary for the configured failover timeout and the ports are free,
+ * it starts both servers itself and becomes the new primary.
+ * <p>
+ * Both Masters must use a copy of the same keystore, so that clients accept the standby as the same Master.
+ * The replication connection is secured with TLS using the key of the Master, see {@link ReplicationSecurity}.
+ * Two Masters can run on the same host by starting them in different working directories (each has its own
+ * database file) and pointing the {@value MasterConfiguration#PROPERTY_CONFIG_FILE} system property of the standby
+ * to a config file with {@code Role = standby} in the {@code Replication} section.
+ *
+ * @author Team
+ */
+public class ReplicationManager extends AbstractComponent {
+    public static final Key<ReplicationManager> KEY = new Key<>(ReplicationManager.class);
+
+    public enum Role {
+        NONE, PRIMARY, STANDBY;
+
+        public static Role fromConfig(MasterConfiguration config) {
+            try {
+                return valueOf(config.getReplicationRole().trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new StartupException("Unknown replication role " + config.getReplicationRole(), e);
+            }
+        }
+    }
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final Map<String, ReplicatedState> states = new LinkedHashMap<>();
+    private volatile Role role = Role.NONE;
+    private ReplicationSender sender;
+    private ReplicationReceiver receiver;
+    private ReplicationSecurity security;
+
+    @Override
+    public void init(Container container) {
+        super.init(container);
+        states.put("RegistrationTokens", requireComponent(MasterRegisterDeviceHandler.KEY));
+        states.put("SlaveRegistrationTokens", requireComponent(SlaveController.KEY));
+        states.put("DoorBlocked", requireComponent(MasterDoorHandler.KEY));
+        states.put("HolidaySimulation", requireComponent(MasterHolidaySimulationPlannerHandler.KEY));
+
+        role = Role.fromConfig(requireComponent(MasterConfiguration.KEY));
+        if (role != Role.NONE) {
+            security = createSecurity();
+        }
+        if (role == Role.PRIMARY) {
+            startSender();
+        } else if (role == Role.STANDBY) {
+            receiver = new ReplicationReceiver(this, requireComponent(MasterConfiguration.KEY), security);
+            receiver.start();
+            logger.info("Running as standby Master, replicating from " + receiver);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (receiver != null) {
+            receiver.close();
+            receiver = null;
+        }
+        if (sender != null) {
+            sender.close();
+            sender = null;
+        }
+        states.clear();
+        super.destroy();
+    }
+
+    /**
+     * Replication is never done without authentication, so a Master that can't set up TLS doesn't start.
+     */
+    private ReplicationSecurity createSecurity() {
+        try {
+            return new ReplicationSecurity(requireComponent(KeyStoreController.KEY).getOwnPrivateKey(),
+                    requireComponent(NamingManager.KEY).getMasterCertificate());
+        } catch (GeneralSecurityException | IOException e) {
+            throw new StartupException("Could not set up authentication for replication", e);
+        }
+    }
+
+    private void startSender() {
+        sender = new ReplicationSender(this, requireComponent(MasterConfiguration.KEY), security);
+        try {
+            sender.start();
+        } catch (IOException e) {
+            throw new StartupException("Could not start replication on " + sender, e);
+        }
+        logger.info("Replicating to standby Masters connecting to " + sender);
+    }
+
+    /**
+     * Called by the {@link ReplicationReceiver} once the primary Master is considered dead.
+     * Starts the servers and begins replicating to other standby Masters.
+     */
+    synchronized void promote() {
+        if (role != Role.STANDBY) {
+            return;
+        }
+        logger.warn("Lost contact to the primary Master, taking over");
+        final Container container = getContainer();
+        container.register(UDPDiscoveryServer.KEY, new UDPDiscoveryServer());
+        container.register(Server.KEY, new Server());
+        container.register(PresenceIndex.KEY, new PresenceIndex());
+        for (ReplicatedState state : states.values()) {
+            state.onPromotedToPrimary();
+        }
+        role = Role.PRIMARY;
+        receiver = null;
+        startSender();
+    }
+
+    /**
+     * @return {@code true} if the ports of the {@link Server} can be bound, i.e. the primary Master released them
+     */
+    boolean arePortsFree() {
+        final MasterConfiguration config = requireComponent(MasterConfiguration.KEY);
+        return isPortFree(config.getLocalPort()) && isPortFree(config.getPublicPort());
+    }
+
+    private boolean isPortFree(int port) {
+        try {
+            new ServerSocket(port).close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    Map<String, Serializable> exportStates() {
+        final Map<String, Serializable> exported = new HashMap<>();
+        for (Map.Entry<String, ReplicatedState> entry : states.entrySet()) {
+            exported.put(entry.getKey(), entry.getValue().exportReplicatedState());
+        }
+        return exported;
+    }
+
+    void importStates(Map<String, Serializable> exported) {
+        for (Map.Entry<String, Serializable> entry : exported.entrySet()) {
+            final ReplicatedState state = states.get(entry.getKey());
+            if (state != null) {
+                state.importReplicatedState(entry.getValue());
+            } else {
+                logger.warn("Primary Master sent unknown state " + entry.getKey());
+            }
+        }
+    }
+
+    DeviceID getMasterID() {
+        return requireComponent(NamingManager.KEY).getOwnID();
+    }
+
+    DatabaseConnector getDatabase() {
+        return requireComponent(DatabaseConnector.KEY);
+    }
+
+    /**
+     * @return the role this Master currently has, a standby becomes {@link Role#PRIMARY} after taking over
+     */
+    public Role getRole() {
+        return role;
+    }
+}
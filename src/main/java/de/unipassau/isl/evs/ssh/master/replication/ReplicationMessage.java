@@ -0,0 +1,102 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.replication;
+
+import de.unipassau.isl.evs.ssh.core.naming.DeviceID;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A message sent from the primary Master to a standby Master.
+ *
+ * @author Team
+ */
+final class ReplicationMessage implements Serializable {
+    enum Type {
+        /**
+         * First message of a connection, contains the ID of the primary Master.
+         */
+        HELLO,
+        /**
+         * The complete database and in-memory state.
+         */
+        SNAPSHOT,
+        /**
+         * Changes committed to the database since the last message.
+         */
+        STATEMENTS,
+        /**
+         * The complete in-memory state, sent when it changed.
+         */
+        STATE,
+        /**
+         * Sent when there was nothing else to send for one heartbeat interval.
+         */
+        HEARTBEAT
+    }
+
+    final Type type;
+    final DeviceID masterID;
+    final ArrayList<String> statements;
+    final HashMap<String, Serializable> state;
+
+    private ReplicationMessage(Type type, DeviceID masterID, List<String> statements, Map<String, Serializable> state) {
+        this.type = type;
+        this.masterID = masterID;
+        this.statements = statements != null ? new ArrayList<>(statements) : null;
+        this.state = state != null ? new HashMap<>(state) : null;
+    }
+
+    static ReplicationMessage hello(DeviceID masterID) {
+        return new ReplicationMessage(Type.HELLO, masterID, null, null);
+    }
+
+    static ReplicationMessage snapshot(List<String> statements, Map<String, Serializable> state) {
+        return new ReplicationMessage(Type.SNAPSHOT, null, statements, state);
+    }
+
+    static ReplicationMessage statements(List<String> statements) {
+        return new ReplicationMessage(Type.STATEMENTS, null, statements, null);
+    }
+
+    static ReplicationMessage state(Map<String, Serializable> state) {
+        return new ReplicationMessage(Type.STATE, null, null, state);
+    }
+
+    static ReplicationMessage heartbeat() {
+        return new ReplicationMessage(Type.HEARTBEAT, null, null, null);
+    }
+
+    @Override
+    public String toString() {
+        return type + (statements != null ? " (" + statements.size() + " statements)" : "");
+    }
+}
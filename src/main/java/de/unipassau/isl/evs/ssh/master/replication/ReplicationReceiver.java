@@ -0,0 +1,176 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.replication;
+
+import de.unipassau.isl.evs.ssh.master.MasterConfiguration;
+import de.unipassau.isl.evs.ssh.master.database.DatabaseConnector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSocket;
+
+/**
+ * Runs on a standby Master, applies the changes streamed by the primary Master and
+ * promotes the standby once the primary can't be reached for the failover timeout.
+ *
+ * @author Team
+ */
+class ReplicationReceiver implements Runnable {
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final ReplicationManager manager;
+    private final InetSocketAddress address;
+    private final int failoverTimeout;
+    private final int retryDelay;
+    private final ReplicationSecurity security;
+    private Thread thread;
+    private volatile Socket socket;
+    private volatile boolean closed = false;
+    /**
+     * Whether a snapshot was imported. A standby that never saw the primary doesn't take over,
+     * as it would otherwise serve an empty database or steal the ports from a primary that is still starting.
+     */
+    private boolean synced = false;
+    private long lastContact;
+
+    ReplicationReceiver(ReplicationManager manager, MasterConfiguration config, ReplicationSecurity security) {
+        this.manager = manager;
+        this.security = security;
+        this.address = new InetSocketAddress(config.getReplicationAddress(), config.getReplicationPort());
+        this.failoverTimeout = config.getReplicationFailoverTimeout();
+        this.retryDelay = Math.min(config.getReplicationHeartbeatInterval(), failoverTimeout / 4);
+    }
+
+    void start() {
+        thread = new Thread(this, "master-replication-standby");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        final DatabaseConnector database = manager.getDatabase();
+        while (!closed) {
+            try {
+                socket = new Socket();
+                socket.connect(address, failoverTimeout);
+                final SSLSocket sslSocket = security.wrap(socket, address);
+                socket = sslSocket;
+                sslSocket.setSoTimeout(failoverTimeout);
+                // only apply changes coming from a peer that has the key of this Master
+                security.authenticate(sslSocket);
+                receive(new ReplicationInputStream(new BufferedInputStream(socket.getInputStream())), database);
+            } catch (SSLException e) {
+                logger.warn("Could not authenticate primary Master at " + address + ": " + e);
+            } catch (IOException | ClassNotFoundException e) {
+                if (synced && !closed) {
+                    logger.warn("Lost connection to primary Master: " + e);
+                }
+            } catch (RuntimeException e) {
+                // the next connection starts with a fresh snapshot
+                logger.error("Could not apply changes from primary Master", e);
+            } finally {
+                closeSocket();
+            }
+
+            if (closed) {
+                return;
+            }
+            if (synced && System.currentTimeMillis() - lastContact >= failoverTimeout && manager.arePortsFree()) {
+                manager.promote();
+                return;
+            }
+            try {
+                Thread.sleep(retryDelay);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void receive(ObjectInputStream in, DatabaseConnector database) throws IOException, ClassNotFoundException {
+        final ReplicationMessage hello = (ReplicationMessage) in.readObject();
+        if (hello.type != ReplicationMessage.Type.HELLO || !manager.getMasterID().equals(hello.masterID)) {
+            throw new IOException("Primary Master has ID " + hello.masterID + " but this Master is "
+                    + manager.getMasterID() + ", both Masters must use the same keystore");
+        }
+        while (!closed) {
+            final ReplicationMessage message = (ReplicationMessage) in.readObject();
+            lastContact = System.currentTimeMillis();
+            switch (message.type) {
+                case SNAPSHOT:
+                    database.importSnapshot(message.statements);
+                    manager.importStates(message.state);
+                    if (!synced) {
+                        logger.info("Synchronized with primary Master at " + address);
+                    }
+                    synced = true;
+                    break;
+                case STATEMENTS:
+                    database.applyStatements(message.statements);
+                    break;
+                case STATE:
+                    manager.importStates(message.state);
+                    break;
+                case HEARTBEAT:
+                    break;
+                default:
+                    throw new IOException("Unexpected replication message " + message);
+            }
+        }
+    }
+
+    void close() {
+        closed = true;
+        closeSocket();
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void closeSocket() {
+        final Socket socket = this.socket;
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                logger.warn("Could not close connection to primary Master", e);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return address.toString();
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.replication;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+
+/**
+ * Secures the connections between primary and standby Masters with TLS. Both sides authenticate with the key of
+ * the Master from the shared keystore and only accept a peer presenting the certificate of the same Master, so that
+ * neither the database nor the registration tokens are sent to anyone else and a standby only applies statements
+ * coming from the primary.
+ *
+ * @author Team
+ */
+final class ReplicationSecurity {
+    private static final String ALIAS = "master";
+    /**
+     * The time in milliseconds the TLS handshake may take before the connection is closed.
+     */
+    static final int HANDSHAKE_TIMEOUT_MILLIS = 10000;
+
+    private final X509Certificate masterCertificate;
+    private final SSLContext context;
+
+    /**
+     * @param masterKey         the private key of the Master
+     * @param masterCertificate the certificate of the Master
+     */
+    ReplicationSecurity(PrivateKey masterKey, X509Certificate masterCertificate)
+            throws GeneralSecurityException, IOException {
+        this.masterCertificate = masterCertificate;
+        // the in-memory keystore is never persisted, so a random password is as good as any
+        final char[] password = Long.toHexString(new SecureRandom().nextLong()).toCharArray();
+
+        final KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        keyStore.load(null, null);
+        keyStore.setKeyEntry(ALIAS, masterKey, password, new Certificate[]{masterCertificate});
+        final KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, password);
+
+        final KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry(ALIAS, masterCertificate);
+        final TrustManagerFactory trustManagers =
+                TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagers.init(trustStore);
+
+        context = SSLContext.getInstance("TLS");
+        context.init(keyManagers.getKeyManagers(), trustManagers.getTrustManagers(), new SecureRandom());
+    }
+
+    /**
+     * @return an unbound server socket that requires standby Masters to authenticate
+     */
+    SSLServerSocket createServerSocket() throws IOException {
+        final SSLServerSocket serverSocket = (SSLServerSocket) context.getServerSocketFactory().createServerSocket();
+        serverSocket.setNeedClientAuth(true);
+        return serverSocket;
+    }
+
+    /**
+     * @param socket  a socket connected to the primary Master
+     * @param address the address of the primary Master
+     * @return a TLS socket layered over the given socket
+     */
+    SSLSocket wrap(Socket socket, InetSocketAddress address) throws IOException {
+        final SSLSocket sslSocket = (SSLSocket) context.getSocketFactory()
+                .createSocket(socket, address.getHostString(), address.getPort(), true);
+        sslSocket.setUseClientMode(true);
+        return sslSocket;
+    }
+
+    /**
+     * Run the TLS handshake and make sure the other side presented the certificate of this Master.
+     *
+     * @throws SSLPeerUnverifiedException if the peer is not the same Master
+     */
+    void authenticate(SSLSocket socket) throws IOException {
+        final int soTimeout = socket.getSoTimeout();
+        socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+        socket.startHandshake();
+        socket.setSoTimeout(soTimeout);
+        final Certificate[] peerCertificates = socket.getSession().getPeerCertificates();
+        if (peerCertificates.length == 0 || !masterCertificate.equals(peerCertificates[0])) {
+            throw new SSLPeerUnverifiedException("Peer " + socket.getRemoteSocketAddress()
+                    + " didn't authenticate as this Master");
+        }
+    }
+}
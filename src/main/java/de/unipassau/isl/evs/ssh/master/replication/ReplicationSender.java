@@ -0,0 +1,217 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.replication;
+
+import de.unipassau.isl.evs.ssh.master.MasterConfiguration;
+import de.unipassau.isl.evs.ssh.master.database.DatabaseChangeListener;
+import de.unipassau.isl.evs.ssh.master.database.DatabaseConnector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLSocket;
+
+/**
+ * Runs on the primary Master, accepts connections from standby Masters and streams all changes to them.
+ *
+ * @author Team
+ */
+class ReplicationSender implements Runnable {
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final ReplicationManager manager;
+    private final InetSocketAddress address;
+    private final int heartbeatInterval;
+    private final int backlogLimit;
+    private final List<Session> sessions = new CopyOnWriteArrayList<>();
+    private final ReplicationSecurity security;
+    private ServerSocket serverSocket;
+    private volatile boolean closed = false;
+
+    ReplicationSender(ReplicationManager manager, MasterConfiguration config, ReplicationSecurity security) {
+        this.manager = manager;
+        this.security = security;
+        this.address = new InetSocketAddress(config.getReplicationAddress(), config.getReplicationPort());
+        this.heartbeatInterval = config.getReplicationHeartbeatInterval();
+        this.backlogLimit = config.getReplicationBacklogLimit();
+    }
+
+    void start() throws IOException {
+        serverSocket = security.createServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(address);
+        final Thread thread = new Thread(this, "master-replication-accept");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        while (!closed) {
+            try {
+                final Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                final Session session = new Session(socket);
+                sessions.add(session);
+                final Thread thread = new Thread(session, "master-replication-" + socket.getRemoteSocketAddress());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (!closed) {
+                    logger.error("Could not accept standby connection", e);
+                }
+            }
+        }
+    }
+
+    void close() {
+        closed = true;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            logger.warn("Could not close replication socket", e);
+        }
+        for (Session session : sessions) {
+            session.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return address.toString();
+    }
+
+    /**
+     * The connection to a single standby Master.
+     */
+    private class Session implements Runnable, DatabaseChangeListener {
+        private final Socket socket;
+        private final DatabaseConnector database;
+        private final BlockingQueue<ReplicationMessage> queue = new LinkedBlockingQueue<>();
+        private volatile boolean sessionClosed = false;
+
+        private Session(Socket socket) {
+            this.socket = socket;
+            this.database = manager.getDatabase();
+        }
+
+        @Override
+        public void onStatementsCommitted(List<String> statements) {
+            if (queue.size() >= backlogLimit) {
+                logger.warn("Standby " + socket.getRemoteSocketAddress() + " can't keep up, disconnecting");
+                close();
+            } else {
+                queue.offer(ReplicationMessage.statements(statements));
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                // nothing is sent before the standby proved that it has the key of this Master
+                security.authenticate((SSLSocket) socket);
+            } catch (IOException e) {
+                logger.warn("Rejected standby connection from " + socket.getRemoteSocketAddress() + ": " + e);
+                close();
+                return;
+            }
+            logger.info("Standby Master connected from " + socket.getRemoteSocketAddress());
+            try {
+                final ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                send(out, ReplicationMessage.hello(manager.getMasterID()));
+                final List<String> snapshot = database.snapshot(this);
+                Map<String, Serializable> lastState = manager.exportStates();
+                send(out, ReplicationMessage.snapshot(snapshot, lastState));
+                out.flush();
+
+                long lastStateCheck = System.currentTimeMillis();
+                boolean sentSinceCheck = false;
+                while (!sessionClosed) {
+                    final ReplicationMessage message = queue.poll(heartbeatInterval, TimeUnit.MILLISECONDS);
+                    if (message != null) {
+                        send(out, message);
+                        sentSinceCheck = true;
+                        // send everything that is already queued before flushing
+                        ReplicationMessage next;
+                        while ((next = queue.poll()) != null) {
+                            send(out, next);
+                        }
+                    }
+                    if (System.currentTimeMillis() - lastStateCheck >= heartbeatInterval) {
+                        final Map<String, Serializable> state = manager.exportStates();
+                        if (!state.equals(lastState)) {
+                            send(out, ReplicationMessage.state(state));
+                            lastState = state;
+                        } else if (!sentSinceCheck) {
+                            send(out, ReplicationMessage.heartbeat());
+                        }
+                        lastStateCheck = System.currentTimeMillis();
+                        sentSinceCheck = false;
+                    }
+                    out.flush();
+                }
+            } catch (IOException e) {
+                if (!sessionClosed) {
+                    logger.warn("Lost connection to standby Master " + socket.getRemoteSocketAddress(), e);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+            }
+        }
+
+        private void send(ObjectOutputStream out, ReplicationMessage message) throws IOException {
+            out.writeObject(message);
+            // don't keep references to all objects ever sent
+            out.reset();
+        }
+
+        private void close() {
+            sessionClosed = true;
+            database.removeChangeListener(this);
+            sessions.remove(this);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                logger.warn("Could not close standby connection", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2016.
+ * Bucher Andreas, Fink Simon Dominik, Fraedrich Christoph, Popp Wolfgang,
+ * Sell Leon, Werli Philemon
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package de.unipassau.isl.evs.ssh.master.state;
+
+import de.ncoder.typedmap.Key;
+import de.unipassau.isl.evs.ssh.core.container.AbstractComponent;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The last known state of all Modules, as reported by the Slaves or set by the Master.
+ * Every value is stored together with the time it was reported and a version that increases with every update of
+ * the store, so readers can decide whether the value is fresh enough to answer a request without asking the Slave.
+ * The store is thread-safe. Listeners are notified on the updating thread whenever a value changes.
+ *
+ * @author Team
+ */
+public class DeviceStateStore extends AbstractComponent {
+    public static final Key<DeviceStateStore> KEY = new Key<>(DeviceStateStore.class);
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final Map<Attribute, ConcurrentMap<String, State>> states = new EnumMap<>(Attribute.class);
+    private final AtomicLong version = new AtomicLong();
+    private final List<StateListener> listeners = new CopyOnWriteArrayList<>();
+
+    public DeviceStateStore() {
+        for (Attribute attribute : Attribute.values()) {
+            states.put(attribute, new ConcurrentHashMap<String, State>());
+        }
+    }
+
+    /**
+     * Store a newly reported value of a Module.
+     *
+     * @return the stored State
+     */
+    public State put(String moduleName, Attribute attribute, Serializable value) {
+        final ConcurrentMap<String, State> map = states.get(attribute);
+        State previous;
+        State current;
+        do {
+            previous = map.get(moduleName);
+            current = new State(value, version.incrementAndGet(), System.currentTimeMillis());
+        } while (previous == null ? map.putIfAbsent(moduleName, current) != null : !map.replace(moduleName, previous, current));
+
+        if (previous == null || !Objects.equals(previous.getValue(), value)) {
+            for (StateListener listener : listeners) {
+                try {
+                    listener.onStateChanged(moduleName, attribute, previous, current);
+                } catch (RuntimeException e) {
+                    logger.warn("Listener " + listener + " failed to handle change of " + attribute + " of " + moduleName, e);
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @return the last known State of the Module, or {@code null} if it is unknown
+     */
+    @Nullable
+    public State get(String moduleName, Attribute attribute) {
+        return states.get(attribute).get(moduleName);
+    }
+
+    /**
+     * @param maxAge the maximum age of the State in milliseconds
+     * @return the last known State of the Module, or {@code null} if it is unknown or older than {@code maxAge}
+     */
+    @Nullable
+    public State getIfFresh(String moduleName, Attribute attribute, long maxAge) {
+        final State state = get(moduleName, attribute);
+        return state != null && state.getAge() <= maxAge ? state : null;
+    }
+
+    /**
+     * @return the last known value of the Module, or {@code defaultValue} if it is unknown
+     */
+    public <T extends Serializable> T getValue(String moduleName, Attribute attribute, Class<T> type, T defaultValue) {
+        final State state = get(moduleName, attribute);
+        return state != null ? type.cast(state.getValue()) : defaultValue;
+    }
+
+    /**
+     * @return an unmodifiable live view of the States of all Modules with a known value for the given attribute
+     */
+    public Map<String, State> getAll(Attribute attribute) {
+        return Collections.unmodifiableMap(states.get(attribute));
+    }
+
+    /**
+     * Forget the state of a Module, e.g. because it was removed.
+     */
+    public void remove(String moduleName) {
+        for (ConcurrentMap<String, State> map : states.values()) {
+            map.remove(moduleName);
+        }
+    }
+
+    /**
+     * @return the version of the latest update of the store
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    public void addListener(StateListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(StateListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * The kinds of state that are stored for Modules.
+     */
+    public enum Attribute {
+        /**
+         * Whether a light is switched on, a Boolean
+         */
+        LIGHT_ON,
+        /**
+         * Whether a door is open, a Boolean
+         */
+        DOOR_OPEN,
+        /**
+         * Whether a door buzzer is blocked, a Boolean
+         */
+        DOOR_BLOCKED,
+        /**
+         * The latest climate data of a weather board, a ClimatePayload
+         */
+        CLIMATE
+    }
+
+    public interface StateListener {
+        /**
+         * @param previous the previous State, or {@code null} if the value was unknown
+         */
+        void onStateChanged(String moduleName, Attribute attribute, @Nullable State previous, State current);
+    }
+
+    /**
+     * An immutable value of a Module together with its version and the time it was reported.
+     */
+    public static final class State {
+        private final Serializable value;
+        private final long version;
+        private final long timestamp;
+
+        private State(Serializable value, long version, long timestamp) {
+            this.value = value;
+            this.version = version;
+            this.timestamp = timestamp;
+        }
+
+        public Serializable getValue() {
+            return value;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * @return the time in milliseconds since the value was reported
+         */
+        public long getAge() {
+            return System.currentTimeMillis() - timestamp;
+        }
+
+        @Override
+        public String toString() {
+            return "State{" +
+                    "value=" + value +
+                    ", version=" + version +
+                    ", timestamp=" + timestamp +
+                    '}';
+        }
+    }
+}
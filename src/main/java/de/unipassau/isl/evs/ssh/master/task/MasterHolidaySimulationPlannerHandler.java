@@ -35,24 +35,27 @@ import de.unipassau.isl.evs.ssh.core.database.dto.Module;
 import de.unipassau.isl.evs.ssh.core.messaging.Message;
 import de.unipassau.isl.evs.ssh.core.messaging.RoutingKey;
 import de.unipassau.isl.evs.ssh.core.messaging.payload.HolidaySimulationPayload;
-import de.unipassau.isl.evs.ssh.core.messaging.payload.LightPayload;
-import de.unipassau.isl.evs.ssh.core.messaging.payload.MessagePayload;
 import de.unipassau.isl.evs.ssh.core.schedule.Scheduler;
 import de.unipassau.isl.evs.ssh.master.database.HolidayController;
 import de.unipassau.isl.evs.ssh.master.database.SlaveController;
 import de.unipassau.isl.evs.ssh.master.handler.AbstractMasterHandler;
+import de.unipassau.isl.evs.ssh.master.handler.LightSceneSender;
 import de.unipassau.isl.evs.ssh.master.network.broadcast.NotificationBroadcaster;
+import de.unipassau.isl.evs.ssh.master.replication.ReplicatedState;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Serializable;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.MASTER_HOLIDAY_GET;
 import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.MASTER_HOLIDAY_SET;
-import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.SLAVE_LIGHT_SET;
 import static de.unipassau.isl.evs.ssh.core.messaging.payload.NotificationPayload.NotificationType.HOLIDAY_MODE_SWITCHED_OFF;
 import static de.unipassau.isl.evs.ssh.core.messaging.payload.NotificationPayload.NotificationType.HOLIDAY_MODE_SWITCHED_ON;
 import static de.unipassau.isl.evs.ssh.core.sec.Permission.TOGGLE_HOLIDAY_SIMULATION;
@@ -64,12 +67,12 @@ import static de.unipassau.isl.evs.ssh.core.sec.Permission.TOGGLE_HOLIDAY_SIMULA
  *
  * @author Christoph Fraedrich
  */
-public class MasterHolidaySimulationPlannerHandler extends AbstractMasterHandler implements Component {
+public class MasterHolidaySimulationPlannerHandler extends AbstractMasterHandler implements Component, ReplicatedState {
     private static final long SCHEDULE_LOOKAHEAD_MILLIS = TimeUnit.HOURS.toMillis(1);
     public static final Key<MasterHolidaySimulationPlannerHandler> KEY = new Key<>(MasterHolidaySimulationPlannerHandler.class);
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private final LinkedList<ScheduledFuture<?>> actions = new LinkedList<>();
-    private boolean runHolidaySimulation = false;
+    private volatile boolean runHolidaySimulation = false;
 
     @Override
     public RoutingKey[] getRoutingKeys() {
@@ -122,11 +125,24 @@ public class MasterHolidaySimulationPlannerHandler extends AbstractMasterHandler
                     planningStartTime - TimeUnit.DAYS.toMillis(7) + SCHEDULE_LOOKAHEAD_MILLIS
             );
 
-            Scheduler scheduler = requireComponent(Scheduler.KEY);
+            //actions happening in the same second are executed together, so that they are sent in one batch per Slave
+            final Map<Long, Map<String, String>> actionsByDelay = new TreeMap<>();
             for (HolidayAction a : lastWeek) {
-                Runnable action = new HolidayLightAction(a.getModuleName(), a.getActionName());
                 long delay = (a.getTimeStamp() + TimeUnit.DAYS.toMillis(7) - planningStartTime) / 1000;
-                actions.add(scheduler.schedule(action, delay, TimeUnit.SECONDS));
+                Map<String, String> actionsByModule = actionsByDelay.get(delay);
+                if (actionsByModule == null) {
+                    actionsByModule = new LinkedHashMap<>();
+                    actionsByDelay.put(delay, actionsByModule);
+                }
+                //the last action of a module within the same second wins
+                actionsByModule.remove(a.getModuleName());
+                actionsByModule.put(a.getModuleName(), a.getActionName());
+            }
+
+            Scheduler scheduler = requireComponent(Scheduler.KEY);
+            for (Map.Entry<Long, Map<String, String>> entry : actionsByDelay.entrySet()) {
+                Runnable action = new HolidayLightAction(entry.getValue());
+                actions.add(scheduler.schedule(action, entry.getKey(), TimeUnit.SECONDS));
             }
         }
     }
@@ -150,32 +166,34 @@ public class MasterHolidaySimulationPlannerHandler extends AbstractMasterHandler
     }
 
     /**
-     * Private class representing an action which has to be executed when the holiday simulation
+     * Private class representing the actions which have to be executed at the same time when the holiday simulation
      * is active.
      */
     private class HolidayLightAction implements Runnable {
 
-        final String moduleName;
-        final String actionName;
+        final Map<String, String> actionsByModule;
 
-        private HolidayLightAction(String moduleName, String actionName) {
-            this.moduleName = moduleName;
-            this.actionName = actionName;
+        private HolidayLightAction(Map<String, String> actionsByModule) {
+            this.actionsByModule = actionsByModule;
         }
 
         @Override
         public void run() {
-            boolean on = false;
-            if (getContainer() != null) {
-                Module module = getContainer().require(SlaveController.KEY).getModule(moduleName);
-                if (actionName.equals(CoreConstants.LogActions.LIGHT_ON_ACTION)) {
-                    on = true;
-                } else if (actionName.equals(CoreConstants.LogActions.LIGHT_OFF_ACTION)) {
-                    on = false;
+            final Container container = getContainer();
+            if (container != null) {
+                final Map<Module, Boolean> targets = new LinkedHashMap<>();
+                for (Module module : container.require(SlaveController.KEY)
+                        .getModulesByType(CoreConstants.ModuleType.Light)) {
+                    final String actionName = actionsByModule.get(module.getName());
+                    if (actionName != null) {
+                        targets.put(module, actionName.equals(CoreConstants.LogActions.LIGHT_ON_ACTION));
+                    }
                 }
-                MessagePayload payload = new LightPayload(on, module);
-                Message message = new Message(payload);
-                sendMessage(module.getAtSlave(), SLAVE_LIGHT_SET, message);
+                if (targets.size() < actionsByModule.size()) {
+                    logger.info("Skipping holiday actions for modules that no longer exist: " + actionsByModule);
+                }
+                //replayed actions are not logged again
+                container.require(LightSceneSender.KEY).switchLights("holiday simulation", targets, null);
             }
         }
     }
@@ -183,4 +201,22 @@ public class MasterHolidaySimulationPlannerHandler extends AbstractMasterHandler
     public boolean isRunHolidaySimulation() {
         return runHolidaySimulation;
     }
-}
\ No newline at end of file
+
+    @Override
+    public Serializable exportReplicatedState() {
+        return runHolidaySimulation;
+    }
+
+    @Override
+    public void importReplicatedState(Serializable state) {
+        // the actions are only scheduled by the primary Master, see onPromotedToPrimary
+        runHolidaySimulation = (Boolean) state;
+    }
+
+    @Override
+    public void onPromotedToPrimary() {
+        if (runHolidaySimulation) {
+            scheduleActions();
+        }
+    }
+}
@@ -29,64 +29,50 @@ package de.unipassau.isl.evs.ssh.master.task;
 import com.google.common.base.Strings;
 import de.ncoder.typedmap.Key;
 import de.unipassau.isl.evs.ssh.core.CoreConstants;
-import de.unipassau.isl.evs.ssh.core.container.Component;
+import de.unipassau.isl.evs.ssh.core.container.AbstractComponent;
 import de.unipassau.isl.evs.ssh.core.container.Container;
-import de.unipassau.isl.evs.ssh.core.messaging.Message;
-import de.unipassau.isl.evs.ssh.core.messaging.RoutingKey;
-import de.unipassau.isl.evs.ssh.core.messaging.payload.DoorStatusPayload;
 import de.unipassau.isl.evs.ssh.core.messaging.payload.NotificationPayload;
 import de.unipassau.isl.evs.ssh.core.schedule.ExecutionServiceComponent;
 import de.unipassau.isl.evs.ssh.core.schedule.Scheduler;
 import de.unipassau.isl.evs.ssh.master.MasterConfiguration;
-import de.unipassau.isl.evs.ssh.master.handler.AbstractMasterHandler;
 import de.unipassau.isl.evs.ssh.master.network.broadcast.NotificationBroadcaster;
+import de.unipassau.isl.evs.ssh.master.state.DeviceStateStore;
 import net.aksingh.owmjapis.CurrentWeather;
 import net.aksingh.owmjapis.OpenWeatherMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
-import static de.unipassau.isl.evs.ssh.core.messaging.RoutingKeys.MASTER_DOOR_STATUS_UPDATE;
-
 /**
- * Task/Handler that periodically checks the records of weather data provider and issues notifications
- * based on a configured set of rules.
+ * Task that periodically checks the records of weather data provider and issues notifications
+ * based on a configured set of rules. The status of the doors is taken from the {@link DeviceStateStore}.
  *
  * @author Christoph Fraedrich
  */
-public class MasterWeatherCheckHandler extends AbstractMasterHandler implements Component {
+public class MasterWeatherCheckHandler extends AbstractComponent {
     public static final Key<MasterWeatherCheckHandler> KEY = new Key<>(MasterWeatherCheckHandler.class);
     private static final long CHECK_INTERVAL_MINUTES = 5;
-    private static final long FAILURE_UPDATE_TIMER = TimeUnit.MINUTES.toMillis(45);
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
-    private long timeStamp = -1;
-    private final Map<String, Boolean> openForModule = new HashMap<>();
     private final OpenWeatherMap owm = new OpenWeatherMap(CoreConstants.OPENWEATHERMAP_API_KEY);
     private ScheduledFuture scheduledFuture;
 
-    @Override
-    public void handle(Message.AddressedMessage message) {
-        if (MASTER_DOOR_STATUS_UPDATE.matches(message)) {
-            final DoorStatusPayload doorStatusPayload = MASTER_DOOR_STATUS_UPDATE.getPayload(message);
-            openForModule.put(doorStatusPayload.getModuleName(), doorStatusPayload.isOpen());
-        } else {
-            invalidMessage(message);
+    private boolean isSomeDoorOpen() {
+        for (DeviceStateStore.State state : requireComponent(DeviceStateStore.KEY)
+                .getAll(DeviceStateStore.Attribute.DOOR_OPEN).values()) {
+            if (Boolean.TRUE.equals(state.getValue())) {
+                return true;
+            }
         }
-    }
-
-    @Override
-    public RoutingKey[] getRoutingKeys() {
-        return new RoutingKey[]{MASTER_DOOR_STATUS_UPDATE};
+        return false;
     }
 
     @Override
     public void init(Container container) {
+        super.init(container);
         final Scheduler scheduler = container.require(Scheduler.KEY);
         final MasterConfiguration config = requireComponent(MasterConfiguration.KEY);
         final WeatherCheckRunner task = new WeatherCheckRunner(config.getLocation());
@@ -98,6 +84,7 @@ public class MasterWeatherCheckHandler extends AbstractMasterHandler implements
         if (getContainer() != null) {
             scheduledFuture.cancel(true);
         }
+        super.destroy();
     }
 
     private class WeatherCheckRunner implements Runnable {
@@ -115,11 +102,8 @@ public class MasterWeatherCheckHandler extends AbstractMasterHandler implements
             logger.info("Inquiring weather data for " + city);
             //Presentation Mode
             if (city.equals("Mordor")) {
-                for (Boolean isOpen : openForModule.values()) {
-                    if (isOpen) {
-                        sendWarningNotification();
-                        break;
-                    }
+                if (isSomeDoorOpen()) {
+                    sendWarningNotification();
                 }
                 return;
             }
@@ -134,13 +118,8 @@ public class MasterWeatherCheckHandler extends AbstractMasterHandler implements
                             return;
                         }
 
-                        if (cw.getRainInstance().hasRain()) {
-                            for (Boolean isOpen : openForModule.values()) {
-                                if (isOpen) {
-                                    sendWarningNotification();
-                                    break;
-                                }
-                            }
+                        if (cw.getRainInstance().hasRain() && isSomeDoorOpen()) {
+                            sendWarningNotification();
                         }
                     } catch (IOException e) {
                         logger.error(e.getLocalizedMessage());
@@ -154,11 +133,9 @@ public class MasterWeatherCheckHandler extends AbstractMasterHandler implements
     }
 
     private void WeatherServiceFailed(String city) {
-        if (timeStamp == -1 || timeStamp - System.currentTimeMillis() > FAILURE_UPDATE_TIMER) {
-            requireComponent(NotificationBroadcaster.KEY).sendMessageToAllReceivers(
-                    NotificationPayload.NotificationType.WEATHER_SERVICE_FAILED, city);
-            timeStamp = System.currentTimeMillis();
-        }
+        //Repeated failures are suppressed by the NotificationBroadcaster
+        requireComponent(NotificationBroadcaster.KEY).sendMessageToAllReceivers(
+                NotificationPayload.NotificationType.WEATHER_SERVICE_FAILED, city);
     }
 
     private void sendWarningNotification() {